@@ -0,0 +1,67 @@
+package com.cleggatt.invaders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of an identicon-sized avatar: hashing a key, drawing it into a buffer and encoding it as a PNG, with and
+ * without the cache of encoded PNGs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AvatarBenchmark {
+
+    @Param({"4"})
+    public int scale;
+
+    @Param({"Flat", "Gradient"})
+    public Invaders.ColourMode colours;
+
+    private Avatars avatars;
+    private Avatars cached;
+    private int[] argb;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        avatars = new Avatars(Main.DEFAULT_X, Main.DEFAULT_Y, scale, 1, Palette.DEFAULT, colours, Invaders.Edge.Square, 0);
+        cached = new Avatars(Main.DEFAULT_X, Main.DEFAULT_Y, scale, 1, Palette.DEFAULT, colours, Invaders.Edge.Square, 64);
+        argb = new int[avatars.getWidth() * avatars.getHeight()];
+        keys = new String[64];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "user-" + i + "@example.com";
+        }
+    }
+
+    private String nextKey() {
+        next = (next + 1) & (keys.length - 1);
+        return keys[next];
+    }
+
+    @Benchmark
+    public long hash() {
+        return Avatars.hash(nextKey());
+    }
+
+    @Benchmark
+    public int[] render() {
+        avatars.render(Avatars.hash(nextKey()), argb, 0, avatars.getWidth());
+        return argb;
+    }
+
+    @Benchmark
+    public byte[] png() {
+        return avatars.png(nextKey());
+    }
+
+    @Benchmark
+    public byte[] cachedPng() {
+        return cached.png(nextKey());
+    }
+}
@@ -0,0 +1,53 @@
+package com.cleggatt.invaders;
+
+import org.jdesktop.swingx.image.GaussianBlurFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the swingx <code>GaussianBlurFilter</code> with the scalar and planar (vectorisable) kernels in
+ * {@link GaussianBlur}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlurBenchmark {
+
+    @Param({"3", "8"})
+    public int radius;
+
+    @Param({"1024"})
+    public int size;
+
+    private int[] pixels;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        final Invaders invaders = new Invaders(Main.DEFAULT_X, Main.DEFAULT_Y, 4, new Random(42), new Random(42));
+        image = invaders.getImageInvaders(size / (Main.DEFAULT_X * 2 * 4), size / (Main.DEFAULT_Y * 4), 0);
+        pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    @Benchmark
+    public BufferedImage swingx() {
+        final BufferedImage dst = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return new GaussianBlurFilter(radius).filter(image, dst);
+    }
+
+    @Benchmark
+    public int[] scalar() {
+        return GaussianBlur.blurScalar(pixels, image.getWidth(), image.getHeight(), radius);
+    }
+
+    @Benchmark
+    public int[] planar() {
+        return GaussianBlur.blurPlanar(pixels, image.getWidth(), image.getHeight(), radius);
+    }
+}
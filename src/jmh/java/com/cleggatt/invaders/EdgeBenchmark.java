@@ -0,0 +1,48 @@
+package com.cleggatt.invaders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares softening tiles with a full image blur (the default <code>--guassian 3</code> pipeline) against drawing
+ * anti-aliased edges directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EdgeBenchmark {
+
+    @Param({"4", "16"})
+    public int scale;
+
+    @Param({"16"})
+    public int tiles;
+
+    private Invaders invaders;
+
+    @Setup
+    public void setUp() {
+        invaders = new Invaders(Main.DEFAULT_X, Main.DEFAULT_Y, scale, new Random(42), new Random(42));
+    }
+
+    @Benchmark
+    public int[] squareWithBlur() {
+        final PixelImage image = invaders.getPixelInvaders(tiles, tiles, 1);
+        return GaussianBlur.blur(image.getPixels(), image.getWidth(), image.getHeight(), Main.DEFAULT_BLUR);
+    }
+
+    @Benchmark
+    public PixelImage roundEdges() {
+        return invaders.getPixelInvaders(tiles, tiles, 1, Invaders.Edge.Round);
+    }
+
+    @Benchmark
+    public PixelImage softEdges() {
+        return invaders.getPixelInvaders(tiles, tiles, 1, Invaders.Edge.Soft);
+    }
+}
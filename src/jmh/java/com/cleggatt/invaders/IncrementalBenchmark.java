@@ -0,0 +1,53 @@
+package com.cleggatt.invaders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rendering and blurring a whole wallpaper against replacing some of its tiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IncrementalBenchmark {
+
+    private static final int TILES = 64;
+    private static final int SCALE = 4;
+
+    @Param({"1", "16"})
+    public int changed;
+
+    private Invaders invaders;
+    private IncrementalImage image;
+    private List<TileOverride> overrides;
+
+    @Setup
+    public void setUp() {
+        invaders = new Invaders(Main.DEFAULT_X, Main.DEFAULT_Y, SCALE, RandomSources.Algorithm.Xoshiro.create(42), RandomSources.Algorithm.Xoshiro.create(43));
+        image = new IncrementalImage(invaders, TILES, TILES, 1, Invaders.Edge.Square, -1, -1, Main.DEFAULT_BLUR);
+
+        final Random random = new Random(42);
+        overrides = new ArrayList<TileOverride>();
+        for (int i = 0; i < changed; i++) {
+            overrides.add(new TileOverride(random.nextInt(TILES), random.nextInt(TILES), 1 + random.nextInt(1 << 20), Invaders.COLORS[i % Invaders.COLORS.length]));
+        }
+    }
+
+    @Benchmark
+    public IncrementalImage full() {
+        return new IncrementalImage(invaders, TILES, TILES, 1, Invaders.Edge.Square, -1, -1, Main.DEFAULT_BLUR);
+    }
+
+    @Benchmark
+    public PixelImage redraw() {
+        image.redraw(overrides);
+        return image.getImage();
+    }
+}
@@ -0,0 +1,270 @@
+package com.cleggatt.invaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Renders and encodes a mix of requests from a number of threads at a target rate for a number of seconds, and reports
+ * the throughput, latency percentiles and time spent in garbage collection.
+ * <p>
+ * Requests are scheduled at fixed intervals, whether or not the previous one has finished, and each latency is measured
+ * from when the request should have started. A stall therefore counts against every request it delays, rather than
+ * only the one it happened during. With a rate of 0, each thread starts its next request as soon as the last finishes.
+ * <p>
+ * Requests are rendered with a new {@link Invaders} for each, as the CLI does, or with one shared {@link InvaderEngine}
+ * for each size, as a server would. Nothing is written anywhere but memory, so runs are repeatable on any machine.
+ * <p>
+ * Usage: <code>LoadHarness [&lt;threads&gt; [&lt;requests/s&gt; [&lt;seconds&gt; [invaders|engine]]]]</code>, by
+ * default a thread per processor, as fast as possible, for 30 seconds, with new {@link Invaders}
+ */
+public final class LoadHarness {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long WARM_UP_SECONDS = 5;
+    private static final double[] PERCENTILES = new double[]{50, 90, 99, 99.9};
+
+    private enum Mode {
+        Invaders, Engine
+    }
+
+    /**
+     * A kind of request, and how often it is made relative to the others
+     */
+    private static final class Request {
+        private final String name;
+        private final int weight;
+        private final boolean text;
+        private final int numWide;
+        private final int numHigh;
+        private final int scale;
+        private final int blurRadius;
+        private final InvaderEngine engine;
+
+        private Request(String name, int weight, boolean text, int numWide, int numHigh, int scale, int blurRadius) {
+            this.name = name;
+            this.weight = weight;
+            this.text = text;
+            this.numWide = numWide;
+            this.numHigh = numHigh;
+            this.scale = scale;
+            this.blurRadius = blurRadius;
+            this.engine = new InvaderEngine(Main.DEFAULT_X, Main.DEFAULT_Y, scale, Palette.DEFAULT, Invaders.ColourMode.Flat, Invaders.Edge.Square,
+                    Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    // Mostly avatars, with some banners and text, and the occasional blurred wallpaper
+    private static final Request[] MIX = new Request[]{
+            new Request("avatar", 50, false, 1, 1, 8, 0),
+            new Request("banner", 20, false, 12, 2, 4, 0),
+            new Request("text", 20, true, 10, 5, 1, 0),
+            new Request("wallpaper", 10, false, 16, 9, 4, 3)
+    };
+
+    /**
+     * Counts, and discards, what is written to it
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static final class Worker extends Thread {
+
+        private final Mode mode;
+        private final long first;
+        private final long interval;
+        private final long measureFrom;
+        private final long end;
+        private final RandomSource random;
+        private final CountingOutputStream out = new CountingOutputStream();
+        private final Writer writer = new OutputStreamWriter(out, UTF_8);
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final long[] requests = new long[MIX.length];
+        private long bytes;
+        private volatile Throwable failure;
+
+        /**
+         * @param first when to start the first request
+         * @param interval the time between the start of each request, or 0 to start each as the last finishes
+         */
+        private Worker(int index, Mode mode, long first, long interval, long measureFrom, long end) {
+            super("load-" + index);
+            this.mode = mode;
+            this.first = first;
+            this.interval = interval;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.random = new SplitMix64(index);
+        }
+
+        private Request pick() {
+            int weight = random.nextInt(100);
+            for (Request request : MIX) {
+                weight -= request.weight;
+                if (weight < 0) {
+                    return request;
+                }
+            }
+            return MIX[MIX.length - 1];
+        }
+
+        private void render(Request request, long seed) throws IOException {
+            final RandomSource invaderRandom = RandomSources.Algorithm.Xoshiro.create(seed);
+            final RandomSource colourRandom = RandomSources.Algorithm.Xoshiro.create(~seed);
+            if (mode == Mode.Engine) {
+                if (request.text) {
+                    request.engine.writeText(request.numWide, request.numHigh, 1, invaderRandom, writer);
+                    writer.flush();
+                } else if (request.blurRadius == 0) {
+                    request.engine.writePng(request.numWide, request.numHigh, 1, invaderRandom, colourRandom, out);
+                } else {
+                    final PixelImage image = request.engine.render(request.numWide, request.numHigh, 1, invaderRandom, colourRandom);
+                    try {
+                        PngEncoder.write(ImageOutput.blur(image, request.blurRadius), false, out);
+                    } finally {
+                        request.engine.release(image);
+                    }
+                }
+                return;
+            }
+            final Invaders invaders = new Invaders(Main.DEFAULT_X, Main.DEFAULT_Y, request.scale, invaderRandom, colourRandom,
+                    Palette.DEFAULT, Invaders.ColourMode.Flat);
+            if (request.text) {
+                out.write(invaders.getTextInvaders(request.numWide, request.numHigh, 1).getBytes(UTF_8));
+            } else {
+                // A single invader prints its value, as the CLI does, which rendering it as a row of tiles does not
+                final PixelImage image = (request.numHigh == 1) ? invaders.getPixelInvaderRow(request.numWide, 1, Invaders.Edge.Square)
+                        : invaders.getPixelInvaders(request.numWide, request.numHigh, 1, Invaders.Edge.Square);
+                PngEncoder.write(ImageOutput.blur(image, request.blurRadius), false, out);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                long next = first;
+                while (next < end) {
+                    long now = System.nanoTime();
+                    while (interval > 0 && now < next) {
+                        LockSupport.parkNanos(next - now);
+                        now = System.nanoTime();
+                    }
+                    final long start = (interval > 0) ? next : now;
+
+                    final Request request = pick();
+                    final long written = out.count;
+                    render(request, random.nextLong(Long.MAX_VALUE));
+                    final long finished = System.nanoTime();
+
+                    if (start >= measureFrom) {
+                        latencies.record(finished - start);
+                        for (int i = 0; i < MIX.length; i++) {
+                            if (MIX[i] == request) {
+                                requests[i]++;
+                            }
+                        }
+                        bytes += out.count - written;
+                    }
+                    next = (interval > 0) ? next + interval : finished;
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+
+    private LoadHarness() {
+    }
+
+    // The total number of collections, and milliseconds spent in them, of every collector
+    private static long[] getGcTotals() {
+        final long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    private static String formatNanos(double nanos) {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length > 4) {
+            System.err.println("Usage: LoadHarness [<threads> [<requests/s> [<seconds> [invaders|engine]]]]");
+            System.exit(1);
+        }
+        final int threads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final double rate = (args.length > 1) ? Double.parseDouble(args[1]) : 0;
+        final long seconds = (args.length > 2) ? Long.parseLong(args[2]) : 30;
+        final Mode mode = (args.length > 3 && args[3].equalsIgnoreCase("engine")) ? Mode.Engine : Mode.Invaders;
+        if (threads < 1 || rate < 0 || seconds < 1) {
+            System.err.println("There must be at least one thread and one second, and the rate cannot be negative");
+            System.exit(1);
+        }
+
+        // Each thread makes an equal share of the requests, spread evenly between the others'
+        final long interval = (rate == 0) ? 0 : (long) ((threads * 1e9) / rate);
+        final long start = System.nanoTime();
+        final long measureFrom = start + (WARM_UP_SECONDS * 1000000000L);
+        final long end = measureFrom + (seconds * 1000000000L);
+        final Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i, mode, start + ((interval * i) / threads), interval, measureFrom, end);
+            workers[i].start();
+        }
+
+        Thread.sleep(Math.max(0, (measureFrom - System.nanoTime()) / 1000000));
+        final long[] gcBefore = getGcTotals();
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final long[] requests = new long[MIX.length];
+        long bytes = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            if (worker.failure != null) {
+                throw new IllegalStateException("A request failed", worker.failure);
+            }
+            latencies.add(worker.latencies);
+            for (int i = 0; i < MIX.length; i++) {
+                requests[i] += worker.requests[i];
+            }
+            bytes += worker.bytes;
+        }
+        final long[] gcAfter = getGcTotals();
+
+        System.out.println(String.format("%d threads, %s, for %ds after %ds of warm up, with %s", threads,
+                (rate == 0) ? "as fast as possible" : String.format("%.0f requests/s", rate), seconds, WARM_UP_SECONDS,
+                (mode == Mode.Engine) ? "a shared InvaderEngine" : "new Invaders for each request"));
+        final StringBuilder mix = new StringBuilder();
+        for (int i = 0; i < MIX.length; i++) {
+            mix.append(String.format("%s%s %d", (i == 0) ? "" : ", ", MIX[i].name, requests[i]));
+        }
+        System.out.println(String.format("Requests:   %d (%.1f/s, %.1fMB/s): %s", latencies.getCount(), latencies.getCount() / (double) seconds,
+                bytes / (seconds * 1024.0 * 1024.0), mix));
+        final StringBuilder percentiles = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            percentiles.append(String.format("p%s %s, ", (percentile == Math.rint(percentile)) ? Long.toString((long) percentile) : Double.toString(percentile),
+                    formatNanos(latencies.getValueAtPercentile(percentile))));
+        }
+        System.out.println(String.format("Latency:    %smax %s, mean %s", percentiles, formatNanos(latencies.getMax()), formatNanos(latencies.getMean())));
+        System.out.println(String.format("GC:         %d collections, %dms (%.1f%% of the run)", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1],
+                (gcAfter[1] - gcBefore[1]) / (seconds * 10.0)));
+    }
+}
@@ -0,0 +1,35 @@
+package com.cleggatt.invaders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of generating an invader and its colour with each {@link RandomSource}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RandomBenchmark {
+
+    private static final long MAX_VALUE = 1L << (Main.DEFAULT_X * Main.DEFAULT_Y);
+
+    @Param({"Random", "Jdk", "SplitMix", "Xoshiro"})
+    public String source;
+
+    private RandomSource random;
+
+    @Setup
+    public void setUp() {
+        random = "Random".equals(source) ? RandomSources.wrap(new Random(42)) : RandomSources.Algorithm.valueOf(source).create(42);
+    }
+
+    @Benchmark
+    public long invader() {
+        return random.nextLong(MAX_VALUE) + random.nextInt(Invaders.COLORS.length);
+    }
+}
@@ -0,0 +1,45 @@
+package com.cleggatt.invaders;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering tiles without any blur, encoding or offset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int scale;
+
+    @Param({"16"})
+    public int tiles;
+
+    @Param({"Flat", "Gradient"})
+    public Invaders.ColourMode colours;
+
+    private Invaders invaders;
+
+    @Setup
+    public void setUp() {
+        invaders = new Invaders(Main.DEFAULT_X, Main.DEFAULT_Y, scale, RandomSources.wrap(new Random(42)), RandomSources.wrap(new Random(42)), Palette.DEFAULT, colours);
+    }
+
+    @Benchmark
+    public BufferedImage image() {
+        return invaders.getImageInvaders(tiles, tiles, 1);
+    }
+
+    @Benchmark
+    public String text() {
+        return invaders.getTextInvaders(tiles, tiles, 1);
+    }
+}
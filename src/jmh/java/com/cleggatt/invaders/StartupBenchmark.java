@@ -0,0 +1,169 @@
+package com.cleggatt.invaders;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how long a command takes to produce its first byte of output, and to exit, over a number of runs. For the
+ * CLI, this is dominated by JVM start up. On Linux with Java 9 or higher, the peak resident set size of each run is
+ * also reported.
+ * <p>
+ * The first run is reported separately as the cold start, and is not included in the summaries.
+ * <p>
+ * Usage: <code>StartupBenchmark &lt;runs&gt; &lt;command&gt; [&lt;args&gt;...]</code>
+ */
+public final class StartupBenchmark {
+
+    private static final int WARM_UP_RUNS = 3;
+
+    private StartupBenchmark() {
+    }
+
+    /**
+     * @return the process ID, or -1 before Java 9
+     */
+    private static long getPid(Process process) {
+        try {
+            return (Long) Process.class.getMethod("pid").invoke(process);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the peak resident set size of a process in KB, or -1 if it is not available
+     */
+    private static long readPeakRss(long pid) {
+        final File status = new File("/proc/" + pid + "/status");
+        try {
+            final BufferedReader reader = new BufferedReader(new FileReader(status));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmHWM:")) {
+                        return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // The process has exited, or this isn't Linux
+        }
+        return -1;
+    }
+
+    /**
+     * Samples the peak resident set size of a process until it exits. As it is sampled, growth just before the
+     * process exits may be missed.
+     */
+    private static final class RssSampler extends Thread {
+
+        private final long pid;
+        private volatile long peakRss = -1;
+
+        private RssSampler(long pid) {
+            this.pid = pid;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                final long rss = readPeakRss(pid);
+                if (rss < 0) {
+                    return;
+                }
+                peakRss = Math.max(peakRss, rss);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the time to first output and to exit in nanoseconds, and the peak resident set size in KB (or -1)
+     */
+    private static long[] run(List<String> command) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        final long pid = getPid(process);
+        final RssSampler sampler = new RssSampler(pid);
+        if (pid >= 0) {
+            sampler.start();
+        }
+
+        final InputStream in = process.getInputStream();
+        final byte[] buffer = new byte[8192];
+        long firstOutput = -1;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            if (firstOutput < 0 && read > 0) {
+                firstOutput = System.nanoTime();
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Command failed: " + command);
+        }
+        final long end = System.nanoTime();
+
+        sampler.interrupt();
+        sampler.join();
+
+        return new long[]{(firstOutput < 0 ? end : firstOutput) - start, end - start, sampler.peakRss};
+    }
+
+    private static String summarise(long[] values, double divisor, String unit) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long value : sorted) {
+            total += value;
+        }
+        return String.format("min %.1f%5$s, median %.1f%5$s, mean %.1f%5$s, max %.1f%5$s",
+                sorted[0] / divisor, sorted[sorted.length / 2] / divisor, (total / (double) sorted.length) / divisor,
+                sorted[sorted.length - 1] / divisor, unit);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: StartupBenchmark <runs> <command> [<args>...]");
+            System.exit(1);
+        }
+
+        final int runs = Integer.parseInt(args[0]);
+        final List<String> command = Arrays.asList(args).subList(1, args.length);
+
+        final long[] cold = run(command);
+        for (int i = 1; i < WARM_UP_RUNS; i++) {
+            run(command);
+        }
+
+        final long[] firstOutput = new long[runs];
+        final long[] exit = new long[runs];
+        final long[] peakRss = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            final long[] results = run(command);
+            firstOutput[i] = results[0];
+            exit[i] = results[1];
+            peakRss[i] = results[2];
+        }
+
+        System.out.println(command);
+        System.out.println(String.format("Cold start:   first output %.1fms, exit %.1fms", cold[0] / 1e6, cold[1] / 1e6));
+        System.out.println("First output: " + summarise(firstOutput, 1e6, "ms"));
+        System.out.println("Exit:         " + summarise(exit, 1e6, "ms"));
+        if (peakRss[0] >= 0) {
+            System.out.println("Peak RSS:     " + summarise(peakRss, 1024, "MB"));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.cleggatt.invaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Single invaders chosen and coloured by a hash of a key, such as a user ID, for use as identicons. The same key always
+ * gives the same avatar for the same size, palette and colour mode.
+ * <p>
+ * Avatars are drawn straight into the caller's buffer, or encoded as PNGs. Encoded PNGs can be kept in a small least
+ * recently used cache. Each thread keeps the tables it draws with, so drawing allocates almost nothing. Instances are
+ * thread safe.
+ */
+public final class Avatars {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final Invaders invaders;
+    private final int border;
+    private final EdgeKernel kernel;
+    private final int width;
+    private final int height;
+    private final Map<Long, byte[]> cache;
+    private final ThreadLocal<Scratch> scratch;
+
+    // A thread's random source, reseeded with the hash of each avatar, and the tables and pixels it draws them in
+    private static final class Scratch {
+        private final SplitMix64 random = new SplitMix64(0);
+        private final TileColours colours;
+        private final boolean[][] pixels;
+        private final int[] argb;
+
+        private Scratch(Invaders invaders, int invaderWidth, int invaderHeight, int length) {
+            this.colours = invaders.getTileColours();
+            this.pixels = new boolean[invaderHeight][invaderWidth * 2];
+            this.argb = new int[length];
+        }
+    }
+
+    private static final class ScratchPerThread extends ThreadLocal<Scratch> {
+        private final Invaders invaders;
+        private final int invaderWidth;
+        private final int invaderHeight;
+        private final int length;
+
+        private ScratchPerThread(Invaders invaders, int invaderWidth, int invaderHeight, int length) {
+            this.invaders = invaders;
+            this.invaderWidth = invaderWidth;
+            this.invaderHeight = invaderHeight;
+            this.length = length;
+        }
+
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(invaders, invaderWidth, invaderHeight, length);
+        }
+    }
+
+    /**
+     * Avatars in the default palette, in a single colour, with square edges and no cache.
+     *
+     * @param width the width of the randomly generated invader. This is <b>half</b> the width of the avatar.
+     */
+    public Avatars(int width, int height, int scale, int border) {
+        this(width, height, scale, border, Palette.DEFAULT, Invaders.ColourMode.Flat, Invaders.Edge.Square, 0);
+    }
+
+    /**
+     * @param width the width of the randomly generated invader. This is <b>half</b> the width of the avatar.
+     * @param cacheSize the number of encoded PNGs to keep, or 0 for none
+     */
+    public Avatars(int width, int height, int scale, int border, Palette palette, Invaders.ColourMode colourMode, Invaders.Edge edge, final int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException(String.format("Invalid cache size %d", cacheSize));
+        }
+        // Avatars are chosen by hash, so neither random source is ever used
+        this.invaders = new Invaders(width, height, scale, null, null, palette, colourMode);
+        this.border = border;
+        this.kernel = (edge == Invaders.Edge.Square) ? null : new EdgeKernel(edge, scale);
+        this.width = invaders.getTileWidth(border);
+        this.height = invaders.getTileHeight(border);
+        this.scratch = new ScratchPerThread(invaders, width, height, this.width * this.height);
+        this.cache = (cacheSize == 0) ? null : new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @return the width of an avatar in pixels, including its border
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of an avatar in pixels, including its border
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the 64-bit FNV-1a hash of <code>key</code>
+     */
+    public static long hash(byte[] key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key) {
+            hash ^= (b & 0xFF);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @return the hash of the UTF-8 encoding of <code>key</code>
+     */
+    public static long hash(String key) {
+        return hash(key.getBytes(UTF_8));
+    }
+
+    /**
+     * Draws the avatar for <code>hash</code> as <code>INT_ARGB</code> pixels, starting at <code>offset</code>.
+     *
+     * @param stride the number of pixels from the start of one row to the start of the next
+     */
+    public void render(long hash, int[] argb, int offset, int stride) {
+        checkBounds(argb.length, offset, stride, 1);
+        render(hash, scratch.get(), argb, offset, stride);
+    }
+
+    private void render(long hash, Scratch tables, int[] argb, int offset, int stride) {
+        tables.random.setSeed(hash);
+        invaders.drawInvader(tables.random, tables.colours, tables.pixels, border, kernel, argb, offset, stride);
+    }
+
+    /**
+     * Draws the avatar for <code>hash</code> as RGBA bytes, starting at <code>offset</code>.
+     *
+     * @param stride the number of pixels from the start of one row to the start of the next
+     */
+    public void render(long hash, byte[] rgba, int offset, int stride) {
+        checkBounds(rgba.length, offset, stride, 4);
+        final Scratch tables = scratch.get();
+        final int[] argb = tables.argb;
+        render(hash, tables, argb, 0, width);
+        for (int y = 0; y < height; y++) {
+            int pos = offset + (y * stride * 4);
+            for (int x = 0; x < width; x++) {
+                final int pixel = argb[(y * width) + x];
+                rgba[pos++] = (byte) (pixel >> 16);
+                rgba[pos++] = (byte) (pixel >> 8);
+                rgba[pos++] = (byte) pixel;
+                rgba[pos++] = (byte) (pixel >> 24);
+            }
+        }
+    }
+
+    private void checkBounds(int length, int offset, int stride, int elementsPerPixel) {
+        if (offset < 0 || stride < width || offset + ((((long) (height - 1) * stride) + width) * elementsPerPixel) > length) {
+            throw new IllegalArgumentException(String.format("A %d x %d avatar does not fit in %d elements from %d with a stride of %d",
+                    width, height, length, offset, stride));
+        }
+    }
+
+    /**
+     * @return the avatar for <code>hash</code>, encoded as a PNG
+     */
+    public byte[] png(long hash) {
+        if (cache != null) {
+            final byte[] cached;
+            synchronized (cache) {
+                cached = cache.get(hash);
+            }
+            if (cached != null) {
+                return cached.clone();
+            }
+        }
+
+        final Scratch tables = scratch.get();
+        render(hash, tables, tables.argb, 0, width);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            PngEncoder.write(new PixelImage(tables.argb, width, height), false, out);
+        } catch (IOException e) {
+            // A ByteArrayOutputStream never throws
+            throw new IllegalStateException(e);
+        }
+        final byte[] png = out.toByteArray();
+
+        if (cache != null) {
+            synchronized (cache) {
+                cache.put(hash, png.clone());
+            }
+        }
+        return png;
+    }
+
+    /**
+     * @return the avatar for <code>key</code>, encoded as a PNG
+     */
+    public byte[] png(String key) {
+        return png(hash(key));
+    }
+
+    /**
+     * @return the avatar for <code>key</code>, encoded as a PNG
+     */
+    public byte[] png(byte[] key) {
+        return png(hash(key));
+    }
+}
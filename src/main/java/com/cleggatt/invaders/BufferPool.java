@@ -0,0 +1,126 @@
+package com.cleggatt.invaders;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Arrays to borrow and give back, so that rendering the same sizes over and over does not allocate. Arrays are pooled
+ * in size classes of powers of two, each with a fixed number of slots, so a borrowed array may be longer than asked
+ * for. Borrowing and giving back never lock or allocate. Thread safe.
+ *
+ * @param <T> the type of array
+ */
+abstract class BufferPool<T> {
+
+    // Smaller arrays are as cheap to allocate as to pool
+    private static final int MIN_BITS = 10;
+    private static final int CLASSES = 31 - MIN_BITS;
+
+    private final int slotsPerSize;
+    private final int maxLength;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong allocated = new AtomicLong();
+
+    /**
+     * @param slotsPerSize the most arrays of each size class kept once given back
+     * @param maxLength the longest array to pool. Longer arrays are allocated for every borrower, and dropped when given
+     *                  back.
+     */
+    private BufferPool(int slotsPerSize, int maxLength) {
+        if (slotsPerSize < 1) {
+            throw new IllegalArgumentException(String.format("Invalid slots per size %d", slotsPerSize));
+        }
+        this.slotsPerSize = slotsPerSize;
+        this.maxLength = maxLength;
+        this.slots = new AtomicReferenceArray<T>(CLASSES * slotsPerSize);
+    }
+
+    static BufferPool<int[]> ints(int slotsPerSize, int maxLength) {
+        return new BufferPool<int[]>(slotsPerSize, maxLength) {
+            @Override
+            int[] allocate(int length) {
+                return new int[length];
+            }
+
+            @Override
+            int length(int[] buffer) {
+                return buffer.length;
+            }
+        };
+    }
+
+    static BufferPool<char[]> chars(int slotsPerSize, int maxLength) {
+        return new BufferPool<char[]>(slotsPerSize, maxLength) {
+            @Override
+            char[] allocate(int length) {
+                return new char[length];
+            }
+
+            @Override
+            int length(char[] buffer) {
+                return buffer.length;
+            }
+        };
+    }
+
+    abstract T allocate(int length);
+
+    abstract int length(T buffer);
+
+    // The size class an array of at least length fits in, or -1 if it is too long to pool
+    private int getSizeClass(int length) {
+        if (length > maxLength) {
+            return -1;
+        }
+        final int bits = Math.max(MIN_BITS, 32 - Integer.numberOfLeadingZeros(Math.max(0, length - 1)));
+        return (bits > 30) ? -1 : bits - MIN_BITS;
+    }
+
+    /**
+     * @return an array of at least <code>length</code> elements, whose contents are undefined
+     */
+    T borrow(int length) {
+        final int sizeClass = getSizeClass(length);
+        if (sizeClass < 0) {
+            allocated.incrementAndGet();
+            return allocate(length);
+        }
+        final int first = sizeClass * slotsPerSize;
+        for (int i = first; i < first + slotsPerSize; i++) {
+            if (slots.get(i) != null) {
+                final T buffer = slots.getAndSet(i, null);
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+        }
+        allocated.incrementAndGet();
+        return allocate(1 << (sizeClass + MIN_BITS));
+    }
+
+    /**
+     * Gives back an array from {@link #borrow(int)}, which the caller must not use again. It is kept if there is a free
+     * slot for its size, and otherwise left to the garbage collector.
+     */
+    void giveBack(T buffer) {
+        final int length = length(buffer);
+        final int sizeClass = getSizeClass(length);
+        // Arrays too long to pool, or not from the pool, are never kept
+        if (sizeClass < 0 || length != 1 << (sizeClass + MIN_BITS)) {
+            return;
+        }
+        final int first = sizeClass * slotsPerSize;
+        for (int i = first; i < first + slotsPerSize; i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of arrays allocated, rather than reused, by {@link #borrow(int)}
+     */
+    long getAllocated() {
+        return allocated.get();
+    }
+}
@@ -0,0 +1,29 @@
+package com.cleggatt.invaders;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Adapts {@link PixelImage}s to AWT. This is the only class used to render invaders which touches <code>java.awt</code>.
+ */
+final class BufferedImages {
+
+    private BufferedImages() {
+    }
+
+    /**
+     * @return a <code>TYPE_INT_ARGB</code> image sharing the pixels of <code>image</code>, so no copy is made
+     */
+    static BufferedImage wrap(PixelImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+        final DataBufferInt buffer = new DataBufferInt(image.getPixels(), width * height);
+        final WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width, model.getMasks(), null);
+        return new BufferedImage(model, raster, false, null);
+    }
+}
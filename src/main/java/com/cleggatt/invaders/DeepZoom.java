@@ -0,0 +1,318 @@
+package com.cleggatt.invaders;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Writes tiles as a Deep Zoom Image: a pyramid of PNGs {@link #TILE_SIZE} pixels square, at every level from a single
+ * pixel up to the full image, described by an XML file. The full image is laid out as
+ * {@link Invaders#getPixelInvaders(int, int, int, Invaders.Edge)} would draw it.
+ * <p>
+ * Each PNG of the full image is drawn on its own, in parallel, and each PNG of a lower level is downsampled from the
+ * four above it as soon as they are done. The full image is never held in memory. A blurred PNG is drawn with a margin
+ * as wide as the blur radius, so it is exactly as it would be in the whole blurred image.
+ */
+final class DeepZoom {
+
+    static final int TILE_SIZE = 256;
+
+    private static final String DESCRIPTOR_EXTENSION = ".dzi";
+    private static final String PNG_EXTENSION = ".png";
+
+    private final Invaders invaders;
+    private final Invaders.TileGrid grid;
+    private final int border;
+    private final EdgeKernel kernel;
+    private final int blurRadius;
+    // The size of an invader's tile, rather than a PNG
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int width;
+    private final int height;
+    private final int maxLevel;
+
+    /**
+     * @param grid the invaders to draw, generated by <code>invaders</code>
+     * @param blurRadius the radius of the guassian blur filter to apply, or 0 for none
+     */
+    DeepZoom(Invaders invaders, Invaders.TileGrid grid, int border, Invaders.Edge edge, int blurRadius) {
+        this.invaders = invaders;
+        this.grid = grid;
+        this.border = border;
+        this.kernel = (edge == Invaders.Edge.Square) ? null : new EdgeKernel(edge, invaders.getScale());
+        this.blurRadius = blurRadius;
+        this.tileWidth = invaders.getTileWidth(border);
+        this.tileHeight = invaders.getTileHeight(border);
+        this.width = tileWidth * grid.getNumWide();
+        this.height = tileHeight * grid.getNumHigh();
+
+        int level = 0;
+        while ((1L << level) < Math.max(width, height)) {
+            level++;
+        }
+        this.maxLevel = level;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of levels, where level 0 is a single pixel and the last is the full image
+     */
+    int getLevels() {
+        return maxLevel + 1;
+    }
+
+    int getLevelWidth(int level) {
+        return ((width - 1) >> (maxLevel - level)) + 1;
+    }
+
+    int getLevelHeight(int level) {
+        return ((height - 1) >> (maxLevel - level)) + 1;
+    }
+
+    /**
+     * @return the descriptor for an output file name, e.g. <code>invader.dzi</code> for <code>invader.png</code>
+     */
+    static File getDescriptor(String output) {
+        if (output.toLowerCase().endsWith(PNG_EXTENSION)) {
+            output = output.substring(0, output.length() - PNG_EXTENSION.length());
+        }
+        return new File(output + DESCRIPTOR_EXTENSION);
+    }
+
+    /**
+     * @return the directory in which the PNGs for a descriptor are written, e.g. <code>invader_files</code> for
+     *         <code>invader.dzi</code>
+     */
+    static File getTileDirectory(File descriptor) {
+        String name = descriptor.getName();
+        if (name.endsWith(DESCRIPTOR_EXTENSION)) {
+            name = name.substring(0, name.length() - DESCRIPTOR_EXTENSION.length());
+        }
+        return new File(descriptor.getAbsoluteFile().getParentFile(), name + "_files");
+    }
+
+    /**
+     * Writes the PNGs of every level, using the threads of <code>pool</code>, and then the descriptor.
+     */
+    void write(File descriptor, ForkJoinPool pool) throws IOException {
+        final File directory = getTileDirectory(descriptor);
+        for (int level = 0; level <= maxLevel; level++) {
+            final File levelDirectory = new File(directory, Integer.toString(level));
+            if (!levelDirectory.isDirectory() && !levelDirectory.mkdirs()) {
+                throw new IOException(String.format("Could not create directory %s", levelDirectory.getAbsolutePath()));
+            }
+        }
+
+        try {
+            pool.invoke(new PngTask(directory, 0, 0, 0));
+        } catch (RuntimeException e) {
+            // The pool may rethrow a copy of the exception, so look for the IOException anywhere in the chain
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw e;
+        }
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(descriptor), "UTF-8");
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write(String.format("<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\"%d\">\n", TILE_SIZE));
+            writer.write(String.format("    <Size Width=\"%d\" Height=\"%d\"/>\n", width, height));
+            writer.write("</Image>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Draws the part of the full image covered by a PNG of the last level.
+     */
+    // VisibleForTesting
+    PixelImage render(int column, int row) {
+        final int x0 = column * TILE_SIZE;
+        final int y0 = row * TILE_SIZE;
+        final int w = Math.min(TILE_SIZE, width - x0);
+        final int h = Math.min(TILE_SIZE, height - y0);
+        if (blurRadius == 0) {
+            return new PixelImage(render(x0, y0, w, h), w, h);
+        }
+
+        // Blur with a margin, so only the edges of the full image are treated as edges
+        final int left = Math.max(0, x0 - blurRadius);
+        final int top = Math.max(0, y0 - blurRadius);
+        final int marginWidth = Math.min(width, x0 + w + blurRadius) - left;
+        final int marginHeight = Math.min(height, y0 + h + blurRadius) - top;
+        final int[] blurred = new int[marginWidth * marginHeight];
+        GaussianBlur.blur(render(left, top, marginWidth, marginHeight), blurred, marginWidth, marginHeight, blurRadius,
+                x0 - left, y0 - top, x0 - left + w, y0 - top + h);
+        final int[] data = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(blurred, ((y0 - top + y) * marginWidth) + (x0 - left), data, y * w, w);
+        }
+        return new PixelImage(data, w, h);
+    }
+
+    // Draws a rectangle of the full image, without blurring it
+    private int[] render(int x0, int y0, int w, int h) {
+        final int[] data = new int[w * h];
+        final TileColours colours = invaders.getTileColours();
+
+        // Invaders which only partly overlap are drawn here and then copied
+        int[] scratch = null;
+        for (int ty = y0 / tileHeight; ty <= (y0 + h - 1) / tileHeight; ty++) {
+            for (int tx = x0 / tileWidth; tx <= (x0 + w - 1) / tileWidth; tx++) {
+                final int index = (ty * grid.getNumWide()) + tx;
+                final int left = (tx * tileWidth) - x0;
+                final int top = (ty * tileHeight) - y0;
+                if (left >= 0 && top >= 0 && left + tileWidth <= w && top + tileHeight <= h) {
+                    invaders.drawInvader(grid, index, colours, border, kernel, data, (top * w) + left, w);
+                    continue;
+                }
+                if (scratch == null) {
+                    scratch = new int[tileWidth * tileHeight];
+                }
+                invaders.drawInvader(grid, index, colours, border, kernel, scratch, 0, tileWidth);
+                final int fromX = Math.max(0, -left);
+                final int toX = Math.min(tileWidth, w - left);
+                for (int y = Math.max(0, -top); y < Math.min(tileHeight, h - top); y++) {
+                    System.arraycopy(scratch, (y * tileWidth) + fromX, data, ((top + y) * w) + left + fromX, toX - fromX);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Halves up to four PNGs of a level, in the order top left, top right, bottom left, bottom right, into one of the
+     * level below. Missing PNGs are <code>null</code>, and each pixel is the average of those it covers.
+     */
+    // VisibleForTesting
+    static PixelImage downsample(PixelImage[] quadrants, int w, int h) {
+        final int[] data = new int[w * h];
+        for (int q = 0; q < quadrants.length; q++) {
+            final PixelImage quadrant = quadrants[q];
+            if (quadrant == null) {
+                continue;
+            }
+            final int srcWidth = quadrant.getWidth();
+            final int srcHeight = quadrant.getHeight();
+            final int[] src = quadrant.getPixels();
+            final int left = (q % 2) * (TILE_SIZE / 2);
+            final int top = (q / 2) * (TILE_SIZE / 2);
+            for (int y = 0; y < (srcHeight + 1) / 2; y++) {
+                for (int x = 0; x < (srcWidth + 1) / 2; x++) {
+                    int r = 0;
+                    int g = 0;
+                    int b = 0;
+                    int count = 0;
+                    for (int sy = y * 2; sy < Math.min((y * 2) + 2, srcHeight); sy++) {
+                        for (int sx = x * 2; sx < Math.min((x * 2) + 2, srcWidth); sx++) {
+                            final int pixel = src[(sy * srcWidth) + sx];
+                            r += (pixel >> 16) & 0xFF;
+                            g += (pixel >> 8) & 0xFF;
+                            b += pixel & 0xFF;
+                            count++;
+                        }
+                    }
+                    final int half = count / 2;
+                    data[((top + y) * w) + left + x] = 0xFF000000
+                            | (((r + half) / count) << 16)
+                            | (((g + half) / count) << 8)
+                            | ((b + half) / count);
+                }
+            }
+        }
+        return new PixelImage(data, w, h);
+    }
+
+    private static void writePng(PixelImage image, File output) throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            PngEncoder.write(image, false, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    // Only used to carry an IOException out of the pool
+    private static final class PngException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private PngException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Writes a PNG, after writing the four above it that it is downsampled from, and returns its pixels.
+     */
+    private final class PngTask extends RecursiveTask<PixelImage> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+        private final int level;
+        private final int column;
+        private final int row;
+
+        private PngTask(File directory, int level, int column, int row) {
+            this.directory = directory;
+            this.level = level;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        protected PixelImage compute() {
+            final PixelImage image;
+            if (level == maxLevel) {
+                image = render(column, row);
+            } else {
+                final int columns = (getLevelWidth(level + 1) + TILE_SIZE - 1) / TILE_SIZE;
+                final int rows = (getLevelHeight(level + 1) + TILE_SIZE - 1) / TILE_SIZE;
+                final PngTask[] quadrants = new PngTask[4];
+                final List<PngTask> tasks = new ArrayList<PngTask>(4);
+                for (int q = 0; q < quadrants.length; q++) {
+                    final int c = (column * 2) + (q % 2);
+                    final int r = (row * 2) + (q / 2);
+                    if (c < columns && r < rows) {
+                        quadrants[q] = new PngTask(directory, level + 1, c, r);
+                        tasks.add(quadrants[q]);
+                    }
+                }
+                invokeAll(tasks);
+                final PixelImage[] images = new PixelImage[quadrants.length];
+                for (int q = 0; q < quadrants.length; q++) {
+                    images[q] = (quadrants[q] == null) ? null : quadrants[q].join();
+                }
+                final int w = Math.min(TILE_SIZE, getLevelWidth(level) - (column * TILE_SIZE));
+                final int h = Math.min(TILE_SIZE, getLevelHeight(level) - (row * TILE_SIZE));
+                image = downsample(images, w, h);
+            }
+            try {
+                writePng(image, new File(new File(directory, Integer.toString(level)), String.format("%d_%d.png", column, row)));
+            } catch (IOException e) {
+                throw new PngException(e);
+            }
+            return image;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.cleggatt.invaders;
+
+/**
+ * Pre-computed coverage masks for drawing a single scaled pixel with anti-aliased edges.
+ * <p>
+ * A mask is held for each combination of set neighbours (north, east, south and west), so only the edges which face
+ * an empty pixel are shaped. Coverage is calculated once per scale by super-sampling each output pixel.
+ */
+final class EdgeKernel {
+
+    static final int NORTH = 1;
+    static final int EAST = 2;
+    static final int SOUTH = 4;
+    static final int WEST = 8;
+    static final int ALL = NORTH | EAST | SOUTH | WEST;
+
+    private static final int SAMPLES = 4;
+
+    private final int scale;
+    private final int[][] alphas;
+
+    EdgeKernel(Invaders.Edge edge, int scale) {
+
+        if (edge == Invaders.Edge.Square) {
+            throw new IllegalArgumentException("Square edges do not require a kernel");
+        }
+
+        this.scale = scale;
+        this.alphas = new int[ALL + 1][];
+
+        for (int neighbours = 0; neighbours <= ALL; neighbours++) {
+            alphas[neighbours] = createMask(edge, neighbours);
+        }
+    }
+
+    int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the alpha (0-255) of each pixel in the scaled pixel, in row order
+     */
+    int[] getAlphas(int neighbours) {
+        return alphas[neighbours];
+    }
+
+    private int[] createMask(Invaders.Edge edge, int neighbours) {
+
+        final int[] mask = new int[scale * scale];
+
+        for (int y = 0; y < scale; y++) {
+            for (int x = 0; x < scale; x++) {
+                double coverage = 0;
+                for (int sy = 0; sy < SAMPLES; sy++) {
+                    for (int sx = 0; sx < SAMPLES; sx++) {
+                        final double u = (x + ((sx + 0.5) / SAMPLES)) / scale;
+                        final double v = (y + ((sy + 0.5) / SAMPLES)) / scale;
+                        coverage += (edge == Invaders.Edge.Round) ? round(u, v, neighbours) : soft(u, v, neighbours);
+                    }
+                }
+                mask[(y * scale) + x] = (int) Math.round((coverage / (SAMPLES * SAMPLES)) * 255);
+            }
+        }
+
+        return mask;
+    }
+
+    // Corners with no neighbour on either side are cut to a quarter circle
+    private static double round(double u, double v, int neighbours) {
+        final double cornerU = (u < 0.5) ? 0.5 - u : u - 0.5;
+        final double cornerV = (v < 0.5) ? 0.5 - v : v - 0.5;
+        final int horizontal = (u < 0.5) ? WEST : EAST;
+        final int vertical = (v < 0.5) ? NORTH : SOUTH;
+
+        if ((neighbours & (horizontal | vertical)) != 0) {
+            return 1;
+        }
+        return ((cornerU * cornerU) + (cornerV * cornerV)) > 0.25 ? 0 : 1;
+    }
+
+    // Exposed edges fade linearly over half a pixel
+    private static double soft(double u, double v, int neighbours) {
+        double coverage = 1;
+        if ((neighbours & NORTH) == 0) {
+            coverage *= ramp(v);
+        }
+        if ((neighbours & SOUTH) == 0) {
+            coverage *= ramp(1 - v);
+        }
+        if ((neighbours & WEST) == 0) {
+            coverage *= ramp(u);
+        }
+        if ((neighbours & EAST) == 0) {
+            coverage *= ramp(1 - u);
+        }
+        return coverage;
+    }
+
+    private static double ramp(double distance) {
+        return Math.min(1, distance * 2);
+    }
+
+    static int shade(int colour, int alpha) {
+        final int r = (((colour >> 16) & 0xFF) * alpha + 127) / 255;
+        final int g = (((colour >> 8) & 0xFF) * alpha + 127) / 255;
+        final int b = ((colour & 0xFF) * alpha + 127) / 255;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+}
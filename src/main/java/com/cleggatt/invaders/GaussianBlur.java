@@ -0,0 +1,389 @@
+package com.cleggatt.invaders;
+
+import java.util.Arrays;
+
+/**
+ * A separable guassian blur over <code>INT_ARGB</code> pixels, producing exactly the same output as the swingx
+ * <code>GaussianBlurFilter</code>.
+ * <p>
+ * By default each pass unpacks the pixels into one float array per channel and accumulates each kernel tap across a
+ * whole row at a time, which the JIT can compile to SIMD instructions. Rows are blurred as they are read, so the
+ * whole image need not be in memory. The original pixel-at-a-time implementation, still blurring a row at a time,
+ * can be selected with <code>-Dinvaders.blur=scalar</code>.
+ */
+final class GaussianBlur {
+
+    // VisibleForTesting
+    static final boolean PLANAR = !"scalar".equals(System.getProperty("invaders.blur"));
+
+    private static final int CHANNELS = 4;
+
+    private GaussianBlur() {
+    }
+
+    static float[] createKernel(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("Radius must be >= 1");
+        }
+
+        final float[] data = new float[radius * 2 + 1];
+
+        final float sigma = radius / 3.0f;
+        final float twoSigmaSquare = 2.0f * sigma * sigma;
+        final float sigmaRoot = (float) Math.sqrt(twoSigmaSquare * Math.PI);
+        float total = 0.0f;
+
+        for (int i = -radius; i <= radius; i++) {
+            final float distance = i * i;
+            final int index = i + radius;
+            data[index] = (float) Math.exp(-distance / twoSigmaSquare) / sigmaRoot;
+            total += data[index];
+        }
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] /= total;
+        }
+
+        return data;
+    }
+
+    /**
+     * @return a new array holding the blurred pixels
+     */
+    static int[] blur(int[] pixels, int width, int height, int radius) {
+        return PLANAR ? blurPlanar(pixels, width, height, radius) : blurScalar(pixels, width, height, radius);
+    }
+
+    // VisibleForTesting
+    static int[] blurScalar(int[] pixels, int width, int height, int radius) {
+        final float[] kernel = createKernel(radius);
+        final int[] transposed = new int[pixels.length];
+        final int[] dst = new int[pixels.length];
+
+        blurTransposed(pixels, transposed, width, height, kernel, radius);
+        blurTransposed(transposed, dst, height, width, kernel, radius);
+
+        return dst;
+    }
+
+    private static void blurTransposed(int[] src, int[] dst, int width, int height, float[] kernel, int radius) {
+        for (int y = 0; y < height; y++) {
+            int index = y;
+            final int offset = y * width;
+
+            for (int x = 0; x < width; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+
+                for (int i = -radius; i <= radius; i++) {
+                    int subOffset = x + i;
+                    if (subOffset < 0 || subOffset >= width) {
+                        // Edges are weighted with the centre pixel, as GaussianBlurFilter does
+                        subOffset = x;
+                    }
+
+                    final int pixel = src[offset + subOffset];
+                    final float factor = kernel[radius + i];
+
+                    a += factor * ((pixel >> 24) & 0xFF);
+                    r += factor * ((pixel >> 16) & 0xFF);
+                    g += factor * ((pixel >> 8) & 0xFF);
+                    b += factor * (pixel & 0xFF);
+                }
+
+                dst[index] = pack(a, r, g, b);
+                index += height;
+            }
+        }
+    }
+
+    // VisibleForTesting
+    static int[] blurPlanar(int[] pixels, int width, int height, int radius) {
+        final RowSource blurred = blur(new PixelImage(pixels, width, height), radius, true);
+        final int[] dst = new int[pixels.length];
+        final int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            blurred.getRow(y, row);
+            System.arraycopy(row, 0, dst, y * width, width);
+        }
+        return dst;
+    }
+
+    /**
+     * Blurs only the pixels of <code>src</code> within a rectangle, writing them to <code>dst</code>. They are exactly
+     * the pixels {@link #blur(int[], int, int, int)} would produce, as pixels outside the rectangle are read as needed.
+     *
+     * @param x0 the left of the rectangle (inclusive)
+     * @param x1 the right of the rectangle (exclusive)
+     */
+    static void blur(int[] src, int[] dst, int width, int height, int radius, int x0, int y0, int x1, int y1) {
+        final float[] kernel = createKernel(radius);
+        final int regionWidth = x1 - x0;
+        final int firstRow = Math.max(0, y0 - radius);
+        final int lastRow = Math.min(height, y1 + radius);
+
+        // The horizontal pass over every row the vertical pass reads, rounded as it would be for the whole image
+        final int[] horizontal = new int[(lastRow - firstRow) * regionWidth];
+        for (int y = firstRow; y < lastRow; y++) {
+            final int offset = y * width;
+            int index = (y - firstRow) * regionWidth;
+            for (int x = x0; x < x1; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    final int subOffset = (x + i < 0 || x + i >= width) ? x : x + i;
+                    final int pixel = src[offset + subOffset];
+                    final float factor = kernel[radius + i];
+                    a += factor * ((pixel >> 24) & 0xFF);
+                    r += factor * ((pixel >> 16) & 0xFF);
+                    g += factor * ((pixel >> 8) & 0xFF);
+                    b += factor * (pixel & 0xFF);
+                }
+                horizontal[index++] = pack(a, r, g, b);
+            }
+        }
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    final int subY = (y + i < 0 || y + i >= height) ? y : y + i;
+                    final int pixel = horizontal[((subY - firstRow) * regionWidth) + (x - x0)];
+                    final float factor = kernel[radius + i];
+                    a += factor * ((pixel >> 24) & 0xFF);
+                    r += factor * ((pixel >> 16) & 0xFF);
+                    g += factor * ((pixel >> 8) & 0xFF);
+                    b += factor * (pixel & 0xFF);
+                }
+                dst[(y * width) + x] = pack(a, r, g, b);
+            }
+        }
+    }
+
+    /**
+     * Blurs rows as they are read, so only <code>(radius * 2) + 1</code> rows are held in memory. Rows must be read in
+     * order, starting from the first.
+     */
+    static RowSource blur(RowSource src, int radius) {
+        return blur(src, radius, PLANAR);
+    }
+
+    // VisibleForTesting
+    static RowSource blur(RowSource src, int radius, boolean planar) {
+        return planar ? new PlanarRows(src, radius) : new ScalarRows(src, radius);
+    }
+
+    /**
+     * Rows blurred vertically from a window of rows which have been blurred horizontally as they were read.
+     */
+    private abstract static class BlurredRows implements RowSource {
+
+        final RowSource src;
+        final int width;
+        final int height;
+        final int radius;
+        final float[] kernel;
+        // The number of horizontally blurred rows held
+        final int window;
+
+        private int next = 0;
+        private int loaded = -1;
+
+        BlurredRows(RowSource src, int radius) {
+            this.src = src;
+            this.width = src.getWidth();
+            this.height = src.getHeight();
+            this.radius = radius;
+            this.kernel = createKernel(radius);
+            this.window = Math.min((radius * 2) + 1, height);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Reads row <code>y</code> and blurs it horizontally, into slot <code>y % window</code>.
+         */
+        abstract void load(int y);
+
+        /**
+         * Blurs row <code>y</code> vertically, from the loaded rows.
+         */
+        abstract void blur(int y, int[] row);
+
+        // The loaded row to use at y + i, which at the edges is the centre row, as GaussianBlurFilter does
+        int getSource(int y, int i) {
+            return ((y + i < 0 || y + i >= height) ? y : y + i) % window;
+        }
+
+        @Override
+        public void getRow(int y, int[] row) {
+            if (y != next) {
+                throw new IllegalStateException(String.format("Expected row %d, not row %d", next, y));
+            }
+
+            final int last = Math.min(height - 1, y + radius);
+            while (loaded < last) {
+                load(++loaded);
+            }
+            blur(y, row);
+
+            next++;
+        }
+    }
+
+    private static final class PlanarRows extends BlurredRows {
+
+        // Horizontally blurred rows, unpacked by channel
+        private final float[][][] rows;
+        private final int[] line;
+        private final float[][] channels;
+        private final float[][] sums;
+
+        private PlanarRows(RowSource src, int radius) {
+            super(src, radius);
+            this.rows = new float[window][CHANNELS][width];
+            this.line = new int[width];
+            this.channels = new float[CHANNELS][width];
+            this.sums = new float[CHANNELS][width];
+        }
+
+        @Override
+        void load(int y) {
+            src.getRow(y, line);
+            unpack(line, 0, width, channels);
+            for (int c = 0; c < CHANNELS; c++) {
+                final float[] channel = channels[c];
+                final float[] sum = sums[c];
+                Arrays.fill(sum, 0);
+                for (int i = -radius; i <= radius; i++) {
+                    final float factor = kernel[radius + i];
+                    final int start = Math.min(width, Math.max(0, -i));
+                    final int end = Math.max(start, Math.min(width, width - i));
+                    for (int x = 0; x < start; x++) {
+                        sum[x] += factor * channel[x];
+                    }
+                    for (int x = start; x < end; x++) {
+                        sum[x] += factor * channel[x + i];
+                    }
+                    for (int x = end; x < width; x++) {
+                        sum[x] += factor * channel[x];
+                    }
+                }
+                // Round as the horizontal pass of GaussianBlurFilter does
+                final float[] blurred = rows[y % window][c];
+                for (int x = 0; x < width; x++) {
+                    final int value = (int) (sum[x] + 0.5f);
+                    blurred[x] = value > 255 ? 255 : value;
+                }
+            }
+        }
+
+        @Override
+        void blur(int y, int[] row) {
+            for (int c = 0; c < CHANNELS; c++) {
+                final float[] sum = sums[c];
+                Arrays.fill(sum, 0);
+                for (int i = -radius; i <= radius; i++) {
+                    final float factor = kernel[radius + i];
+                    final float[] channel = rows[getSource(y, i)][c];
+                    for (int x = 0; x < width; x++) {
+                        sum[x] += factor * channel[x];
+                    }
+                }
+            }
+            pack(sums, row, 0, width);
+        }
+    }
+
+    /**
+     * As {@link #blurScalar(int[], int, int, int)}, a pixel at a time, but a row at a time.
+     */
+    private static final class ScalarRows extends BlurredRows {
+
+        // Horizontally blurred rows, packed as the first pass of the scalar blur leaves them
+        private final int[][] rows;
+        private final int[] line;
+
+        private ScalarRows(RowSource src, int radius) {
+            super(src, radius);
+            this.rows = new int[window][width];
+            this.line = new int[width];
+        }
+
+        @Override
+        void load(int y) {
+            src.getRow(y, line);
+            final int[] blurred = rows[y % window];
+            for (int x = 0; x < width; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    final int pixel = line[(x + i < 0 || x + i >= width) ? x : x + i];
+                    final float factor = kernel[radius + i];
+                    a += factor * ((pixel >> 24) & 0xFF);
+                    r += factor * ((pixel >> 16) & 0xFF);
+                    g += factor * ((pixel >> 8) & 0xFF);
+                    b += factor * (pixel & 0xFF);
+                }
+                blurred[x] = pack(a, r, g, b);
+            }
+        }
+
+        @Override
+        void blur(int y, int[] row) {
+            for (int x = 0; x < width; x++) {
+                float a = 0, r = 0, g = 0, b = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    final int pixel = rows[getSource(y, i)][x];
+                    final float factor = kernel[radius + i];
+                    a += factor * ((pixel >> 24) & 0xFF);
+                    r += factor * ((pixel >> 16) & 0xFF);
+                    g += factor * ((pixel >> 8) & 0xFF);
+                    b += factor * (pixel & 0xFF);
+                }
+                row[x] = pack(a, r, g, b);
+            }
+        }
+    }
+
+    private static void unpack(int[] pixels, int offset, int width, float[][] channels) {
+        final float[] a = channels[0];
+        final float[] r = channels[1];
+        final float[] g = channels[2];
+        final float[] b = channels[3];
+        for (int x = 0; x < width; x++) {
+            final int pixel = pixels[offset + x];
+            a[x] = (pixel >> 24) & 0xFF;
+            r[x] = (pixel >> 16) & 0xFF;
+            g[x] = (pixel >> 8) & 0xFF;
+            b[x] = pixel & 0xFF;
+        }
+    }
+
+    private static void pack(float[][] channels, int[] pixels, int offset, int width) {
+        final float[] a = channels[0];
+        final float[] r = channels[1];
+        final float[] g = channels[2];
+        final float[] b = channels[3];
+        for (int x = 0; x < width; x++) {
+            pixels[offset + x] = pack(a[x], r[x], g[x], b[x]);
+        }
+    }
+
+    private static int pack(float a, float r, float g, float b) {
+        final int ca = (int) (a + 0.5f);
+        final int cr = (int) (r + 0.5f);
+        final int cg = (int) (g + 0.5f);
+        final int cb = (int) (b + 0.5f);
+
+        return ((ca > 255 ? 255 : ca) << 24) |
+               ((cr > 255 ? 255 : cr) << 16) |
+               ((cg > 255 ? 255 : cg) << 8) |
+                (cb > 255 ? 255 : cb);
+    }
+}
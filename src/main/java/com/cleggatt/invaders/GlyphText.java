@@ -0,0 +1,296 @@
+package com.cleggatt.invaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes tiles as UTF-8 text, a line at a time, straight from the invader values. Each character can stand for a block
+ * of pixels, so text is smaller and faster to write than with a character per pixel.
+ * <p>
+ * Text can be coloured with 24-bit ANSI escape sequences. An escape is only written when the colour changes along a
+ * line, and the escape for each colour is only encoded once.
+ */
+final class GlyphText {
+
+    /**
+     * Colours the tiles as they are written, so the colours of every tile are never held at once.
+     */
+    interface TileColouring {
+        /**
+         * @return the colour of each pixel of the tile at <code>index</code>, as {@link TileColours#colour} returns
+         *         them. The table is only valid until the next call.
+         */
+        int[][] colour(int index);
+    }
+
+    // The bit of a braille character for each dot, indexed by [y][x] within the 2 x 4 cell
+    private static final int[][] BRAILLE_DOTS = new int[][]{
+            {0x01, 0x08},
+            {0x02, 0x10},
+            {0x04, 0x20},
+            {0x40, 0x80}
+    };
+    private static final int BRAILLE_BLANK = 0x2800;
+    private static final int UPPER_HALF = 0x2580;
+    private static final int LOWER_HALF = 0x2584;
+    private static final int FULL_BLOCK = 0x2588;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] DEFAULT_BACKGROUND = "\u001B[49m".getBytes(ASCII);
+    private static final byte[] RESET = "\u001B[0m".getBytes(ASCII);
+    // The longest escape, e.g. ESC[38;2;255;255;255m
+    private static final int MAX_ESCAPE = 19;
+    private static final int NONE = -1;
+
+    private final long[] values;
+    private final TileColouring colouring;
+    private final int numWide;
+    private final int imageWidth;
+    private final int imageHeight;
+    // For each column and row of the image, the tile it is in, and the bit offset within the invader of the pixel, or
+    // -1 if it is in a border
+    private final int[] columnTiles;
+    private final int[] columnBits;
+    private final int[] rowTiles;
+    private final int[] rowBits;
+    // For each column and row of the image, the position of the pixel within the mirrored invader
+    private final int[] columnPixels;
+    private final int[] rowPixels;
+    // Copies of the colours of the tiles in the last two rows of tiles, as a line of characters can span both, indexed
+    // by the parity of the row and then the column, with the tile each holds, or -1
+    private final int[][][] colours;
+    private final int[] coloured;
+
+    private final Map<Integer, byte[]> foregrounds = new HashMap<Integer, byte[]>();
+    private final Map<Integer, byte[]> backgrounds = new HashMap<Integer, byte[]>();
+
+    /**
+     * @param values the invaders in each tile, row by row
+     * @param colouring the colours of the tiles, or <code>null</code> for uncoloured text
+     * @param palette the colours to encode escapes for up front. Any others are encoded as they are first used.
+     * @param width the width of the randomly generated invader, which is <b>half</b> the width of a tile
+     */
+    GlyphText(long[] values, TileColouring colouring, Palette palette, int numWide, int numHigh, int width, int height, int scale, int border) {
+        this.values = values;
+        this.colouring = colouring;
+        this.numWide = numWide;
+
+        final int tileWidth = (width * 2 * scale) + (border * 2);
+        final int tileHeight = (height * scale) + (border * 2);
+        imageWidth = tileWidth * numWide;
+        imageHeight = tileHeight * numHigh;
+
+        columnTiles = new int[imageWidth];
+        columnBits = new int[imageWidth];
+        columnPixels = new int[imageWidth];
+        for (int x = 0; x < imageWidth; x++) {
+            columnTiles[x] = x / tileWidth;
+            final int inTile = (x % tileWidth) - border;
+            if (inTile < 0 || inTile >= width * 2 * scale) {
+                columnBits[x] = -1;
+            } else {
+                final int pixel = inTile / scale;
+                columnPixels[x] = pixel;
+                // The right half is mirrored
+                columnBits[x] = (pixel < width) ? pixel : ((width * 2) - 1) - pixel;
+            }
+        }
+
+        rowTiles = new int[imageHeight];
+        rowBits = new int[imageHeight];
+        rowPixels = new int[imageHeight];
+        for (int y = 0; y < imageHeight; y++) {
+            rowTiles[y] = y / tileHeight;
+            final int inTile = (y % tileHeight) - border;
+            rowPixels[y] = (inTile < 0) ? 0 : inTile / scale;
+            rowBits[y] = (inTile < 0 || inTile >= height * scale) ? -1 : (inTile / scale) * width;
+        }
+
+        if (colouring == null) {
+            colours = null;
+            coloured = null;
+        } else {
+            colours = new int[2 * numWide][height][width * 2];
+            coloured = new int[2 * numWide];
+            Arrays.fill(coloured, -1);
+            for (int i = 0; i < palette.size(); i++) {
+                getEscape(foregrounds, 38, palette.get(i));
+                getEscape(backgrounds, 48, palette.get(i));
+            }
+        }
+    }
+
+    private static byte[] getEscape(Map<Integer, byte[]> escapes, int code, int colour) {
+        byte[] escape = escapes.get(colour);
+        if (escape == null) {
+            escape = String.format("\u001B[%d;2;%d;%d;%dm", code, (colour >> 16) & 0xFF, (colour >> 8) & 0xFF, colour & 0xFF).getBytes(ASCII);
+            escapes.put(colour, escape);
+        }
+        return escape;
+    }
+
+    /**
+     * @return the colour of a set pixel
+     */
+    private int getColour(int x, int y) {
+        final int tile = (rowTiles[y] * numWide) + columnTiles[x];
+        final int slot = ((rowTiles[y] & 1) * numWide) + columnTiles[x];
+        if (coloured[slot] != tile) {
+            final int[][] tileColours = colouring.colour(tile);
+            for (int row = 0; row < tileColours.length; row++) {
+                System.arraycopy(tileColours[row], 0, colours[slot][row], 0, tileColours[row].length);
+            }
+            coloured[slot] = tile;
+        }
+        return colours[slot][rowPixels[y]][columnPixels[x]];
+    }
+
+    private boolean isSet(int x, int y) {
+        if (x >= imageWidth || y >= imageHeight || columnBits[x] < 0 || rowBits[y] < 0) {
+            return false;
+        }
+        final long value = values[(rowTiles[y] * numWide) + columnTiles[x]];
+        return ((value >>> (rowBits[y] + columnBits[x])) & 1) != 0;
+    }
+
+    /**
+     * Writes the image as lines of <code>glyphs</code>, each ending with a line feed, followed by an empty line as
+     * {@link Invaders#getTextInvaders(int, int, int)} is printed.
+     */
+    void write(Invaders.Glyphs glyphs, OutputStream out) throws IOException {
+        final int cellWidth = (glyphs == Invaders.Glyphs.Braille) ? 2 : 1;
+        final int cellHeight = (glyphs == Invaders.Glyphs.Braille) ? 4 : (glyphs == Invaders.Glyphs.HalfBlock) ? 2 : 1;
+        final int columns = (imageWidth + cellWidth - 1) / cellWidth;
+
+        // Every character is at most 3 bytes in UTF-8, and may be preceded by a foreground and background escape
+        final int maxCharacter = (colours == null) ? 3 : 3 + (MAX_ESCAPE * 2);
+        final byte[] line = new byte[(columns * maxCharacter) + RESET.length + 1];
+        for (int y = 0; y < imageHeight; y += cellHeight) {
+            int pos = 0;
+            int foreground = NONE;
+            int background = NONE;
+            for (int x = 0; x < imageWidth; x += cellWidth) {
+                final int c;
+                // The colours of the character, if it is coloured
+                int fg = NONE;
+                int bg = NONE;
+                switch (glyphs) {
+                    case HalfBlock:
+                        final boolean top = isSet(x, y);
+                        final boolean bottom = isSet(x, y + 1);
+                        c = halfBlock(top, bottom);
+                        if (colours != null && (top || bottom)) {
+                            fg = getColour(x, top ? y : y + 1);
+                            if (top && bottom && getColour(x, y + 1) != fg) {
+                                // The upper half in the foreground, over the lower half in the background
+                                bg = getColour(x, y + 1);
+                            }
+                        }
+                        break;
+                    case Braille:
+                        c = braille(x, y);
+                        if (colours != null && c != ' ') {
+                            fg = getBrailleColour(x, y);
+                        }
+                        break;
+                    default:
+                        c = isSet(x, y) ? '*' : ' ';
+                        if (colours != null && c != ' ') {
+                            fg = getColour(x, y);
+                        }
+                        break;
+                }
+                if (bg != NONE) {
+                    // Both halves are set and differ, so this is always an upper half block
+                    if (bg != background) {
+                        pos = append(getEscape(backgrounds, 48, bg), line, pos);
+                        background = bg;
+                    }
+                    pos = append(line, pos, fg, foreground, UPPER_HALF);
+                    foreground = fg;
+                    continue;
+                }
+                if (background != NONE) {
+                    pos = append(DEFAULT_BACKGROUND, line, pos);
+                    background = NONE;
+                }
+                if (fg != NONE) {
+                    pos = append(line, pos, fg, foreground, c);
+                    foreground = fg;
+                } else {
+                    pos = encode(c, line, pos);
+                }
+            }
+            if (foreground != NONE || background != NONE) {
+                pos = append(RESET, line, pos);
+            }
+            line[pos++] = '\n';
+            out.write(line, 0, pos);
+        }
+        out.write('\n');
+    }
+
+    // Appends a character in the given foreground colour, with an escape if the colour has changed
+    private int append(byte[] line, int pos, int fg, int foreground, int c) {
+        if (fg != foreground) {
+            pos = append(getEscape(foregrounds, 38, fg), line, pos);
+        }
+        return encode(c, line, pos);
+    }
+
+    private static int append(byte[] bytes, byte[] line, int pos) {
+        System.arraycopy(bytes, 0, line, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    // The colour of the first set dot in a braille cell, as a character only has one
+    private int getBrailleColour(int x, int y) {
+        for (int dy = 0; dy < BRAILLE_DOTS.length; dy++) {
+            for (int dx = 0; dx < BRAILLE_DOTS[dy].length; dx++) {
+                if (isSet(x + dx, y + dy)) {
+                    return getColour(x + dx, y + dy);
+                }
+            }
+        }
+        throw new IllegalStateException("Empty braille cell");
+    }
+
+    private static int halfBlock(boolean top, boolean bottom) {
+        if (top) {
+            return bottom ? FULL_BLOCK : UPPER_HALF;
+        }
+        return bottom ? LOWER_HALF : ' ';
+    }
+
+    private int braille(int x, int y) {
+        int dots = 0;
+        for (int dy = 0; dy < BRAILLE_DOTS.length; dy++) {
+            for (int dx = 0; dx < BRAILLE_DOTS[dy].length; dx++) {
+                if (isSet(x + dx, y + dy)) {
+                    dots |= BRAILLE_DOTS[dy][dx];
+                }
+            }
+        }
+        // A space rather than a blank braille cell, as it is a third of the size
+        return (dots == 0) ? ' ' : BRAILLE_BLANK | dots;
+    }
+
+    // Encodes a character from the Basic Multilingual Plane as UTF-8
+    private static int encode(int c, byte[] bytes, int pos) {
+        if (c < 0x80) {
+            bytes[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[pos++] = (byte) (0xC0 | (c >> 6));
+            bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            bytes[pos++] = (byte) (0xE0 | (c >> 12));
+            bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,256 @@
+package com.cleggatt.invaders;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Renders, offsets, blurs and writes PNGs. None of this uses AWT or ImageIO, other than {@link Mosaic} reading the
+ * image a mosaic approximates.
+ */
+final class ImageOutput {
+
+    private ImageOutput() {
+    }
+
+    // VisibleForTesting
+    static RowSource offset(final RowSource src, final int pxDesiredWidth, final int pxDesiredHeight) {
+        final int width = (pxDesiredWidth < 1) ? src.getWidth() : pxDesiredWidth;
+        final int height = (pxDesiredHeight < 1) ? src.getHeight() : pxDesiredHeight;
+        final int left = (width - src.getWidth()) / 2;
+        final int top = (height - src.getHeight()) / 2;
+
+        return new RowSource() {
+            private final int[] srcRow = new int[src.getWidth()];
+
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public void getRow(int y, int[] row) {
+                Arrays.fill(row, 0, width, Invaders.BLACK);
+                final int srcY = y - top;
+                if (srcY < 0 || srcY >= src.getHeight()) {
+                    return;
+                }
+                src.getRow(srcY, srcRow);
+                // Clip as drawImage would if the source is larger than the desired size
+                final int start = Math.max(0, -left);
+                final int end = Math.min(src.getWidth(), width - left);
+                if (end > start) {
+                    System.arraycopy(srcRow, start, row, left + start, end - start);
+                }
+            }
+        };
+    }
+
+    // VisibleForTesting
+    static RowSource blur(RowSource src, int blurRadius) {
+        return (blurRadius == 0) ? src : GaussianBlur.blur(src, blurRadius);
+    }
+
+    private static void write(RowSource image, File output) throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            PngEncoder.write(image, false, out);
+        } finally {
+            out.close();
+        }
+        printSaved(image.getWidth(), image.getHeight(), output);
+    }
+
+    static void printSaved(int width, int height, File output) {
+        System.out.print(String.format("Saved %d x %d to %s\n", width, height, output.getAbsolutePath()));
+    }
+
+    /**
+     * @return the width of the PNG which would be written for these parameters, without rendering it
+     */
+    static int getWidth(Invaders invader, Main.Params params) {
+        return (params.getPxWidth() < 1) ? invader.getTileWidth(params.getBorder()) * params.getTileX() : params.getPxWidth();
+    }
+
+    /**
+     * @return the height of the PNG which would be written for these parameters, without rendering it
+     */
+    static int getHeight(Invaders invader, Main.Params params) {
+        return (params.getPxHeight() < 1) ? invader.getTileHeight(params.getBorder()) * params.getTileY() : params.getPxHeight();
+    }
+
+    private static void writeOffHeap(Invaders invader, Main.Params params) throws IOException {
+        final OffHeapRaster raster = invader.getOffHeapInvaders(params.getTileX(), params.getTileY(), params.getBorder(), params.getEdge(), null);
+        try {
+            write(blur(offset(raster, params.getPxWidth(), params.getPxHeight()), params.getBlurRadius()), new File(params.getOutputFile()));
+        } finally {
+            raster.close();
+        }
+    }
+
+    /**
+     * @return the output file for one of several scales, e.g. <code>invader@2x.png</code>. The file for a scale of 1 is
+     *         the output file itself.
+     */
+    // VisibleForTesting
+    static File getScaledOutput(String output, int scale) {
+        if (scale == 1) {
+            return new File(output);
+        }
+        final int separator = Math.max(output.lastIndexOf('/'), output.lastIndexOf(File.separatorChar));
+        final int extension = output.lastIndexOf('.');
+        final String suffix = String.format("@%dx", scale);
+        if (extension <= separator + 1) {
+            return new File(output + suffix);
+        }
+        return new File(output.substring(0, extension) + suffix + output.substring(extension));
+    }
+
+    /**
+     * Writes a PNG at each of the scales in the parameters. The tiles are only generated once, and each scale is then
+     * drawn, blurred and written concurrently, as many at once as the plan allows.
+     */
+    private static void writeScales(final Invaders invader, final Main.Params params, MemoryPlan plan) throws IOException {
+        final Invaders.TileGrid grid = invader.getTileGrid(params.getTileX(), params.getTileY());
+        final int[] scales = params.getScales();
+        final ExecutorService executor = Executors.newFixedThreadPool(plan.getThreads());
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (final int scale : scales) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        final PixelImage image = invader.getPixelInvaders(grid, scale, params.getBorder(), params.getEdge());
+                        write(blur(image, params.getBlurRadius()), getScaledOutput(params.getOutputFile(), scale));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Only IOExceptions are checked
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw (Error) cause;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing PNGs", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the tiles as a Deep Zoom Image, with as many threads as the plan allows.
+     */
+    private static void writeDeepZoom(Invaders invader, Main.Params params, MemoryPlan plan) throws IOException {
+        final DeepZoom zoom = new DeepZoom(invader, invader.getTileGrid(params.getTileX(), params.getTileY()), params.getBorder(), params.getEdge(), params.getBlurRadius());
+        final File descriptor = DeepZoom.getDescriptor(params.getOutputFile());
+        final ForkJoinPool pool = new ForkJoinPool(plan.getThreads());
+        try {
+            zoom.write(descriptor, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.print(String.format("Saved %d x %d in %d levels to %s\n", zoom.getWidth(), zoom.getHeight(), zoom.getLevels(), descriptor.getAbsolutePath()));
+    }
+
+    /**
+     * Renders the region of a field saved by {@link InvaderField#write(Invaders, Main.Params, File)}, without
+     * generating any tiles.
+     */
+    static void writeField(Main.Params params) throws IOException {
+        final InvaderField field = InvaderField.open(params.getFieldFile());
+        final int[] region = (params.getRegion() != null) ? params.getRegion() : new int[]{0, 0, field.getNumWide(), field.getNumHigh()};
+        if ((long) region[0] + region[2] > field.getNumWide() || (long) region[1] + region[3] > field.getNumHigh()) {
+            throw new IOException(String.format("Region %d,%d,%d,%d is outside the %d x %d tiles of %s", region[0], region[1], region[2], region[3],
+                    field.getNumWide(), field.getNumHigh(), params.getFieldFile().getAbsolutePath()));
+        }
+        final int scale = (params.getScale() > 0) ? params.getScale() : field.getScale();
+        final int border = (params.getBorder() >= 0) ? params.getBorder() : field.getBorder();
+
+        final Invaders invader = new Invaders(field.getX(), field.getY(), scale, null, null, field.getPalette(), field.getColourMode());
+        final Invaders.TileGrid grid = invader.getTileGrid(field, region[0], region[1], region[2], region[3]);
+        final PixelImage image = invader.getPixelInvaders(grid, scale, border, params.getEdge());
+        write(blur(image, params.getBlurRadius()), new File(params.getOutputFile()));
+    }
+
+    /**
+     * Approximates the mosaic image of the parameters with invaders, matching a row of cells per processor at a time.
+     */
+    private static void writeMosaic(Invaders invader, Main.Params params) throws IOException {
+        final PixelImage input = Mosaic.read(params.getMosaic());
+        final int numWide = (params.getTileX() > 0) ? params.getTileX() : Math.max(1, input.getWidth() / invader.getTileWidth(params.getBorder()));
+        final int numHigh = (params.getTileY() > 0) ? params.getTileY() : Math.max(1, input.getHeight() / invader.getTileHeight(params.getBorder()));
+
+        final Mosaic mosaic = new Mosaic(params.getX(), params.getY(), invader.getScale(), params.getBorder(), params.getPalette());
+        final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        final int[] matches;
+        try {
+            matches = mosaic.match(input, numWide, numHigh, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+        final Invaders.TileGrid grid = invader.getTileGrid(matches, numWide, numHigh);
+        final PixelImage image = invader.getPixelInvaders(grid, invader.getScale(), params.getBorder(), params.getEdge());
+        write(blur(offset(image, params.getPxWidth(), params.getPxHeight()), params.getBlurRadius()), new File(params.getOutputFile()));
+    }
+
+    /**
+     * Writes the PNG, or PNGs, of the parameters as the plan decided. The plan must not have rejected them.
+     */
+    static void write(Invaders invader, Main.Params params, MemoryPlan plan) throws IOException {
+        if (params.getShard() >= 0) {
+            ShardedPng.writeShard(invader, params);
+            return;
+        }
+        if (params.getMosaic() != null) {
+            writeMosaic(invader, params);
+            return;
+        }
+        if (params.isDzi()) {
+            writeDeepZoom(invader, params, plan);
+            return;
+        }
+        if (params.getScales() != null) {
+            writeScales(invader, params, plan);
+            return;
+        }
+        if (params.isOffHeap()) {
+            writeOffHeap(invader, params);
+            return;
+        }
+        if (plan.getDecision() == MemoryPlan.Decision.Streaming) {
+            final RowSource rows = new TileRows(invader, params.getTileX(), params.getTileY(), params.getBorder(), params.getEdge());
+            write(blur(offset(rows, params.getPxWidth(), params.getPxHeight()), params.getBlurRadius()), new File(params.getOutputFile()));
+            return;
+        }
+        final PixelImage image = invader.getPixelInvaders(params.getTileX(), params.getTileY(), params.getBorder(), params.getEdge());
+        write(blur(offset(image, params.getPxWidth(), params.getPxHeight()), params.getBlurRadius()), new File(params.getOutputFile()));
+    }
+}
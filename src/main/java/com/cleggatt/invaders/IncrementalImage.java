@@ -0,0 +1,134 @@
+package com.cleggatt.invaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/**
+ * Invaders rendered, offset and blurred as they are for PNG output, in which tiles can then be replaced. Only the
+ * replaced tiles are redrawn, and only they and the blur radius around them are blurred again, so the cost of a redraw
+ * depends on the number of tiles replaced rather than the size of the image.
+ */
+public final class IncrementalImage {
+
+    private final Invaders invaders;
+    private final int numWide;
+    private final int numHigh;
+    private final int border;
+    private final Invaders.Edge edge;
+    private final int blurRadius;
+    private final int tileWidth;
+    private final int tileHeight;
+    // The position of the first tile in the offset image, which may be negative if the tiles are clipped
+    private final int left;
+    private final int top;
+
+    private final PixelImage unblurred;
+    private final PixelImage image;
+
+    /**
+     * @param pxWidth the width of the image, within which the invaders will be centred. If this is less than 1, the
+     *                image will be exactly as wide as the invaders.
+     * @param blurRadius the radius of the guassian blur to apply, or 0 for none
+     */
+    public IncrementalImage(Invaders invaders, int numWide, int numHigh, int border, Invaders.Edge edge, int pxWidth, int pxHeight, int blurRadius) {
+        this.invaders = invaders;
+        this.numWide = numWide;
+        this.numHigh = numHigh;
+        this.border = border;
+        this.edge = edge;
+        this.blurRadius = blurRadius;
+        this.tileWidth = invaders.getTileWidth(border);
+        this.tileHeight = invaders.getTileHeight(border);
+
+        final PixelImage tiles = invaders.getPixelInvaders(numWide, numHigh, border, edge);
+        final RowSource offset = ImageOutput.offset(tiles, pxWidth, pxHeight);
+        final int width = offset.getWidth();
+        final int height = offset.getHeight();
+        left = (width - tiles.getWidth()) / 2;
+        top = (height - tiles.getHeight()) / 2;
+
+        unblurred = new PixelImage(width, height);
+        final int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            offset.getRow(y, row);
+            System.arraycopy(row, 0, unblurred.getPixels(), y * width, width);
+        }
+
+        image = (blurRadius == 0) ? unblurred : new PixelImage(GaussianBlur.blur(unblurred.getPixels(), width, height, blurRadius), width, height);
+    }
+
+    /**
+     * @return the offset and blurred image. This is updated in place by {@link #redraw(Collection)}.
+     */
+    public PixelImage getImage() {
+        return image;
+    }
+
+    // VisibleForTesting
+    PixelImage getUnblurred() {
+        return unblurred;
+    }
+
+    /**
+     * Replaces tiles with the given invaders and colours.
+     */
+    public void redraw(Collection<TileOverride> overrides) {
+        final long[] values = new long[overrides.size()];
+        final int[] colours = new int[overrides.size()];
+        int i = 0;
+        for (TileOverride override : overrides) {
+            if (override.getTileX() < 0 || override.getTileX() >= numWide || override.getTileY() < 0 || override.getTileY() >= numHigh) {
+                throw new IllegalArgumentException(String.format("Tile %d, %d is outside the %d x %d tiles",
+                        override.getTileX(), override.getTileY(), numWide, numHigh));
+            }
+            values[i] = override.getValue();
+            colours[i] = override.getColour();
+            i++;
+        }
+
+        // Draw every tile before blurring any, as the blur around one tile may read its neighbours
+        final PixelImage[] tiles = invaders.getPixelInvaders(values, colours, border, edge);
+        i = 0;
+        for (TileOverride override : overrides) {
+            copy(tiles[i++], left + (override.getTileX() * tileWidth), top + (override.getTileY() * tileHeight));
+        }
+
+        if (blurRadius == 0) {
+            return;
+        }
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        for (TileOverride override : overrides) {
+            final int x = left + (override.getTileX() * tileWidth);
+            final int y = top + (override.getTileY() * tileHeight);
+            final int x0 = Math.max(0, x - blurRadius);
+            final int y0 = Math.max(0, y - blurRadius);
+            final int x1 = Math.min(width, x + tileWidth + blurRadius);
+            final int y1 = Math.min(height, y + tileHeight + blurRadius);
+            if (x1 > x0 && y1 > y0) {
+                GaussianBlur.blur(unblurred.getPixels(), image.getPixels(), width, height, blurRadius, x0, y0, x1, y1);
+            }
+        }
+    }
+
+    // Copies a tile into the unblurred image, clipping it as the offset does
+    private void copy(PixelImage tile, int x, int y) {
+        final int width = unblurred.getWidth();
+        final int start = Math.max(0, -x);
+        final int end = Math.min(tile.getWidth(), width - x);
+        if (end <= start) {
+            return;
+        }
+        for (int line = Math.max(0, -y); line < Math.min(tile.getHeight(), unblurred.getHeight() - y); line++) {
+            System.arraycopy(tile.getPixels(), (line * tile.getWidth()) + start, unblurred.getPixels(), ((y + line) * width) + x + start, end - start);
+        }
+    }
+
+    /**
+     * Writes the image as a PNG. The whole image is encoded, as a PNG is a single compressed stream.
+     */
+    public void writePng(OutputStream out) throws IOException {
+        PngEncoder.write(image, false, out);
+    }
+}
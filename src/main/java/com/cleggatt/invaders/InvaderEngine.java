@@ -0,0 +1,156 @@
+package com.cleggatt.invaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Renders grids of invaders for many callers at once, such as the threads of a server. An engine is configured once,
+ * and each call is given the random sources to generate its invaders and colours from, so the same sources give the
+ * same invaders as {@link Invaders} would.
+ * <p>
+ * Images and text are drawn into buffers borrowed from a pool, and each thread keeps its own PNG encoder, so once the
+ * pool has a buffer of each size in use, rendering allocates almost nothing. Instances are thread safe.
+ */
+public final class InvaderEngine {
+
+    // Larger images are rare enough that keeping their buffers would waste more than allocating them
+    private static final int MAX_POOLED_LENGTH = 16 * 1024 * 1024;
+
+    private final Invaders invaders;
+    private final EdgeKernel kernel;
+    private final BufferPool<int[]> images;
+    private final BufferPool<char[]> text;
+    private final ThreadLocal<Scratch> scratch;
+
+    // The tables each thread refills for every tile, and its PNG encoder, which is never ended as it lives as long as
+    // the thread. Neither holds the engine, so a thread outliving it does not keep it alive.
+    private static final class Scratch {
+        private final TileColours colours;
+        private final boolean[][] pixels;
+        private final int[][] textColours;
+        private final PngEncoder.Encoder encoder = new PngEncoder.Encoder();
+
+        private Scratch(Invaders invaders, int width, int height) {
+            this.colours = invaders.getTileColours();
+            this.pixels = new boolean[height][width * 2];
+            this.textColours = new int[height][width * 2];
+        }
+    }
+
+    private static final class ScratchPerThread extends ThreadLocal<Scratch> {
+        private final Invaders invaders;
+        private final int width;
+        private final int height;
+
+        private ScratchPerThread(Invaders invaders, int width, int height) {
+            this.invaders = invaders;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(invaders, width, height);
+        }
+    }
+
+    /**
+     * An engine in the default palette, in a single colour, with square edges, keeping a buffer of each size for each
+     * processor.
+     *
+     * @param width the width of the randomly generated tile. This is <b>half</b> the width of the final tile.
+     */
+    public InvaderEngine(int width, int height, int scale) {
+        this(width, height, scale, Palette.DEFAULT, Invaders.ColourMode.Flat, Invaders.Edge.Square, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param width the width of the randomly generated tile. This is <b>half</b> the width of the final tile.
+     * @param buffersPerSize the most buffers of each size kept for reuse, which should be about the number of calls
+     *                       made at once
+     */
+    public InvaderEngine(int width, int height, int scale, Palette palette, Invaders.ColourMode colourMode, Invaders.Edge edge, int buffersPerSize) {
+        // Every call brings its own random sources, so neither of these is ever used
+        this.invaders = new Invaders(width, height, scale, null, null, palette, colourMode);
+        this.scratch = new ScratchPerThread(invaders, width, height);
+        this.kernel = (edge == Invaders.Edge.Square) ? null : new EdgeKernel(edge, scale);
+        this.images = BufferPool.ints(buffersPerSize, MAX_POOLED_LENGTH);
+        this.text = BufferPool.chars(buffersPerSize, MAX_POOLED_LENGTH);
+    }
+
+    /**
+     * @return the width in pixels of a grid of tiles, including their borders
+     */
+    public int getWidth(int numWide, int border) {
+        return invaders.getTileWidth(border) * numWide;
+    }
+
+    /**
+     * @return the height in pixels of a grid of tiles, including their borders
+     */
+    public int getHeight(int numHigh, int border) {
+        return invaders.getTileHeight(border) * numHigh;
+    }
+
+    /**
+     * Renders a grid of tiles, as {@link Invaders#getPixelInvaders(int, int, int, Invaders.Edge)} would from the same
+     * random sources, into a borrowed buffer. The image must be given back with {@link #release(PixelImage)} once it
+     * has been used, and not used again.
+     */
+    public PixelImage render(int numWide, int numHigh, int border, RandomSource invaderRandom, RandomSource colourRandom) {
+        final int width = getWidth(numWide, border);
+        final int height = getHeight(numHigh, border);
+        if (numWide < 1 || numHigh < 1 || (long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("Invalid grid of %d x %d tiles", numWide, numHigh));
+        }
+        final Scratch tables = scratch.get();
+        final int[] data = images.borrow(width * height);
+        invaders.drawInvaders(numWide, numHigh, border, kernel, invaderRandom, colourRandom, tables.colours, tables.pixels, data);
+        return new PixelImage(data, width, height);
+    }
+
+    /**
+     * Gives back the buffer of an image from {@link #render(int, int, int, RandomSource, RandomSource)}.
+     */
+    public void release(PixelImage image) {
+        images.giveBack(image.getPixels());
+    }
+
+    /**
+     * Renders a grid of tiles, and writes it to <code>out</code> as a PNG without alpha.
+     */
+    public void writePng(int numWide, int numHigh, int border, RandomSource invaderRandom, RandomSource colourRandom, OutputStream out) throws IOException {
+        final PixelImage image = render(numWide, numHigh, border, invaderRandom, colourRandom);
+        try {
+            scratch.get().encoder.write(image, false, out);
+        } finally {
+            release(image);
+        }
+    }
+
+    /**
+     * Writes a grid of tiles as text, as {@link Invaders#getTextInvaders(int, int, int)} would from the same random
+     * source, drawn in a borrowed buffer.
+     */
+    public void writeText(int numWide, int numHigh, int border, RandomSource invaderRandom, Writer out) throws IOException {
+        if (numWide < 1 || numHigh < 1) {
+            throw new IllegalArgumentException(String.format("Invalid grid of %d x %d tiles", numWide, numHigh));
+        }
+        final char[] buffer = text.borrow(invaders.getTextLength(numWide, numHigh, border));
+        try {
+            final Scratch tables = scratch.get();
+            final int length = invaders.drawTextInvaders(numWide, numHigh, border, invaderRandom, tables.pixels, tables.textColours, buffer);
+            out.write(buffer, 0, length);
+        } finally {
+            text.giveBack(buffer);
+        }
+    }
+
+    /**
+     * @return the number of buffers allocated, rather than reused, so far
+     */
+    long getAllocatedBuffers() {
+        return images.getAllocated() + text.getAllocated();
+    }
+}
@@ -0,0 +1,273 @@
+package com.cleggatt.invaders;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A field of tiles saved to a file, so it can be rendered again without generating it, at any scale or blur and in any
+ * region. The file holds a header of the parameters the tiles were generated with, followed by a record for each tile,
+ * row by row. A record is the invader, in exactly <code>x * y</code> bits, and the palette indices of its colours, each
+ * in as few bits as the palette needs. Records are packed without padding, least significant bit first.
+ * <p>
+ * The file is memory-mapped when read, so only the records of the tiles rendered are ever read.
+ */
+final class InvaderField {
+
+    private static final int MAGIC = 0x494E5646;
+    private static final int VERSION = 1;
+    // Mapped in chunks, as a single mapping is limited to 2GB
+    private static final int CHUNK_BITS = 30;
+
+    private final int x;
+    private final int y;
+    private final int scale;
+    private final int border;
+    private final int numWide;
+    private final int numHigh;
+    private final Long seed;
+    private final Invaders.ColourMode colourMode;
+    private final Palette palette;
+
+    private final int valueBits;
+    private final int pickBits;
+    private final int picks;
+    private final long recordBits;
+    private final long dataOffset;
+    private final MappedByteBuffer[] chunks;
+
+    private InvaderField(File file) throws IOException {
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            if (in.length() < 8 || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(String.format("%s is not an invader field", file.getAbsolutePath()));
+            }
+            x = in.readInt();
+            y = in.readInt();
+            scale = in.readInt();
+            border = in.readInt();
+            numWide = in.readInt();
+            numHigh = in.readInt();
+            // As the command line options are checked, so a corrupt header cannot overflow the size of a record
+            if (x < 1 || y < 1 || (long) x * y > 62) {
+                throw new IOException(String.format("%s has an invalid invader size", file.getAbsolutePath()));
+            }
+            if (scale < 1 || border < 0) {
+                throw new IOException(String.format("%s has an invalid scale or border", file.getAbsolutePath()));
+            }
+            if (numWide < 1 || numHigh < 1) {
+                throw new IOException(String.format("%s has an invalid number of tiles", file.getAbsolutePath()));
+            }
+            final boolean seeded = in.readBoolean();
+            final long seedValue = in.readLong();
+            seed = seeded ? seedValue : null;
+            try {
+                colourMode = Invaders.ColourMode.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("%s has an unknown colour mode", file.getAbsolutePath()), e);
+            }
+            final int size = in.readInt();
+            if (size < 1 || size > (in.length() - in.getFilePointer()) / 4) {
+                throw new IOException(String.format("%s has an invalid palette", file.getAbsolutePath()));
+            }
+            final int[] colours = new int[size];
+            for (int i = 0; i < colours.length; i++) {
+                colours[i] = in.readInt();
+            }
+            palette = new Palette(colours);
+            dataOffset = in.getFilePointer();
+
+            valueBits = x * y;
+            pickBits = getPickBits(palette);
+            picks = TileColours.getPicks(colourMode, x, y);
+            recordBits = valueBits + ((long) picks * pickBits);
+            final long length = dataOffset + ((((long) numWide * numHigh * recordBits) + 7) / 8);
+            if (in.length() < length) {
+                throw new IOException(String.format("%s is truncated", file.getAbsolutePath()));
+            }
+
+            final FileChannel channel = in.getChannel();
+            chunks = new MappedByteBuffer[(int) ((length + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                final long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << CHUNK_BITS, length - start));
+            }
+        } finally {
+            // Mappings remain valid once the file is closed
+            in.close();
+        }
+    }
+
+    static InvaderField open(File file) throws IOException {
+        return new InvaderField(file);
+    }
+
+    private static int getPickBits(Palette palette) {
+        return (palette.size() == 1) ? 0 : 32 - Integer.numberOfLeadingZeros(palette.size() - 1);
+    }
+
+    int getX() {
+        return x;
+    }
+
+    int getY() {
+        return y;
+    }
+
+    int getScale() {
+        return scale;
+    }
+
+    int getBorder() {
+        return border;
+    }
+
+    int getNumWide() {
+        return numWide;
+    }
+
+    int getNumHigh() {
+        return numHigh;
+    }
+
+    /**
+     * @return the seed the tiles were generated with, or <code>null</code> if they were not seeded
+     */
+    Long getSeed() {
+        return seed;
+    }
+
+    Invaders.ColourMode getColourMode() {
+        return colourMode;
+    }
+
+    Palette getPalette() {
+        return palette;
+    }
+
+    /**
+     * @return the number of palette indices held for each tile
+     */
+    int getPicks() {
+        return picks;
+    }
+
+    /**
+     * @param index the index of the tile, row by row
+     */
+    long getValue(long index) {
+        // Stored less one, as invaders are from 1 to 2^(x * y)
+        return getBits(index * recordBits, valueBits) + 1;
+    }
+
+    /**
+     * Fills <code>picks</code> with the palette indices of the colours of a tile.
+     */
+    void getPicks(long index, int[] picks) {
+        long offset = (index * recordBits) + valueBits;
+        for (int i = 0; i < this.picks; i++) {
+            picks[i] = (int) getBits(offset, pickBits);
+            offset += pickBits;
+        }
+    }
+
+    private long getBits(long offset, int bits) {
+        long value = 0;
+        int read = 0;
+        while (read < bits) {
+            final long position = dataOffset + (offset >>> 3);
+            final int shift = (int) (offset & 7);
+            final int available = Math.min(8 - shift, bits - read);
+            final int b = chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & ((1L << CHUNK_BITS) - 1))) & 0xFF;
+            value |= ((long) ((b >>> shift) & ((1 << available) - 1))) << read;
+            read += available;
+            offset += available;
+        }
+        return value;
+    }
+
+    /**
+     * Generates the tiles of the parameters, consuming the random sources of <code>invaders</code> as rendering them
+     * would, and saves them as a field.
+     */
+    static void write(Invaders invaders, Main.Params params, File output) throws IOException {
+        final Palette palette = params.getPalette();
+        final int pickBits = getPickBits(palette);
+        final int valueBits = params.getX() * params.getY();
+        final TileColours tileColours = invaders.getTileColours();
+        final int[] picks = new int[TileColours.getPicks(params.getColourMode(), params.getX(), params.getY())];
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(params.getX());
+            out.writeInt(params.getY());
+            out.writeInt(params.getScale());
+            out.writeInt(params.getBorder());
+            out.writeInt(params.getTileX());
+            out.writeInt(params.getTileY());
+            out.writeBoolean(params.getSeed() != null);
+            out.writeLong((params.getSeed() != null) ? params.getSeed() : 0);
+            out.writeUTF(params.getColourMode().name());
+            out.writeInt(palette.size());
+            for (int i = 0; i < palette.size(); i++) {
+                out.writeInt(palette.get(i));
+            }
+
+            final BitWriter bits = new BitWriter(out);
+            final long tiles = (long) params.getTileX() * params.getTileY();
+            for (long i = 0; i < tiles; i++) {
+                bits.write(invaders.nextInvader(tileColours, picks) - 1, valueBits);
+                for (int pick : picks) {
+                    bits.write(pick, pickBits);
+                }
+            }
+            bits.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    // Writes values in as many bits as they need, least significant bit first
+    private static final class BitWriter {
+
+        private final OutputStream out;
+        private long buffer = 0;
+        private int count = 0;
+
+        private BitWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        private void write(long value, int bits) throws IOException {
+            while (bits > 0) {
+                // At most 32 at a time, so the buffer never holds more than 39 bits
+                final int written = Math.min(bits, 32);
+                buffer |= (value & ((1L << written) - 1)) << count;
+                count += written;
+                value >>>= written;
+                bits -= written;
+                while (count >= 8) {
+                    out.write((int) buffer);
+                    buffer >>>= 8;
+                    count -= 8;
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            if (count > 0) {
+                out.write((int) buffer);
+                buffer = 0;
+                count = 0;
+            }
+        }
+    }
+}
@@ -1,36 +1,87 @@
 package com.cleggatt.invaders;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Random;
 
 public class Invaders {
 
-    static Color[] COLORS = new Color[]{
-            Color.red,
-            Color.lightGray,
-            Color.pink,
-            Color.orange,
-            Color.yellow,
-            Color.green,
-            Color.magenta,
-            Color.cyan,
-            Color.blue
+    public enum Edge {
+        Square, Round, Soft
+    }
+
+    /**
+     * How the pixels of each tile are coloured from the {@link Palette}.
+     */
+    public enum ColourMode {
+        /** One colour per tile */
+        Flat,
+        /** Rows blend from one colour at the top to another at the bottom */
+        Gradient,
+        /** One colour for the outline and another inside it */
+        TwoTone,
+        /** A colour per pixel, mirrored as the pixels are */
+        Cell
+    }
+
+    /**
+     * The characters text is written with.
+     */
+    public enum Glyphs {
+        /** A <code>*</code> or space for each pixel */
+        Ascii,
+        /** A half or full block for each 1 x 2 pixels */
+        HalfBlock,
+        /** A braille character for each 2 x 4 pixels */
+        Braille
+    }
+
+    static final int BLACK = 0xFF000000;
+
+    // The RGB values of the equivalent java.awt.Color constants, which would initialise AWT if used here
+    static int[] COLORS = new int[]{
+            0xFFFF0000, // red
+            0xFFC0C0C0, // lightGray
+            0xFFFFAFAF, // pink
+            0xFFFFC800, // orange
+            0xFFFFFF00, // yellow
+            0xFF00FF00, // green
+            0xFFFF00FF, // magenta
+            0xFF00FFFF, // cyan
+            0xFF0000FF  // blue
     };
 
-    private final Random invaderRandom;
-    private final Random colourRandom;
+    private final RandomSource invaderRandom;
+    private final RandomSource colourRandom;
     private final int width;
     private final int height;
     private final int scale;
     private final long maxValue;
+    private final Palette palette;
+    private final ColourMode colourMode;
 
     /**
      * @param width the width of the randomly generated tile. This is <b>half</b> the width of the final tile.
      */
     public Invaders(int width, int height, int scale, Random invaderRandom, Random colourRandom) {
+        this(width, height, scale, RandomSources.wrap(invaderRandom), RandomSources.wrap(colourRandom));
+    }
+
+    /**
+     * @param width the width of the randomly generated tile. This is <b>half</b> the width of the final tile.
+     */
+    public Invaders(int width, int height, int scale, RandomSource invaderRandom, RandomSource colourRandom) {
+        this(width, height, scale, invaderRandom, colourRandom, Palette.DEFAULT, ColourMode.Flat);
+    }
+
+    /**
+     * @param width the width of the randomly generated tile. This is <b>half</b> the width of the final tile.
+     */
+    public Invaders(int width, int height, int scale, RandomSource invaderRandom, RandomSource colourRandom, Palette palette, ColourMode colourMode) {
 
         if (width * height > 62) {
             throw new IllegalArgumentException("The product of the 'width' and 'height' arguments must be less than 63");
@@ -42,6 +93,8 @@ public class Invaders {
         this.height = height;
         this.scale = scale;
         this.maxValue = new BigInteger("2", 10).pow(width * height).longValue();
+        this.palette = palette;
+        this.colourMode = colourMode;
     }
 
     public long getMaxValue() {
@@ -49,18 +102,40 @@ public class Invaders {
     }
 
     private long generateInvader(boolean verbose) {
-        final long invader = (long)(invaderRandom.nextDouble() * maxValue) + 1;
+        return generateInvader(invaderRandom, verbose);
+    }
+
+    private long generateInvader(RandomSource random, boolean verbose) {
+        final long invader = random.nextLong(maxValue) + 1;
         if (verbose) {
             System.out.print(String.format("Invader %d of %d\n", invader, maxValue));
         }
         return invader;
     }
 
+    // A random invader with exactly count pixels of its un-mirrored half set
+    private long generateInvader(final int count) {
+        if (count == 0) {
+            // The only invader with no pixels set, as there is no invader 0
+            return maxValue;
+        }
+        // Floyd's algorithm, which picks count of the bits with a random number for each
+        final int bits = width * height;
+        long invader = 0;
+        for (int j = bits - count; j < bits; j++) {
+            final long bit = 1L << invaderRandom.nextInt(j + 1);
+            invader |= ((invader & bit) == 0) ? bit : (1L << j);
+        }
+        return invader;
+    }
+
     // @VisibleForTesting
     boolean[][] getPixels(final long value) {
+        return getPixels(value, new boolean[height][width * 2]);
+    }
 
-        final boolean[][] pixels = new boolean[height][width * 2];
-
+    // Refills a table of pixels, so that drawing many invaders need not allocate one for each
+    private boolean[][] getPixels(final long value, final boolean[][] pixels) {
         long pos = 1;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
@@ -75,135 +150,680 @@ public class Invaders {
         return pixels;
     }
 
-    private interface InvaderCanvas<T> {
-        void drawPixel(int x, int y, int colour);
+    // VisibleForTesting
+    interface InvaderCanvas<T> {
+        /**
+         * @param pixels the un-scaled pixels of the invader, as returned by {@link #getPixels(long)}
+         * @param xOffset the position of the top left of the invader in the (scaled) output
+         * @param colours the colour of each pixel, indexed as <code>pixels</code> is. This is only valid during the call.
+         */
+        void drawInvader(long value, boolean[][] pixels, int xOffset, int yOffset, int[][] colours);
         T getInvader();
     }
 
-    private Color getColor() {
-        return COLORS[colourRandom.nextInt(COLORS.length)];
-    }
+    private abstract static class PixelCanvas<T> implements InvaderCanvas<T> {
+
+        private final int scale;
+        private final EdgeKernel kernel;
+
+        private PixelCanvas(int scale, EdgeKernel kernel) {
+            this.scale = scale;
+            this.kernel = kernel;
+        }
+
+        abstract void drawPixel(int x, int y, int colour);
+
+        abstract void fillRect(int x, int y, int width, int height, int colour);
 
-    private void drawScaledPixel(final int x, final int y, final int xOffset, final int yOffset, final int colour, InvaderCanvas canvas) {
-        for (int scaledY = (y * scale); scaledY < ((y * scale)) + scale; scaledY++) {
-            for (int scaledX = (x * scale); scaledX < ((x * scale)) + scale; scaledX++) {
-                canvas.drawPixel(xOffset + scaledX, yOffset + scaledY, colour);
+        private void drawScaledPixel(final int x, final int y, final int xOffset, final int yOffset, final int colour) {
+            fillRect(xOffset + (x * scale), yOffset + (y * scale), scale, scale, colour);
+        }
+
+        private void drawSmoothedPixel(final int x, final int y, final int xOffset, final int yOffset, final int colour, final int[] alphas) {
+            int pos = 0;
+            for (int scaledY = (y * scale); scaledY < ((y * scale)) + scale; scaledY++) {
+                for (int scaledX = (x * scale); scaledX < ((x * scale)) + scale; scaledX++) {
+                    final int alpha = alphas[pos++];
+                    if (alpha > 0) {
+                        drawPixel(xOffset + scaledX, yOffset + scaledY, EdgeKernel.shade(colour, alpha));
+                    }
+                }
             }
         }
-    }
 
-    private void renderInvader(boolean[][] pixels, InvaderCanvas canvas, final int xOffset, final int yOffset) {
+        private static int getNeighbours(boolean[][] pixels, int x, int y) {
+            int neighbours = 0;
+            if (y > 0 && pixels[y - 1][x]) {
+                neighbours |= EdgeKernel.NORTH;
+            }
+            if (x < pixels[y].length - 1 && pixels[y][x + 1]) {
+                neighbours |= EdgeKernel.EAST;
+            }
+            if (y < pixels.length - 1 && pixels[y + 1][x]) {
+                neighbours |= EdgeKernel.SOUTH;
+            }
+            if (x > 0 && pixels[y][x - 1]) {
+                neighbours |= EdgeKernel.WEST;
+            }
+            return neighbours;
+        }
+
+        @Override
+        public void drawInvader(long value, boolean[][] pixels, final int xOffset, final int yOffset, final int[][] colours) {
+            if (kernel == null) {
+                drawRuns(pixels, xOffset, yOffset, colours);
+                return;
+            }
+            for (int y = 0; y < pixels.length; y++) {
+                for (int x = 0; x < pixels[y].length; x++) {
+                    if (pixels[y][x]) {
+                        final int neighbours = getNeighbours(pixels, x, y);
+                        if (neighbours == EdgeKernel.ALL) {
+                            drawScaledPixel(x, y, xOffset, yOffset, colours[y][x]);
+                        } else {
+                            drawSmoothedPixel(x, y, xOffset, yOffset, colours[y][x], kernel.getAlphas(neighbours));
+                        }
+                    }
+                }
+            }
+        }
 
-        final int colour = getColor().getRGB();
+        // Fills each horizontal run of same coloured pixels, across any identical rows below it, as a single rectangle
+        private void drawRuns(boolean[][] pixels, final int xOffset, final int yOffset, final int[][] colours) {
+            int y = 0;
+            while (y < pixels.length) {
+                int endY = y + 1;
+                while (endY < pixels.length && Arrays.equals(pixels[y], pixels[endY]) && Arrays.equals(colours[y], colours[endY])) {
+                    endY++;
+                }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < (width * 2); x++) {
-                if (pixels[y][x]) {
-                    drawScaledPixel(x, y, xOffset, yOffset, colour, canvas);
+                final boolean[] row = pixels[y];
+                final int[] rowColours = colours[y];
+                int x = 0;
+                while (x < row.length) {
+                    if (!row[x]) {
+                        x++;
+                        continue;
+                    }
+                    final int startX = x;
+                    final int colour = rowColours[x];
+                    while (x < row.length && row[x] && rowColours[x] == colour) {
+                        x++;
+                    }
+                    fillRect(xOffset + (startX * scale), yOffset + (y * scale), (x - startX) * scale, (endY - y) * scale, colour);
                 }
+
+                y = endY;
             }
         }
     }
 
+    // The size of a tile in the output, including its border
+    int getScale() {
+        return scale;
+    }
+
+    int getTileWidth(int border) {
+        return (width * 2 * scale) + (border * 2);
+    }
+
+    int getTileHeight(int border) {
+        return (height * scale) + (border * 2);
+    }
+
     private <T> T getInvaders(final int numWide, final int numHigh, final int border, InvaderCanvas<T> invaderCanvas) {
+        return getInvaders(numWide, numHigh, border, invaderCanvas, numWide == 1 && numHigh == 1);
+    }
 
-        boolean verbose = (numWide == 1 && numHigh == 1);
+    private <T> T getInvaders(final int numWide, final int numHigh, final int border, InvaderCanvas<T> invaderCanvas, final boolean verbose) {
+        drawTiles(numWide, numHigh, border, invaderCanvas, invaderRandom, verbose, new boolean[height][width * 2], getTileColours(),
+                colourRandom, null);
+        return invaderCanvas.getInvader();
+    }
 
+    /**
+     * Generates each tile of a grid from <code>invaderRandom</code>, refilling <code>pixels</code> for it, and draws it
+     * on the canvas. Tiles are coloured from <code>colourRandom</code>, unless they are all to be drawn in
+     * <code>uncoloured</code>, as text is.
+     */
+    private void drawTiles(final int numWide, final int numHigh, final int border, final InvaderCanvas<?> canvas, final RandomSource invaderRandom,
+                           final boolean verbose, final boolean[][] pixels, final TileColours colours, final RandomSource colourRandom,
+                           final int[][] uncoloured) {
         int xOffset = border,
             yOffset = border;
         for (int y = 0; y < numHigh; y++) {
             for (int x = 0; x < numWide; x++) {
-                final long value = generateInvader(verbose);
-                renderInvader(getPixels(value), invaderCanvas, xOffset, yOffset);
+                final long value = generateInvader(invaderRandom, verbose);
+                getPixels(value, pixels);
+                canvas.drawInvader(value, pixels, xOffset, yOffset, (uncoloured == null) ? colours.colour(pixels, colourRandom) : uncoloured);
 
-                xOffset = xOffset + ((width * 2 * scale) + (border * 2));
+                xOffset = xOffset + getTileWidth(border);
             }
             xOffset = border;
-            yOffset = yOffset + (height * scale) + (border * 2);
+            yOffset = yOffset + getTileHeight(border);
         }
+    }
 
-        return invaderCanvas.getInvader();
+    /**
+     * The invaders and colours of a grid of tiles, generated once so that they can be drawn at several scales. Only the
+     * palette indices picked for each tile are kept, as in an {@link InvaderField}, and a tile is coloured from them as
+     * it is drawn.
+     */
+    static final class TileGrid {
+        private final int numWide;
+        private final int numHigh;
+        private final long[] values;
+        private final int tilePicks;
+        private final int[] picks;
+
+        private TileGrid(int numWide, int numHigh, int tilePicks) {
+            this.numWide = numWide;
+            this.numHigh = numHigh;
+            this.values = new long[numWide * numHigh];
+            this.tilePicks = tilePicks;
+            this.picks = new int[numWide * numHigh * tilePicks];
+        }
+
+        int getNumWide() {
+            return numWide;
+        }
+
+        int getNumHigh() {
+            return numHigh;
+        }
+
+        private void set(int index, long value, int[] picks) {
+            values[index] = value;
+            System.arraycopy(picks, 0, this.picks, index * tilePicks, tilePicks);
+        }
+    }
+
+    private TileGrid newTileGrid(final int numWide, final int numHigh) {
+        return new TileGrid(numWide, numHigh, TileColours.getPicks(colourMode, width, height));
+    }
+
+    /**
+     * @param pixels refilled with the pixels of the tile
+     * @return the colours of the tile at <code>index</code>, only valid until <code>colours</code> is next used
+     */
+    private int[][] colourTile(final TileGrid grid, final int index, final boolean[][] pixels, final TileColours colours) {
+        getPixels(grid.values[index], pixels);
+        return colours.colour(pixels, grid.picks, index * grid.tilePicks);
+    }
+
+    TileGrid getTileGrid(final int numWide, final int numHigh) {
+        final boolean verbose = (numWide == 1 && numHigh == 1);
+        final TileColours tileColours = getTileColours();
+        final int[] picks = new int[TileColours.getPicks(colourMode, width, height)];
+
+        final TileGrid grid = newTileGrid(numWide, numHigh);
+        for (int i = 0; i < grid.values.length; i++) {
+            final long value = generateInvader(verbose);
+            tileColours.pick(getPixels(value), colourRandom, picks);
+            grid.set(i, value, picks);
+        }
+        return grid;
+    }
+
+    /**
+     * The invaders and colours of a region of a field, coloured from the palette indices stored with them, so neither
+     * random source is used.
+     */
+    TileGrid getTileGrid(final InvaderField field, final int firstColumn, final int firstRow, final int numWide, final int numHigh) {
+        final int[] picks = new int[field.getPicks()];
+
+        final TileGrid grid = newTileGrid(numWide, numHigh);
+        int i = 0;
+        for (int y = firstRow; y < firstRow + numHigh; y++) {
+            for (int x = firstColumn; x < firstColumn + numWide; x++) {
+                final long index = ((long) y * field.getNumWide()) + x;
+                final long value = field.getValue(index);
+                field.getPicks(index, picks);
+                grid.set(i, value, picks);
+                i++;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * A grid of random invaders with the number of set pixels of each {@link Mosaic} match, each coloured with the
+     * palette colour of its match. Only the invader random source is used.
+     *
+     * @param matches the match for each tile, row by row
+     */
+    TileGrid getTileGrid(final int[] matches, final int numWide, final int numHigh) {
+        if (colourMode != ColourMode.Flat) {
+            throw new IllegalStateException(String.format("A mosaic cannot be coloured %s", colourMode));
+        }
+        final int[] picks = new int[1];
+
+        final TileGrid grid = newTileGrid(numWide, numHigh);
+        for (int i = 0; i < grid.values.length; i++) {
+            final long value = generateInvader(Mosaic.getCount(matches[i]));
+            picks[0] = Mosaic.getColour(matches[i]);
+            grid.set(i, value, picks);
+        }
+        return grid;
+    }
+
+    TileColours getTileColours() {
+        return new TileColours(colourMode, palette, width * 2, height);
+    }
+
+    /**
+     * Generates the next invader, and picks the palette indices of its colours, as drawing it would.
+     *
+     * @param tileColours from {@link #getTileColours()}
+     */
+    long nextInvader(final TileColours tileColours, final int[] picks) {
+        final long value = generateInvader(false);
+        tileColours.pick(getPixels(value), colourRandom, picks);
+        return value;
+    }
+
+    /**
+     * As {@link #getPixelInvaders(int, int, int, Edge)}, drawing a grid generated by {@link #getTileGrid(int, int)} at
+     * the given scale rather than that of this instance. Neither random source is used, so this is thread safe.
+     */
+    PixelImage getPixelInvaders(final TileGrid grid, final int scale, final int border, final Edge edge) {
+        final EdgeKernel kernel = (edge == Edge.Square) ? null : new EdgeKernel(edge, scale);
+        final ImageCanvas canvas = new ImageCanvas(width, height, scale, grid.numWide, grid.numHigh, border, kernel);
+        final int tileWidth = (width * 2 * scale) + (border * 2);
+        final int tileHeight = (height * scale) + (border * 2);
+        final boolean[][] pixels = new boolean[height][width * 2];
+        final TileColours colours = getTileColours();
+        int i = 0;
+        for (int y = 0; y < grid.numHigh; y++) {
+            for (int x = 0; x < grid.numWide; x++) {
+                final int[][] tileColours = colourTile(grid, i, pixels, colours);
+                canvas.drawInvader(grid.values[i], pixels, (x * tileWidth) + border, (y * tileHeight) + border, tileColours);
+                i++;
+            }
+        }
+        return canvas.getInvader();
     }
 
-    private static class TextCanvas implements InvaderCanvas<String> {
+    private static class TextCanvas extends PixelCanvas<String> {
 
         private final int scaledHeight;
         private final int scaledWidth;
         private int lineWidth;
-        private final StringBuffer buffer;
+        private final char[] buffer;
 
         private TextCanvas(int width, int height, int scale, int numWide, int numHigh, int border) {
+            this(width, height, scale, numWide, numHigh, border, null);
+        }
+
+        /**
+         * @param buffer the buffer to draw into, which may be larger than the text, or <code>null</code> to allocate one
+         */
+        private TextCanvas(int width, int height, int scale, int numWide, int numHigh, int border, char[] buffer) {
+            super(scale, null);
+            getSize(width, height, scale, numWide, numHigh, border);
             scaledHeight = height * scale;
             scaledWidth = width * scale;
             lineWidth = (scaledWidth * 2 * numWide) + (numWide * border * 2);
-            buffer = createBuffer(numWide, numHigh, border);
+            this.buffer = createBuffer(numWide, numHigh, border, buffer);
+        }
+
+        // The number of characters, including line breaks
+        private static int getSize(int width, int height, int scale, int numWide, int numHigh, int border) {
+            final long lines = ((long) height * scale * numHigh) + ((long) numHigh * border * 2);
+            final long size = (((long) width * scale * 2 * numWide) + ((long) numWide * border * 2) + 1) * lines;
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException(String.format("Text of %d characters is too large to draw at once", size));
+            }
+            return (int) size;
         }
 
-        private StringBuffer createBuffer(final int numWide, final int numHigh, final int border) {
+        private char[] createBuffer(final int numWide, final int numHigh, final int border, char[] buffer) {
 
             final int numLines = (scaledHeight * numHigh) + (numHigh * border * 2);
-            final int lineBreaks = scaledHeight;
+            final int lineBreaks = numLines;
 
             int bufferSize = (lineWidth * numLines) + lineBreaks;
 
-            final StringBuffer buffer = new StringBuffer(bufferSize);
+            if (buffer == null) {
+                buffer = new char[bufferSize];
+            }
+            Arrays.fill(buffer, 0, bufferSize, ' ');
 
             for (int y = 0; y < numLines; y++) {
-                for (int x = 0; x < lineWidth; x++) {
-                    buffer.append(' ');
-                }
-                buffer.append('\n');
+                buffer[(y * lineWidth) + y + lineWidth] = '\n';
             }
 
             return buffer;
         }
 
         @Override
-        public void drawPixel(final int x, final int y, final int colour) {
+        void drawPixel(final int x, final int y, final int colour) {
             int pos = 0;
             pos = pos + (y * lineWidth); // Number of lines down
             pos = pos + y; // Allow for line feeds
             pos = pos + x; // Position on line
-            buffer.setCharAt(pos, '*');
+            buffer[pos] = '*';
+        }
+
+        @Override
+        void fillRect(final int x, final int y, final int width, final int height, final int colour) {
+            for (int line = y; line < y + height; line++) {
+                final int start = (line * lineWidth) + line + x;
+                Arrays.fill(buffer, start, start + width, '*');
+            }
         }
 
         @Override
         public String getInvader() {
-            return buffer.toString();
+            return new String(buffer);
         }
     }
 
-    private static class ImageCanvas implements InvaderCanvas<BufferedImage> {
+    private static class ImageCanvas extends PixelCanvas<PixelImage> {
 
-        private final BufferedImage image;
+        private final PixelImage image;
+        private final int[] data;
+        private final int imageWidth;
 
-        private ImageCanvas(int width, int height, int scale, int numWide, int numHigh, int border) {
-            int imageWidth = (width * 2 * numWide * scale) + (numWide * border * 2);
+        private ImageCanvas(int width, int height, int scale, int numWide, int numHigh, int border, EdgeKernel kernel) {
+            super(scale, kernel);
+            imageWidth = (width * 2 * numWide * scale) + (numWide * border * 2);
             int imageHeight = (height * numHigh * scale) + (numHigh * border * 2);
 
-            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+            image = new PixelImage(imageWidth, imageHeight);
 
-            Graphics2D graphics = image.createGraphics();
-            graphics.setPaint(Color.black);
-            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            data = image.getPixels();
+            Arrays.fill(data, BLACK);
         }
 
         @Override
-        public void drawPixel(int x, int y, int colour) {
-            image.setRGB(x, y, colour);
+        void drawPixel(int x, int y, int colour) {
+            data[(y * imageWidth) + x] = colour;
+        }
+
+        @Override
+        void fillRect(int x, int y, int width, int height, int colour) {
+            for (int line = y; line < y + height; line++) {
+                final int start = (line * imageWidth) + x;
+                Arrays.fill(data, start, start + width, colour);
+            }
         }
 
         @Override
-        public BufferedImage getInvader() {
+        public PixelImage getInvader() {
             return image;
         }
     }
 
+    // Draws into part of an array owned by someone else
+    private static class ArrayCanvas extends PixelCanvas<int[]> {
+
+        private final int[] data;
+        private final int offset;
+        private final int stride;
+
+        private ArrayCanvas(int[] data, int offset, int stride, int scale, EdgeKernel kernel) {
+            super(scale, kernel);
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+        }
+
+        @Override
+        void drawPixel(int x, int y, int colour) {
+            data[offset + (y * stride) + x] = colour;
+        }
+
+        @Override
+        void fillRect(int x, int y, int width, int height, int colour) {
+            for (int line = y; line < y + height; line++) {
+                final int start = offset + (line * stride) + x;
+                Arrays.fill(data, start, start + width, colour);
+            }
+        }
+
+        @Override
+        public int[] getInvader() {
+            return data;
+        }
+    }
+
+    private static class OffHeapCanvas extends PixelCanvas<OffHeapRaster> {
+
+        private final OffHeapRaster raster;
+
+        private OffHeapCanvas(OffHeapRaster raster, int scale, EdgeKernel kernel) {
+            super(scale, kernel);
+            this.raster = raster;
+        }
+
+        @Override
+        void drawPixel(int x, int y, int colour) {
+            raster.setPixel(x, y, colour);
+        }
+
+        @Override
+        void fillRect(int x, int y, int width, int height, int colour) {
+            raster.fillRect(x, y, width, height, colour);
+        }
+
+        @Override
+        public OffHeapRaster getInvader() {
+            return raster;
+        }
+    }
+
     public String getTextInvaders(final int numWide, final int numHigh, final int border) {
         return getInvaders(numWide, numHigh, border, new TextCanvas(width, height, scale, numWide, numHigh, border));
     }
 
+    /**
+     * As {@link #getTextInvaders(int, int, int)}, written to <code>out</code> as UTF-8 with the given glyphs. The text
+     * is written a line at a time, without a character per pixel ever being held in memory.
+     */
+    public void writeTextInvaders(final int numWide, final int numHigh, final int border, final Glyphs glyphs, final OutputStream out) throws IOException {
+        writeTextInvaders(numWide, numHigh, border, glyphs, false, out);
+    }
+
+    /**
+     * As {@link #writeTextInvaders(int, int, int, Glyphs, OutputStream)}, optionally coloured with 24-bit ANSI escape
+     * sequences. Coloured text uses the colours {@link #getPixelInvaders(int, int, int)} would.
+     */
+    public void writeTextInvaders(final int numWide, final int numHigh, final int border, final Glyphs glyphs, final boolean ansi, final OutputStream out) throws IOException {
+        final GlyphText text;
+        if (ansi) {
+            final TileGrid grid = getTileGrid(numWide, numHigh);
+            final boolean[][] pixels = new boolean[height][width * 2];
+            final TileColours colours = getTileColours();
+            text = new GlyphText(grid.values, new GlyphText.TileColouring() {
+                @Override
+                public int[][] colour(int index) {
+                    return colourTile(grid, index, pixels, colours);
+                }
+            }, palette, numWide, numHigh, width, height, scale, border);
+        } else {
+            final boolean verbose = (numWide == 1 && numHigh == 1);
+            final long[] values = new long[numWide * numHigh];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = generateInvader(verbose);
+            }
+            text = new GlyphText(values, null, palette, numWide, numHigh, width, height, scale, border);
+        }
+        text.write(glyphs, out);
+    }
+
     public BufferedImage getImageInvaders(final int numWide, final int numHigh, final int border) {
-        return getInvaders(numWide, numHigh, border, new ImageCanvas(width, height, scale, numWide, numHigh, border));
+        return getImageInvaders(numWide, numHigh, border, Edge.Square);
+    }
+
+    /**
+     * As {@link #getPixelInvaders(int, int, int, Edge)}, adapted to AWT.
+     */
+    public BufferedImage getImageInvaders(final int numWide, final int numHigh, final int border, final Edge edge) {
+        return BufferedImages.wrap(getPixelInvaders(numWide, numHigh, border, edge));
+    }
+
+    public PixelImage getPixelInvaders(final int numWide, final int numHigh, final int border) {
+        return getPixelInvaders(numWide, numHigh, border, Edge.Square);
+    }
+
+    /**
+     * @param edge the shape of exposed pixel edges. Anything other than {@link Edge#Square} is anti-aliased as it is
+     *             drawn, so the image does not need to be blurred to soften it.
+     */
+    public PixelImage getPixelInvaders(final int numWide, final int numHigh, final int border, final Edge edge) {
+        final EdgeKernel kernel = (edge == Edge.Square) ? null : new EdgeKernel(edge, scale);
+        return getInvaders(numWide, numHigh, border, new ImageCanvas(width, height, scale, numWide, numHigh, border, kernel));
+    }
+
+    /**
+     * Generates and discards <code>count</code> invaders and their colours, leaving both random sources as drawing them
+     * would have. This is much cheaper than drawing them.
+     */
+    void skipInvaders(final long count) {
+        final TileColours tileColours = new TileColours(colourMode, palette, width * 2, height);
+        for (long i = 0; i < count; i++) {
+            tileColours.colour(getPixels(generateInvader(false)), colourRandom);
+        }
+    }
+
+    /**
+     * Renders the next row of tiles. Successive rows stacked one above the other are the same as the image
+     * {@link #getPixelInvaders(int, int, int, Edge)} would render, but only one row need be held in memory.
+     */
+    PixelImage getPixelInvaderRow(final int numWide, final int border, final Edge edge) {
+        final EdgeKernel kernel = (edge == Edge.Square) ? null : new EdgeKernel(edge, scale);
+        return getInvaders(numWide, 1, border, new ImageCanvas(width, height, scale, numWide, 1, border, kernel), false);
+    }
+
+    /**
+     * Renders a tile, with its border, for each of the given values, each in a single colour. Neither random source is
+     * used.
+     */
+    PixelImage[] getPixelInvaders(final long[] values, final int[] colours, final int border, final Edge edge) {
+        final EdgeKernel kernel = (edge == Edge.Square) ? null : new EdgeKernel(edge, scale);
+        final int[][] tileColours = new int[height][width * 2];
+
+        final PixelImage[] tiles = new PixelImage[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] < 1 || values[i] > maxValue) {
+                throw new IllegalArgumentException(String.format("Invader %d is not between 1 and %d", values[i], maxValue));
+            }
+            for (int[] row : tileColours) {
+                Arrays.fill(row, colours[i] | BLACK);
+            }
+            final ImageCanvas canvas = new ImageCanvas(width, height, scale, 1, 1, border, kernel);
+            canvas.drawInvader(values[i], getPixels(values[i]), border, border, tileColours);
+            tiles[i] = canvas.getInvader();
+        }
+        return tiles;
+    }
+
+    /**
+     * Draws a single tile, with its border, into <code>data</code> at <code>offset</code>, with rows
+     * <code>stride</code> apart. The invader is generated, and then coloured, from <code>random</code>. Neither random
+     * source of this instance is used, so this is thread safe so long as the arguments are not shared.
+     *
+     * @param colours from {@link #getTileColours()}
+     * @param pixels a table of <code>y</code> rows of <code>x * 2</code> pixels, refilled for the tile
+     * @param kernel the kernel for the edge style, or <code>null</code> for square edges
+     */
+    void drawInvader(final RandomSource random, final TileColours colours, final boolean[][] pixels, final int border, final EdgeKernel kernel,
+                     final int[] data, final int offset, final int stride) {
+        final long value = generateInvader(random, false);
+        final ArrayCanvas canvas = new ArrayCanvas(data, offset, stride, scale, kernel);
+        canvas.fillRect(0, 0, getTileWidth(border), getTileHeight(border), BLACK);
+        getPixels(value, pixels);
+        canvas.drawInvader(value, pixels, border, border, colours.colour(pixels, random));
+    }
+
+    /**
+     * As {@link #drawInvader(RandomSource, TileColours, boolean[][], int, EdgeKernel, int[], int, int)}, drawing the tile at
+     * <code>index</code> in a grid generated by {@link #getTileGrid(int, int)}. Neither random source is used.
+     *
+     * @param colours from {@link #getTileColours()}, which the tile is coloured with from its picks
+     */
+    void drawInvader(final TileGrid grid, final int index, final TileColours colours, final int border, final EdgeKernel kernel,
+                     final int[] data, final int offset, final int stride) {
+        final ArrayCanvas canvas = new ArrayCanvas(data, offset, stride, scale, kernel);
+        canvas.fillRect(0, 0, getTileWidth(border), getTileHeight(border), BLACK);
+        final boolean[][] pixels = new boolean[height][width * 2];
+        final int[][] tileColours = colourTile(grid, index, pixels, colours);
+        canvas.drawInvader(grid.values[index], pixels, border, border, tileColours);
+    }
+
+    /**
+     * @return the number of characters {@link #getTextInvaders(int, int, int)} would return, including line breaks
+     * @throws IllegalArgumentException if there are too many to draw at once
+     */
+    int getTextLength(final int numWide, final int numHigh, final int border) {
+        return TextCanvas.getSize(width, height, scale, numWide, numHigh, border);
+    }
+
+    /**
+     * Draws a grid of tiles into <code>data</code>, which must hold at least
+     * <code>getTileWidth(border) * numWide</code> by <code>getTileHeight(border) * numHigh</code> pixels, as
+     * {@link #getPixelInvaders(int, int, int, Edge)} would draw them from the given random sources. Neither random
+     * source of this instance is used, so this is thread safe so long as the arguments are not shared.
+     *
+     * @param colours coloured tables for this instance, from {@link #getTileColours()}
+     * @param pixels a table of <code>y</code> rows of <code>x * 2</code> pixels, refilled for each tile
+     * @param kernel the kernel for the edge style, or <code>null</code> for square edges
+     */
+    void drawInvaders(final int numWide, final int numHigh, final int border, final EdgeKernel kernel, final RandomSource invaderRandom,
+                      final RandomSource colourRandom, final TileColours colours, final boolean[][] pixels, final int[] data) {
+        final int stride = getTileWidth(border) * numWide;
+        final ArrayCanvas canvas = new ArrayCanvas(data, 0, stride, scale, kernel);
+        canvas.fillRect(0, 0, stride, getTileHeight(border) * numHigh, BLACK);
+        drawTiles(numWide, numHigh, border, canvas, invaderRandom, false, pixels, colours, colourRandom, null);
+    }
+
+    /**
+     * As {@link #getTextInvaders(int, int, int)}, drawing into <code>buffer</code>, which must hold at least
+     * {@link #getTextLength(int, int, int)} characters, with invaders from the given random source. Neither random
+     * source of this instance is used, so this is thread safe so long as the arguments are not shared.
+     *
+     * @param pixels a table of <code>y</code> rows of <code>x * 2</code> pixels, refilled for each tile
+     * @param colours a table of <code>y</code> rows of <code>x * 2</code> colours, all the same, as text is never coloured
+     * @return the number of characters drawn
+     */
+    int drawTextInvaders(final int numWide, final int numHigh, final int border, final RandomSource invaderRandom, final boolean[][] pixels,
+                         final int[][] colours, final char[] buffer) {
+        final TextCanvas canvas = new TextCanvas(width, height, scale, numWide, numHigh, border, buffer);
+        drawTiles(numWide, numHigh, border, canvas, invaderRandom, false, pixels, null, null, colours);
+        return getTextLength(numWide, numHigh, border);
+    }
+
+    /**
+     * @param pxWidth the width of the SVG, within which the invaders will be centred. If this is less than 1, the SVG
+     *                will be exactly as wide as the invaders.
+     * @param blurRadius the radius of the guassian blur filter to apply, or 0 for none
+     */
+    public String getSvgInvaders(final int numWide, final int numHigh, final int border, final int pxWidth, final int pxHeight, final int blurRadius) {
+        return getInvaders(numWide, numHigh, border, new SvgCanvas(width, height, scale, numWide, numHigh, border, pxWidth, pxHeight, blurRadius));
+    }
+
+    /**
+     * Renders into a memory-mapped temporary file rather than the heap, for images too large to fit in memory. The
+     * background is left transparent (i.e. zero), so the result should be written without alpha. The caller must close
+     * the returned raster to delete the file.
+     *
+     * @param directory the directory in which to create the file, or <code>null</code> for the default temporary directory
+     */
+    public OffHeapRaster getOffHeapInvaders(final int numWide, final int numHigh, final int border, final Edge edge, final File directory) throws IOException {
+        final long imageWidth = ((long) width * 2 * numWide * scale) + ((long) numWide * border * 2);
+        final long imageHeight = ((long) height * numHigh * scale) + ((long) numHigh * border * 2);
+        if (imageWidth > Integer.MAX_VALUE || imageHeight > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Image of %d x %d is too large", imageWidth, imageHeight));
+        }
+
+        final EdgeKernel kernel = (edge == Edge.Square) ? null : new EdgeKernel(edge, scale);
+        final OffHeapRaster raster = new OffHeapRaster((int) imageWidth, (int) imageHeight, directory);
+        try {
+            return getInvaders(numWide, numHigh, border, new OffHeapCanvas(raster, scale, kernel));
+        } catch (RuntimeException e) {
+            raster.close();
+            throw e;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package com.cleggatt.invaders;
+
+/**
+ * The linear congruential generator of <code>java.util.Random</code>, without the atomic update of its seed. For the
+ * same seed, this produces exactly the same invaders and colours as earlier versions did with
+ * <code>java.util.Random</code>, including their use of <code>nextDouble() * bound</code> for long bounds. That means
+ * long values are slightly biased, and not every value can be produced for bounds over 2^53.
+ */
+final class JdkRandomSource implements RandomSource {
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private long seed;
+
+    JdkRandomSource(long seed) {
+        this.seed = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    private int next(int bits) {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+        if ((bound & -bound) == bound) {
+            return (int) ((bound * (long) next(31)) >> 31);
+        }
+        int bits;
+        int value;
+        do {
+            bits = next(31);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+
+    @Override
+    public long nextLong(long bound) {
+        return (long) (nextDouble() * bound);
+    }
+}
@@ -0,0 +1,95 @@
+package com.cleggatt.invaders;
+
+/**
+ * Counts latencies in buckets which are a fixed fraction of their value wide, as HdrHistogram does, so percentiles are
+ * accurate to about 0.1% from a nanosecond to an hour in a fixed 264KB. Recording is a few shifts and an increment, and
+ * never allocates. Not thread safe, so each thread records into its own and they are added together afterwards.
+ * <p>
+ * Only the load harness records latencies, but it lives here so that it is tested with everything else.
+ */
+final class LatencyHistogram {
+
+    // Each power of two is split into 1024 buckets
+    private static final int SUB_BITS = 11;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT / 2;
+    // About an hour in nanoseconds. Longer latencies are counted as this.
+    private static final long MAX_VALUE = (1L << 42) - 1;
+
+    private final long[] counts = new long[getIndex(MAX_VALUE) + 1];
+    private long count;
+    private long total;
+    private long max;
+
+    // VisibleForTesting
+    static int getIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        // The top SUB_BITS bits of the value pick the bucket within its power of two
+        final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) * HALF_COUNT) + (int) ((value >> shift) - HALF_COUNT);
+    }
+
+    // The largest value counted in a bucket
+    // VisibleForTesting
+    static long getHighestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int shift = (index / HALF_COUNT) - 1;
+        final long lowest = ((long) (index % HALF_COUNT) + HALF_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    void record(long value) {
+        final long clamped = Math.min(MAX_VALUE, Math.max(0, value));
+        counts[getIndex(clamped)]++;
+        count++;
+        total += clamped;
+        max = Math.max(max, clamped);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return (count == 0) ? 0 : total / (double) count;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the largest value which <code>percentile</code>% of the values are no greater than, to within the width
+     *         of its bucket
+     */
+    long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        // Percentiles such as 99.9 are not exact in binary, so a rank a few ulps over a whole number is that number
+        final double exact = (percentile * count) / 100;
+        final long rank = Math.max(1, (long) Math.ceil(exact - (4 * Math.ulp(exact))));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, getHighestValue(i));
+            }
+        }
+        return max;
+    }
+}
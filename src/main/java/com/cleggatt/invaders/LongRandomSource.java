@@ -0,0 +1,47 @@
+package com.cleggatt.invaders;
+
+/**
+ * A {@link RandomSource} built on a generator of uniformly distributed 64 bit values. Bounded values are generated
+ * with integer arithmetic only, rejecting the values which would otherwise bias the result.
+ */
+abstract class LongRandomSource implements RandomSource {
+
+    abstract long nextLong();
+
+    private static void checkBound(long bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        checkBound(bound);
+        // Lemire's multiply and shift: the high 32 bits of a 32 bit random value multiplied by bound
+        long product = (nextLong() >>> 32) * bound;
+        long low = product & 0xFFFFFFFFL;
+        if (low < bound) {
+            final long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                product = (nextLong() >>> 32) * bound;
+                low = product & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    @Override
+    public long nextLong(long bound) {
+        checkBound(bound);
+        final long mask = bound - 1;
+        long value = nextLong();
+        if ((bound & mask) == 0) {
+            return value & mask;
+        }
+        // Reject values from the last, partial multiple of bound, as java.util.SplittableRandom does
+        for (long unsigned = value >>> 1; unsigned + mask - (value = unsigned % bound) < 0; unsigned = nextLong() >>> 1) {
+            // Retry
+        }
+        return value;
+    }
+}
@@ -2,14 +2,16 @@ package com.cleggatt.invaders;
 
 
 import org.apache.commons.cli.*;
-import org.jdesktop.swingx.image.GaussianBlurFilter;
 
-import javax.imageio.ImageIO;
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.util.Random;
 
 public final class Main {
@@ -24,6 +26,13 @@ public final class Main {
     private static final String DEFAULT_BLUR_STR = String.valueOf(DEFAULT_BLUR);
     // VisibleForTesting
     static final String DEFAULT_OUTPUT_STR = "invader.png";
+    // VisibleForTesting
+    static final String DEFAULT_SVG_OUTPUT_STR = "invader.svg";
+    // VisibleForTesting
+    static final int DEFAULT_CACHE_SIZE_MB = 256;
+    private static final String DEFAULT_CACHE_SIZE_STR = String.valueOf(DEFAULT_CACHE_SIZE_MB);
+    // Decorrelates the colour seed from the invader seed
+    private static final long COLOUR_SEED_MIX = 0x9E3779B97F4A7C15L;
 
     private Main() {
     }
@@ -34,12 +43,24 @@ public final class Main {
         options.addOption("help", false, "display this help and exit");
 
         options.addOption("t", "text", false, "generate as text");
+        options.addOption("glyphs", true, "characters to generate text with: ascii, halfblock (1 x 2 pixels per character) or braille (2 x 4 pixels per character) (text only, default: ascii)");
+        options.addOption("ansi", false, "colour text with 24-bit ANSI escape sequences, for terminals which support them (text only)");
+
         options.addOption("p", "png", false, "generate as PNG");
+        options.addOption("svg", false, "generate as SVG");
+        options.addOption("saveField", true, "save the tiles, and the colours picked for them, to a compact file rather than rendering them, to be rendered later with 'loadField'");
+        options.addOption("find", true, "search for the first seed which generates the invader drawn in a file, with '*' for each pixel which is set and a space for each which is not, rather than generating any. The invader may be drawn in full, or only its un-mirrored half");
+        options.addOption("findTile", true, "the tile, counted row by row from 0, at which 'find' must generate the invader (default: 0)");
+        options.addOption("findFrom", true, "the first seed for 'find' to search (default: 0)");
+        options.addOption("findLimit", true, "the number of seeds for 'find' to search (default: no limit)");
+        options.addOption("loadField", true, "render the tiles of a file saved with 'saveField' rather than generating them, at its 'scale' and 'border' unless they are given (PNG only)");
+        options.addOption("region", true, "the tiles of 'loadField' to render, as column,row,width,height, e.g. 10,20,4,3 (default: every tile)");
 
         options.addOption("x", true, String.format("number of un-mirrored, un-scaled pixels on the X axis of a tile (default: %d)", DEFAULT_X));
         options.addOption("y", true, String.format("number of un-scaled pixels on the Y axis of a tile (default: %d)", DEFAULT_Y));
 
         options.addOption("s", "scale", true, "scaling factor for a tile (default: 1)");
+        options.addOption("scales", true, "comma separated scaling factors to write a PNG at each of, e.g. 1,2,4, from the same tiles. Each PNG but that at scale 1 is named with the scale, e.g. invader@2x.png (PNG only)");
 
         options.addOption("tileX", true, "number of tiles to create along the X axis (default: 1)");
         options.addOption("tileY", true, "number of tiles to create along the Y axis  (default: 1)");
@@ -53,13 +74,33 @@ public final class Main {
 
         options.addOption("guassian", true, String.format("guassian blur radius (image only, default: %d)", DEFAULT_BLUR));
 
-        options.addOption("o", "output", true, String.format("output file name (image only, default: %s)", DEFAULT_OUTPUT_STR));
+        options.addOption("o", "output", true, String.format("output file name (image only, default: %s, or %s for SVG)", DEFAULT_OUTPUT_STR, DEFAULT_SVG_OUTPUT_STR));
+
+        options.addOption("dzi", false, String.format("write a Deep Zoom Image: a pyramid of %d pixel square PNGs at every zoom level, in a directory named from 'output', e.g. invader_files, described by e.g. invader.dzi (PNG only)", DeepZoom.TILE_SIZE));
+
+        options.addOption("processes", true, "number of processes to render a PNG in, each rendering a band of rows of tiles, which are then joined without being re-encoded (PNG only, default: 1)");
+        options.addOption("shard", true, "render only band i of n, e.g. 0/4, to 'output' with '.shard<i>' appended, as the processes started by 'processes' do (PNG only)");
+
+        options.addOption("mosaic", true, "approximate an image with invaders, each matched to the colour of the part of the image its tile covers. The tiles cover the image at 'scale' unless 'tileX', 'tileY', 'pxWidth' or 'pxHeight' are given (PNG only)");
+
+        options.addOption("offheap", false, "render in a memory-mapped temporary file rather than on the heap, for very large images (PNG only)");
+
+        options.addOption("rng", true, "random number generator: jdk, splitmix or xoshiro (default: jdk). Only jdk generates the same invaders as earlier versions for the same seed");
+
+        options.addOption("palette", true, "comma separated hex RGB colours to colour tiles from, e.g. ff0000,00ff00 (image or 'ansi' text only, default: nine colours)");
+        options.addOption("paletteFile", true, "file of hex RGB colours to colour tiles from (image or 'ansi' text only)");
+        options.addOption("colours", true, "how tiles are coloured: flat, gradient, twotone or cell (image or 'ansi' text only, default: flat)");
+
+        options.addOption("cacheDir", true, "directory in which to cache output, so that repeating a run with the same 'seed' copies the earlier output rather than generating it again. Runs without a 'seed' are never cached");
+        options.addOption("cacheSize", true, String.format("maximum size of the cache in MB, beyond which the least recently used output is removed (default: %d)", DEFAULT_CACHE_SIZE_MB));
+
+        options.addOption("e", "edges", true, "edge style: square, round or soft (image only, default: square). Round and soft edges are anti-aliased as they are drawn, so no blur is applied");
     }
 
     // VisibleForTesting
     static class Params {
         enum Format {
-            Text, Image
+            Text, Image, Svg, Field, Search
         }
 
         private final Format format;
@@ -74,6 +115,27 @@ public final class Main {
         private final Long seed;
         private final int blurRadius;
         private final String outputFile;
+        private final Invaders.Edge edge;
+        private final boolean offHeap;
+        private final RandomSources.Algorithm rng;
+        private final Palette palette;
+        private final Invaders.ColourMode colourMode;
+        private final File cacheDir;
+        private final long cacheBytes;
+        private final int[] scales;
+        private final Invaders.Glyphs glyphs;
+        private final boolean ansi;
+        private final boolean dzi;
+        private final int processes;
+        private final int shard;
+        private final int shards;
+        private final File fieldFile;
+        private final int[] region;
+        private final File mosaic;
+        private final File findPattern;
+        private final long findTile;
+        private final long findFrom;
+        private final long findLimit;
 
         Format getFormat() {
             return format;
@@ -87,18 +149,30 @@ public final class Main {
             return y;
         }
 
+        /**
+         * @return the scale, or 0 to render a field at the scale it was saved with
+         */
         int getScale() {
             return scale;
         }
 
+        /**
+         * @return the number of tiles along the X axis, or 0 to cover the {@link #getMosaic()} image
+         */
         int getTileX() {
             return tileX;
         }
 
+        /**
+         * @return the number of tiles along the Y axis, or 0 to cover the {@link #getMosaic()} image
+         */
         int getTileY() {
             return tileY;
         }
 
+        /**
+         * @return the border, or -1 to render a field with the border it was saved with
+         */
         int getBorder() {
             return border;
         }
@@ -119,20 +193,323 @@ public final class Main {
             return outputFile;
         }
 
-        // TODO We have too many parameters - switch to a builder
+        Invaders.Edge getEdge() {
+            return edge;
+        }
+
+        boolean isOffHeap() {
+            return offHeap;
+        }
+
+        RandomSources.Algorithm getRng() {
+            return rng;
+        }
+
+        Palette getPalette() {
+            return palette;
+        }
+
+        Invaders.ColourMode getColourMode() {
+            return colourMode;
+        }
+
+        File getCacheDir() {
+            return cacheDir;
+        }
+
+        long getCacheBytes() {
+            return cacheBytes;
+        }
+
+        /**
+         * @return the scales to write a PNG at, or <code>null</code> to write one at {@link #getScale()}
+         */
+        int[] getScales() {
+            return scales;
+        }
+
+        Invaders.Glyphs getGlyphs() {
+            return glyphs;
+        }
+
+        boolean isAnsi() {
+            return ansi;
+        }
+
+        boolean isDzi() {
+            return dzi;
+        }
+
+        int getProcesses() {
+            return processes;
+        }
+
+        /**
+         * @return the band of rows of tiles to render as a shard, or -1 to render the whole image
+         */
+        int getShard() {
+            return shard;
+        }
+
+        int getShards() {
+            return shards;
+        }
+
+        /**
+         * @return the field to render, or <code>null</code> to generate the tiles
+         */
+        File getFieldFile() {
+            return fieldFile;
+        }
+
+        /**
+         * @return the column, row, width and height of the tiles of the field to render, or <code>null</code> to render
+         *         every tile
+         */
+        int[] getRegion() {
+            return region;
+        }
+
+        /**
+         * @return the image to approximate with invaders, or <code>null</code>
+         */
+        File getMosaic() {
+            return mosaic;
+        }
+
+        /**
+         * @return the file of the invader to search for a seed for, or <code>null</code>
+         */
+        File getFindPattern() {
+            return findPattern;
+        }
+
+        long getFindTile() {
+            return findTile;
+        }
+
+        long getFindFrom() {
+            return findFrom;
+        }
+
+        long getFindLimit() {
+            return findLimit;
+        }
+
         Params(Format format, int x, int y, int scale, int tileX, int tileY, int border, int pxWidth, int pxHeight, Long seed, int blurRadius, String outputFile) {
-            this.x = x;
-            this.y = y;
-            this.format = format;
-            this.scale = scale;
-            this.tileX = tileX;
-            this.tileY = tileY;
-            this.border = border;
-            this.pxWidth = pxWidth;
-            this.pxHeight = pxHeight;
-            this.seed = seed;
-            this.blurRadius = blurRadius;
-            this.outputFile = outputFile;
+            this(new Builder(format)
+                    .size(x, y)
+                    .scale(scale)
+                    .tiles(tileX, tileY)
+                    .border(border)
+                    .pixels(pxWidth, pxHeight)
+                    .seed(seed)
+                    .blurRadius(blurRadius)
+                    .outputFile(outputFile));
+        }
+
+        private Params(Builder builder) {
+            this.format = builder.format;
+            this.x = builder.x;
+            this.y = builder.y;
+            this.scale = builder.scale;
+            this.tileX = builder.tileX;
+            this.tileY = builder.tileY;
+            this.border = builder.border;
+            this.pxWidth = builder.pxWidth;
+            this.pxHeight = builder.pxHeight;
+            this.seed = builder.seed;
+            this.blurRadius = builder.blurRadius;
+            this.outputFile = builder.outputFile;
+            this.edge = builder.edge;
+            this.offHeap = builder.offHeap;
+            this.rng = builder.rng;
+            this.palette = builder.palette;
+            this.colourMode = builder.colourMode;
+            this.cacheDir = builder.cacheDir;
+            this.cacheBytes = builder.cacheBytes;
+            this.scales = builder.scales;
+            this.glyphs = builder.glyphs;
+            this.ansi = builder.ansi;
+            this.dzi = builder.dzi;
+            this.processes = builder.processes;
+            this.shard = builder.shard;
+            this.shards = builder.shards;
+            this.fieldFile = builder.fieldFile;
+            this.region = builder.region;
+            this.mosaic = builder.mosaic;
+            this.findPattern = builder.findPattern;
+            this.findTile = builder.findTile;
+            this.findFrom = builder.findFrom;
+            this.findLimit = builder.findLimit;
+        }
+
+        static class Builder {
+            private final Format format;
+            private int x = DEFAULT_X;
+            private int y = DEFAULT_Y;
+            private int scale = 1;
+            private int tileX = 1;
+            private int tileY = 1;
+            private int border = 0;
+            private int pxWidth = -1;
+            private int pxHeight = -1;
+            private Long seed;
+            private int blurRadius = 0;
+            private String outputFile;
+            private Invaders.Edge edge = Invaders.Edge.Square;
+            private boolean offHeap = false;
+            private RandomSources.Algorithm rng = RandomSources.Algorithm.Jdk;
+            private Palette palette = Palette.DEFAULT;
+            private Invaders.ColourMode colourMode = Invaders.ColourMode.Flat;
+            private File cacheDir;
+            private long cacheBytes = DEFAULT_CACHE_SIZE_MB * 1024L * 1024L;
+            private int[] scales;
+            private Invaders.Glyphs glyphs = Invaders.Glyphs.Ascii;
+            private boolean ansi = false;
+            private boolean dzi = false;
+            private int processes = 1;
+            private int shard = -1;
+            private int shards = 1;
+            private File fieldFile;
+            private int[] region;
+            private File mosaic;
+            private File findPattern;
+            private long findTile = 0;
+            private long findFrom = 0;
+            private long findLimit = Long.MAX_VALUE;
+
+            Builder(Format format) {
+                this.format = format;
+            }
+
+            Builder size(int x, int y) {
+                this.x = x;
+                this.y = y;
+                return this;
+            }
+
+            Builder scale(int scale) {
+                this.scale = scale;
+                return this;
+            }
+
+            Builder tiles(int tileX, int tileY) {
+                this.tileX = tileX;
+                this.tileY = tileY;
+                return this;
+            }
+
+            Builder border(int border) {
+                this.border = border;
+                return this;
+            }
+
+            Builder pixels(int pxWidth, int pxHeight) {
+                this.pxWidth = pxWidth;
+                this.pxHeight = pxHeight;
+                return this;
+            }
+
+            Builder seed(Long seed) {
+                this.seed = seed;
+                return this;
+            }
+
+            Builder blurRadius(int blurRadius) {
+                this.blurRadius = blurRadius;
+                return this;
+            }
+
+            Builder outputFile(String outputFile) {
+                this.outputFile = outputFile;
+                return this;
+            }
+
+            Builder edge(Invaders.Edge edge) {
+                this.edge = edge;
+                return this;
+            }
+
+            Builder offHeap(boolean offHeap) {
+                this.offHeap = offHeap;
+                return this;
+            }
+
+            Builder rng(RandomSources.Algorithm rng) {
+                this.rng = rng;
+                return this;
+            }
+
+            Builder palette(Palette palette) {
+                this.palette = palette;
+                return this;
+            }
+
+            Builder colourMode(Invaders.ColourMode colourMode) {
+                this.colourMode = colourMode;
+                return this;
+            }
+
+            Builder cache(File cacheDir, long cacheBytes) {
+                this.cacheDir = cacheDir;
+                this.cacheBytes = cacheBytes;
+                return this;
+            }
+
+            Builder scales(int[] scales) {
+                this.scales = scales;
+                return this;
+            }
+
+            Builder glyphs(Invaders.Glyphs glyphs) {
+                this.glyphs = glyphs;
+                return this;
+            }
+
+            Builder ansi(boolean ansi) {
+                this.ansi = ansi;
+                return this;
+            }
+
+            Builder dzi(boolean dzi) {
+                this.dzi = dzi;
+                return this;
+            }
+
+            Builder processes(int processes) {
+                this.processes = processes;
+                return this;
+            }
+
+            Builder shard(int shard, int shards) {
+                this.shard = shard;
+                this.shards = shards;
+                return this;
+            }
+
+            Builder field(File fieldFile, int[] region) {
+                this.fieldFile = fieldFile;
+                this.region = region;
+                return this;
+            }
+
+            Builder mosaic(File mosaic) {
+                this.mosaic = mosaic;
+                return this;
+            }
+
+            Builder find(File findPattern, long findTile, long findFrom, long findLimit) {
+                this.findPattern = findPattern;
+                this.findTile = findTile;
+                this.findFrom = findFrom;
+                this.findLimit = findLimit;
+                return this;
+            }
+
+            Params build() {
+                return new Params(this);
+            }
         }
     }
 
@@ -179,6 +556,142 @@ public final class Main {
             }
         }
 
+        private long getLong(String option, long min) throws ParseException {
+            final long value = getLong(option);
+            if (value < min) {
+                throw new ParseException(argErr("--", option, cmd.getOptionValue(option)));
+            }
+            return value;
+        }
+
+        private Invaders.Edge getEdge(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            for (Invaders.Edge edge : Invaders.Edge.values()) {
+                if (edge.name().equalsIgnoreCase(argument)) {
+                    return edge;
+                }
+            }
+            throw new ParseException(argErr("--", option, argument));
+        }
+
+        private RandomSources.Algorithm getRng(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            for (RandomSources.Algorithm rng : RandomSources.Algorithm.values()) {
+                if (rng.name().equalsIgnoreCase(argument)) {
+                    return rng;
+                }
+            }
+            throw new ParseException(argErr("--", option, argument));
+        }
+
+        private Invaders.Glyphs getGlyphs(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            for (Invaders.Glyphs glyphs : Invaders.Glyphs.values()) {
+                if (glyphs.name().equalsIgnoreCase(argument)) {
+                    return glyphs;
+                }
+            }
+            throw new ParseException(argErr("--", option, argument));
+        }
+
+        private Invaders.ColourMode getColourMode(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            for (Invaders.ColourMode mode : Invaders.ColourMode.values()) {
+                if (mode.name().equalsIgnoreCase(argument)) {
+                    return mode;
+                }
+            }
+            throw new ParseException(argErr("--", option, argument));
+        }
+
+        private int[] getScales(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            final String[] values = argument.split(",");
+            final int[] scales = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                try {
+                    scales[i] = Integer.parseInt(values[i].trim());
+                } catch (NumberFormatException e) {
+                    throw new ParseException(argErr("--", option, argument));
+                }
+                if (scales[i] < 1) {
+                    throw new ParseException(argErr("--", option, argument));
+                }
+                for (int j = 0; j < i; j++) {
+                    if (scales[j] == scales[i]) {
+                        throw new ParseException(argErr("--", option, argument));
+                    }
+                }
+            }
+            return scales;
+        }
+
+        /**
+         * @return the index and number of shards, from e.g. <code>0/4</code>
+         */
+        private int[] getShard(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            final String[] values = argument.split("/");
+            if (values.length != 2) {
+                throw new ParseException(argErr("--", option, argument));
+            }
+            final int[] shard = new int[2];
+            try {
+                shard[0] = Integer.parseInt(values[0].trim());
+                shard[1] = Integer.parseInt(values[1].trim());
+            } catch (NumberFormatException e) {
+                throw new ParseException(argErr("--", option, argument));
+            }
+            if (shard[0] < 0 || shard[0] >= shard[1]) {
+                throw new ParseException(argErr("--", option, argument));
+            }
+            return shard;
+        }
+
+        /**
+         * @return the column, row, width and height of a region of tiles, from e.g. <code>10,20,4,3</code>
+         */
+        private int[] getRegion(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            final String[] values = argument.split(",");
+            if (values.length != 4) {
+                throw new ParseException(argErr("--", option, argument));
+            }
+            final int[] region = new int[4];
+            for (int i = 0; i < region.length; i++) {
+                try {
+                    region[i] = Integer.parseInt(values[i].trim());
+                } catch (NumberFormatException e) {
+                    throw new ParseException(argErr("--", option, argument));
+                }
+                // The column and row may be 0, but the width and height may not
+                if (region[i] < ((i < 2) ? 0 : 1)) {
+                    throw new ParseException(argErr("--", option, argument));
+                }
+            }
+            return region;
+        }
+
+        private Palette getPalette(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            try {
+                return Palette.parse(argument);
+            } catch (IllegalArgumentException e) {
+                throw new ParseException(argErr("--", option, argument));
+            }
+        }
+
+        private Palette getPaletteFile(String option) throws ParseException {
+            final String argument = cmd.getOptionValue(option);
+            try {
+                return Palette.load(new File(argument));
+            } catch (IllegalArgumentException e) {
+                throw new ParseException(argErr("--", option, argument));
+            } catch (IOException e) {
+                throw new ParseException(argErr("--", option, argument));
+            }
+        }
+
         public String getString(String option, String defaultValue) {
             return cmd.getOptionValue(option, defaultValue);
         }
@@ -216,6 +729,11 @@ public final class Main {
             seed = cmd.getLong("seed");
         }
 
+        RandomSources.Algorithm rng = RandomSources.Algorithm.Jdk;
+        if (cmd.hasOption("rng")) {
+            rng = cmd.getRng("rng");
+        }
+
         int tileX = 1;
         int tileY = 1;
         int pxWidth = -1;
@@ -246,29 +764,277 @@ public final class Main {
         }
 
         Params.Format fmt;
+        int[] scales = null;
+        Invaders.Glyphs glyphs = Invaders.Glyphs.Ascii;
         int blurRadius = 0;
         String output = null;
+        Invaders.Edge edge = Invaders.Edge.Square;
 
+        if (cmd.hasOption("saveField") && (cmd.hasOption('t') || cmd.hasOption('p') || cmd.hasOption("svg"))) {
+            throw new ParseException(optErr("Option 'saveField' cannot be specified with option 'text', option 'png' or option 'svg'"));
+        }
+        if (cmd.hasOption("find") && (cmd.hasOption('t') || cmd.hasOption('p') || cmd.hasOption("svg") || cmd.hasOption("saveField"))) {
+            throw new ParseException(optErr("Option 'find' cannot be specified with option 'text', option 'png', option 'svg' or option 'saveField'"));
+        }
         if (cmd.hasOption('t')) {
             if (cmd.hasOption('p')) {
                 throw new ParseException(optErr("Option 'png' cannot be specified with option 'text'"));
             }
+            if (cmd.hasOption("svg")) {
+                throw new ParseException(optErr("Option 'svg' cannot be specified with option 'text'"));
+            }
             if (cmd.hasOption("guassian")) {
                 throw new ParseException(optErr("Option 'guassian' cannot be specified with option 'text'"));
             }
             if (cmd.hasOption("output")) {
                 throw new ParseException(optErr("Option 'output' cannot be specified with option 'text'"));
             }
+            if (cmd.hasOption("edges")) {
+                throw new ParseException(optErr("Option 'edges' cannot be specified with option 'text'"));
+            }
+            if (cmd.hasOption("offheap")) {
+                throw new ParseException(optErr("Option 'offheap' cannot be specified with option 'text'"));
+            }
+            if (cmd.hasOption("scales")) {
+                throw new ParseException(optErr("Option 'scales' cannot be specified with option 'text'"));
+            }
+            if (!cmd.hasOption("ansi") && (cmd.hasOption("palette") || cmd.hasOption("paletteFile") || cmd.hasOption("colours"))) {
+                throw new ParseException(optErr("Option 'palette', 'paletteFile' or 'colours' cannot be specified with option 'text' without option 'ansi'"));
+            }
+            if (cmd.hasOption("glyphs")) {
+                glyphs = cmd.getGlyphs("glyphs");
+            }
             fmt = Params.Format.Text;
         } else if (cmd.hasOption('p')) {
+            if (cmd.hasOption("svg")) {
+                throw new ParseException(optErr("Option 'svg' cannot be specified with option 'png'"));
+            }
             fmt = Params.Format.Image;
-            blurRadius = cmd.getInt("guassian", 0, DEFAULT_BLUR_STR);
+            if (cmd.hasOption("edges")) {
+                edge = cmd.getEdge("edges");
+            }
+            if (edge == Invaders.Edge.Square) {
+                blurRadius = cmd.getInt("guassian", 0, DEFAULT_BLUR_STR);
+            } else if (cmd.hasOption("guassian")) {
+                throw new ParseException(optErr("Option 'guassian' cannot be specified with round or soft 'edges'"));
+            }
             output = cmd.getString("output", DEFAULT_OUTPUT_STR);
+            if (cmd.hasOption("scales")) {
+                if (cmd.hasOption('s')) {
+                    throw new ParseException(optErr("Option 'scales' cannot be specified with option 'scale'"));
+                }
+                if (cmd.hasOption("pxWidth") || cmd.hasOption("pxHeight")) {
+                    throw new ParseException(optErr("Option 'scales' cannot be specified with option 'pxWidth' or 'pxHeight'"));
+                }
+                if (cmd.hasOption("offheap")) {
+                    throw new ParseException(optErr("Option 'scales' cannot be specified with option 'offheap'"));
+                }
+                if (cmd.hasOption("cacheDir")) {
+                    throw new ParseException(optErr("Option 'scales' cannot be specified with option 'cacheDir'"));
+                }
+                scales = cmd.getScales("scales");
+            }
+            if (cmd.hasOption("dzi")) {
+                if (cmd.hasOption("scales")) {
+                    throw new ParseException(optErr("Option 'dzi' cannot be specified with option 'scales'"));
+                }
+                if (cmd.hasOption("pxWidth") || cmd.hasOption("pxHeight")) {
+                    throw new ParseException(optErr("Option 'dzi' cannot be specified with option 'pxWidth' or 'pxHeight'"));
+                }
+                if (cmd.hasOption("offheap")) {
+                    throw new ParseException(optErr("Option 'dzi' cannot be specified with option 'offheap'"));
+                }
+                if (cmd.hasOption("cacheDir")) {
+                    throw new ParseException(optErr("Option 'dzi' cannot be specified with option 'cacheDir'"));
+                }
+            }
+            if (cmd.hasOption("processes") || cmd.hasOption("shard")) {
+                if (cmd.hasOption("scales") || cmd.hasOption("dzi")) {
+                    throw new ParseException(optErr("Option 'processes' or 'shard' cannot be specified with option 'scales' or 'dzi'"));
+                }
+                if (cmd.hasOption("pxWidth") || cmd.hasOption("pxHeight")) {
+                    throw new ParseException(optErr("Option 'processes' or 'shard' cannot be specified with option 'pxWidth' or 'pxHeight'"));
+                }
+                if (cmd.hasOption("offheap")) {
+                    throw new ParseException(optErr("Option 'processes' or 'shard' cannot be specified with option 'offheap'"));
+                }
+                if (cmd.hasOption("cacheDir")) {
+                    throw new ParseException(optErr("Option 'processes' or 'shard' cannot be specified with option 'cacheDir'"));
+                }
+            }
+            if (cmd.hasOption("mosaic")) {
+                // The tiles are matched to the image, so there is only one scale and colour, and nothing to cache
+                for (String option : new String[]{"scales", "dzi", "processes", "shard", "offheap", "cacheDir", "colours", "loadField"}) {
+                    if (cmd.hasOption(option)) {
+                        throw new ParseException(optErr(String.format("Option '%s' cannot be specified with option 'mosaic'", option)));
+                    }
+                }
+            }
+        } else if (cmd.hasOption("svg")) {
+            if (cmd.hasOption("edges")) {
+                throw new ParseException(optErr("Option 'edges' cannot be specified with option 'svg'"));
+            }
+            if (cmd.hasOption("offheap")) {
+                throw new ParseException(optErr("Option 'offheap' cannot be specified with option 'svg'"));
+            }
+            if (cmd.hasOption("scales")) {
+                throw new ParseException(optErr("Option 'scales' cannot be specified with option 'svg'"));
+            }
+            fmt = Params.Format.Svg;
+            blurRadius = cmd.getInt("guassian", 0, DEFAULT_BLUR_STR);
+            output = cmd.getString("output", DEFAULT_SVG_OUTPUT_STR);
+        } else if (cmd.hasOption("saveField")) {
+            for (String option : new String[]{"guassian", "output", "edges", "offheap", "scales", "cacheDir"}) {
+                if (cmd.hasOption(option)) {
+                    throw new ParseException(optErr(String.format("Option '%s' cannot be specified with option 'saveField'", option)));
+                }
+            }
+            fmt = Params.Format.Field;
+            output = cmd.getString("saveField", null);
+        } else if (cmd.hasOption("find")) {
+            // Only the size of the invaders and how they are generated matter
+            for (String option : new String[]{"seed", "tileX", "tileY", "pxWidth", "pxHeight", "guassian", "output", "edges", "offheap", "scales",
+                    "cacheDir", "palette", "paletteFile", "colours"}) {
+                if (cmd.hasOption(option)) {
+                    throw new ParseException(optErr(String.format("Option '%s' cannot be specified with option 'find'", option)));
+                }
+            }
+            fmt = Params.Format.Search;
         } else {
-            throw new ParseException(optErr("Option 'text' or option 'png' must be specified"));
+            throw new ParseException(optErr("Option 'text', option 'png', option 'svg', option 'saveField' or option 'find' must be specified"));
+        }
+        if (!cmd.hasOption("find") && (cmd.hasOption("findTile") || cmd.hasOption("findFrom") || cmd.hasOption("findLimit"))) {
+            throw new ParseException(optErr("Option 'findTile', 'findFrom' or 'findLimit' cannot be specified without option 'find'"));
+        }
+        if (fmt != Params.Format.Text && cmd.hasOption("glyphs")) {
+            throw new ParseException(optErr("Option 'glyphs' can only be specified with option 'text'"));
+        }
+        int processes = 1;
+        int[] shard = new int[]{-1, 1};
+        if (fmt != Params.Format.Image && (cmd.hasOption("processes") || cmd.hasOption("shard"))) {
+            throw new ParseException(optErr("Option 'processes' or 'shard' can only be specified with option 'png'"));
+        }
+        if (cmd.hasOption("processes")) {
+            processes = cmd.getInt("processes", 1, "1");
+            if (processes > tileY) {
+                throw new ParseException(optErr("Option 'processes' cannot be more than the number of rows of tiles"));
+            }
+            // Workers are started as java with the class path, which the native image has neither of. A shard is rendered
+            // in the process itself, so is still supported.
+            if (processes > 1 && !cmd.hasOption("shard") && System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+                throw new ParseException(optErr("Option 'processes' is not supported by the native image"));
+            }
+        }
+        if (cmd.hasOption("shard")) {
+            shard = cmd.getShard("shard");
+            if (shard[1] > tileY) {
+                throw new ParseException(optErr("Option 'shard' cannot have more shards than the number of rows of tiles"));
+            }
+        }
+        if (fmt != Params.Format.Image && cmd.hasOption("dzi")) {
+            throw new ParseException(optErr("Option 'dzi' can only be specified with option 'png'"));
+        }
+        if (fmt != Params.Format.Text && cmd.hasOption("ansi")) {
+            throw new ParseException(optErr("Option 'ansi' can only be specified with option 'text'"));
+        }
+        File mosaic = null;
+        if (cmd.hasOption("mosaic")) {
+            if (fmt != Params.Format.Image) {
+                throw new ParseException(optErr("Option 'mosaic' can only be specified with option 'png'"));
+            }
+            // The native image is built without AWT and ImageIO, which reading the image needs
+            if (System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+                throw new ParseException(optErr("Option 'mosaic' is not supported by the native image"));
+            }
+            mosaic = new File(cmd.getString("mosaic", null));
+            // Along each axis without a number of tiles, they cover the image
+            if (!cmd.hasOption("tileX") && !cmd.hasOption("pxWidth")) {
+                tileX = 0;
+            }
+            if (!cmd.hasOption("tileY") && !cmd.hasOption("pxHeight")) {
+                tileY = 0;
+            }
+        }
+        if (fmt != Params.Format.Image && cmd.hasOption("loadField")) {
+            throw new ParseException(optErr("Option 'loadField' can only be specified with option 'png'"));
+        }
+        if (!cmd.hasOption("loadField") && cmd.hasOption("region")) {
+            throw new ParseException(optErr("Option 'region' cannot be specified without option 'loadField'"));
+        }
+        File fieldFile = null;
+        int[] region = null;
+        if (cmd.hasOption("loadField")) {
+            // The tiles, and everything they were generated with, are read from the field
+            for (String option : new String[]{"x", "y", "tileX", "tileY", "pxWidth", "pxHeight", "seed", "rng", "palette", "paletteFile", "colours",
+                    "scales", "dzi", "processes", "shard", "offheap", "cacheDir"}) {
+                if (cmd.hasOption(option)) {
+                    throw new ParseException(optErr(String.format("Option '%s' cannot be specified with option 'loadField'", option)));
+                }
+            }
+            fieldFile = new File(cmd.getString("loadField", null));
+            if (cmd.hasOption("region")) {
+                region = cmd.getRegion("region");
+            }
+            if (!cmd.hasOption('s')) {
+                scale = 0;
+            }
+            if (!cmd.hasOption('b')) {
+                border = -1;
+            }
         }
 
-        return new Params(fmt, x, y, scale, tileX, tileY, border, pxWidth, pxHeight, seed, blurRadius, output);
+        Palette palette = Palette.DEFAULT;
+        if (cmd.hasOption("palette")) {
+            if (cmd.hasOption("paletteFile")) {
+                throw new ParseException(optErr("Option 'palette' cannot be specified with option 'paletteFile'"));
+            }
+            palette = cmd.getPalette("palette");
+        } else if (cmd.hasOption("paletteFile")) {
+            palette = cmd.getPaletteFile("paletteFile");
+        }
+
+        Invaders.ColourMode colourMode = Invaders.ColourMode.Flat;
+        if (cmd.hasOption("colours")) {
+            colourMode = cmd.getColourMode("colours");
+        }
+
+        File cacheDir = null;
+        long cacheBytes = DEFAULT_CACHE_SIZE_MB * 1024L * 1024L;
+        if (cmd.hasOption("cacheDir")) {
+            cacheDir = new File(cmd.getString("cacheDir", null));
+            cacheBytes = cmd.getInt("cacheSize", 1, DEFAULT_CACHE_SIZE_STR) * 1024L * 1024L;
+        } else if (cmd.hasOption("cacheSize")) {
+            throw new ParseException(optErr("Option 'cacheSize' cannot be specified without option 'cacheDir'"));
+        }
+
+        return new Params.Builder(fmt)
+                .size(x, y)
+                .scale(scale)
+                .tiles(tileX, tileY)
+                .border(border)
+                .pixels(pxWidth, pxHeight)
+                .seed(seed)
+                .blurRadius(blurRadius)
+                .outputFile(output)
+                .edge(edge)
+                .offHeap(cmd.hasOption("offheap"))
+                .rng(rng)
+                .palette(palette)
+                .colourMode(colourMode)
+                .cache(cacheDir, cacheBytes)
+                .scales(scales)
+                .glyphs(glyphs)
+                .ansi(cmd.hasOption("ansi"))
+                .dzi(cmd.hasOption("dzi"))
+                .processes(processes)
+                .shard(shard[0], shard[1])
+                .field(fieldFile, region)
+                .mosaic(mosaic)
+                .find(cmd.hasOption("find") ? new File(cmd.getString("find", null)) : null,
+                        cmd.hasOption("findTile") ? cmd.getLong("findTile", 0) : 0,
+                        cmd.hasOption("findFrom") ? cmd.getLong("findFrom", 0) : 0,
+                        cmd.hasOption("findLimit") ? cmd.getLong("findLimit", 1) : Long.MAX_VALUE)
+                .build();
     }
 
     static int roundUp(int value, int divisor) {
@@ -293,32 +1059,157 @@ public final class Main {
     }
 
     // VisibleForTesting
-    static Random seed(Random random, Params params) {
-        if (params.getSeed() != null) {
-            random.setSeed(params.getSeed());
+    static long seed(Random random, Params params) {
+        return (params.getSeed() != null) ? params.getSeed() : random.nextLong();
+    }
+
+    /**
+     * @return a seed for tile colours, which is derived from the 'seed' parameter if there is one, so that seeded runs
+     * are reproducible
+     */
+    // VisibleForTesting
+    static long colourSeed(Random random, Params params) {
+        return (params.getSeed() != null) ? params.getSeed() ^ COLOUR_SEED_MIX : random.nextLong();
+    }
+
+    /**
+     * @return the cache for these parameters, or <code>null</code> if their output should not be cached
+     */
+    private static OutputCache getCache(Params params) throws IOException {
+        if (params.getCacheDir() == null || params.getSeed() == null) {
+            return null;
         }
-        return random;
+        return new OutputCache(params.getCacheDir(), params.getCacheBytes());
     }
 
-    private static BufferedImage offset(BufferedImage src, int pxDesiredWidth, int pxDesiredHeight) {
-        BufferedImage dst = new BufferedImage(pxDesiredWidth, pxDesiredHeight, BufferedImage.TYPE_INT_ARGB);
+    /**
+     * Copies cached output for these parameters to stdout or the output file, as generating it would.
+     *
+     * @return whether there was cached output
+     */
+    private static boolean writeCached(OutputCache cache, String key, Invaders invader, Params params) throws IOException {
+        if (params.getFormat() == Params.Format.Text) {
+            System.out.flush();
+            // Not closed, as that would close stdout
+            return cache.copyTo(key, new FileOutputStream(FileDescriptor.out).getChannel());
+        }
+        final File output = new File(params.getOutputFile());
+        if (!cache.copyTo(key, output)) {
+            return false;
+        }
+        if (params.getFormat() == Params.Format.Image) {
+            ImageOutput.printSaved(ImageOutput.getWidth(invader, params), ImageOutput.getHeight(invader, params), output);
+        } else {
+            printSavedSvg(output);
+        }
+        return true;
+    }
 
-        Graphics2D graphics = dst.createGraphics();
-        graphics.setPaint(Color.black);
-        graphics.fillRect(0, 0, dst.getWidth(), dst.getHeight());
-        graphics.drawImage(src, null, (pxDesiredWidth - src.getWidth()) / 2, (pxDesiredHeight - src.getHeight()) / 2);
+    private static void printSavedSvg(File output) {
+        System.out.print(String.format("Saved SVG to %s\n", output.getAbsolutePath()));
+    }
 
-        return dst;
+    /**
+     * Prints the text of the parameters, <code>tileX</code> by <code>tileY</code> tiles whatever the glyphs.
+     */
+    // VisibleForTesting
+    static void writeText(Invaders invader, Params params, MemoryPlan plan) throws IOException {
+        if (params.getGlyphs() == Invaders.Glyphs.Ascii && !params.isAnsi() && plan.getDecision() == MemoryPlan.Decision.InMemory) {
+            System.out.println(invader.getTextInvaders(params.getTileX(), params.getTileY(), params.getBorder()));
+            return;
+        }
+        // Plain text too large to draw at once is written a line at a time, exactly as it would have been printed
+        final OutputStream out = new BufferedOutputStream(System.out, 64 * 1024);
+        invader.writeTextInvaders(params.getTileX(), params.getTileY(), params.getBorder(), params.getGlyphs(), params.isAnsi(), out);
+        out.flush();
     }
 
-    private static BufferedImage blur(BufferedImage src, int blurRadius) {
-        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        GaussianBlurFilter gaussianFilter = new GaussianBlurFilter(blurRadius);
-        gaussianFilter.filter(src, dst);
-        return dst;
+    // Writes everything written to it to both of its streams
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        private TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+
+    private static void write(Invaders invader, Params params, MemoryPlan plan, OutputCache cache, String key) throws IOException {
+        switch (params.getFormat()) {
+            case Text:
+                if (cache == null) {
+                    writeText(invader, params, plan);
+                    break;
+                }
+                // Copied into the cache as it is printed, as a single invader also prints its value, and text too large
+                // to hold in memory is written a line at a time
+                final PrintStream stdout = System.out;
+                final OutputCache.Entry entry = cache.create(key);
+                try {
+                    System.setOut(new PrintStream(new TeeOutputStream(stdout, entry), false, "UTF-8"));
+                    try {
+                        writeText(invader, params, plan);
+                        System.out.flush();
+                    } finally {
+                        System.setOut(stdout);
+                    }
+                    entry.commit();
+                } finally {
+                    entry.close();
+                }
+                break;
+            case Image:
+                ImageOutput.write(invader, params, plan);
+                if (cache != null) {
+                    cache.put(key, new File(params.getOutputFile()));
+                }
+                break;
+            case Svg:
+                final String svg = invader.getSvgInvaders(params.getTileX(), params.getTileY(), params.getBorder(), params.getPxWidth(), params.getPxHeight(), params.getBlurRadius());
+                final File svgOutput = new File(params.getOutputFile());
+                final Writer writer = new OutputStreamWriter(new FileOutputStream(svgOutput), "UTF-8");
+                try {
+                    writer.write(svg);
+                } finally {
+                    writer.close();
+                }
+                if (cache != null) {
+                    cache.put(key, svgOutput);
+                }
+                printSavedSvg(svgOutput);
+                break;
+            case Field:
+                final File fieldOutput = new File(params.getOutputFile());
+                InvaderField.write(invader, params, fieldOutput);
+                System.out.print(String.format("Saved %d x %d tiles to %s\n", params.getTileX(), params.getTileY(), fieldOutput.getAbsolutePath()));
+                break;
+        }
     }
 
     public static void main(String[] args) {
+        // Nothing is ever displayed, and a native image may not have a display to connect to
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
 
         Params params = null;
         try {
@@ -332,23 +1223,56 @@ public final class Main {
             System.exit(0);
         }
 
-        final Invaders invader = new Invaders(params.getX(), params.getY(), params.getScale(), seed(new Random(), params), new Random());
+        // Workers are started with the same arguments, and a shard, so they never start workers of their own
+        if (params.getProcesses() > 1 && params.getShard() < 0) {
+            try {
+                ShardedPng.render(args, params);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (params.getFormat() == Params.Format.Search) {
+            try {
+                SeedSearch.run(params);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        if (params.getFieldFile() != null) {
+            try {
+                ImageOutput.writeField(params);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
 
-        switch (params.getFormat()) {
-            case Text:
-                System.out.println(invader.getTextInvaders(params.getTileX(), params.getTileX(), params.getBorder()));
-                break;
-            case Image:
-                final BufferedImage image = blur(offset(invader.getImageInvaders(params.getTileX(), params.getTileY(), params.getBorder()), params.getPxWidth(), params.getPxHeight()), params.getBlurRadius());
-                final File output = new File(params.getOutputFile());
-                try {
-                    ImageIO.write(image, "PNG", output);
-                    System.out.print(String.format("Saved %d x %d to %s\n", image.getWidth(), image.getHeight(), output.getAbsolutePath()));
-                } catch (IOException e) {
-                    e.printStackTrace();
+        final Random seeds = new Random();
+        final RandomSource invaderRandom = params.getRng().create(seed(seeds, params));
+        final RandomSource colourRandom = params.getRng().create(colourSeed(seeds, params));
+        final Invaders invader = new Invaders(params.getX(), params.getY(), params.getScale(), invaderRandom, colourRandom, params.getPalette(), params.getColourMode());
+
+        try {
+            final OutputCache cache = getCache(params);
+            final String key = (cache == null) ? null : OutputCache.key(params, Version.get());
+            if (cache == null || !writeCached(cache, key, invader, params)) {
+                final MemoryPlan plan = MemoryPlan.plan(params, Runtime.getRuntime().availableProcessors(), MemoryPlan.getAvailable());
+                if (plan.getReport() != null) {
+                    System.err.println(plan.getReport());
+                }
+                if (plan.getDecision() == MemoryPlan.Decision.Reject) {
                     System.exit(1);
                 }
-                break;
+                write(invader, params, plan, cache, key);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,292 @@
+package com.cleggatt.invaders;
+
+import java.util.Arrays;
+
+/**
+ * Works out, before anything is rendered, how much heap the pipeline for some parameters will need at its peak, and
+ * whether it fits. If it does not, a PNG or text can be rendered a row of tiles at a time instead, and fewer scales or
+ * Deep Zoom PNGs rendered at once. All sizes are worked out with long arithmetic, so sizes too large for an array are
+ * planned for rather than overflowing.
+ * <p>
+ * Fields and mosaics are sized from their files, and SVGs from their content, so are not planned.
+ */
+final class MemoryPlan {
+
+    enum Decision {
+        /**
+         * The pipeline fits as it is
+         */
+        InMemory,
+        /**
+         * Only a row of tiles at a time fits
+         */
+        Streaming,
+        /**
+         * Nothing fits
+         */
+        Reject
+    }
+
+    // Only this fraction of the free heap is planned for, leaving room for the garbage collector and everything else
+    private static final double HEADROOM = 0.8;
+    // The largest array most JVMs will allocate
+    private static final long MAX_ARRAY = Integer.MAX_VALUE - 8;
+    // Deflate's window and hash tables, and the PNG encoder's buffers
+    private static final long ENCODER_BYTES = 1024 * 1024;
+    // An array of rows, and the rows themselves, of each tile's colours
+    private static final long ARRAY_BYTES = 16;
+
+    private final Decision decision;
+    private final long peakBytes;
+    private final long availableBytes;
+    private final int threads;
+    private final String report;
+
+    private MemoryPlan(Decision decision, long peakBytes, long availableBytes, int threads, String report) {
+        this.decision = decision;
+        this.peakBytes = peakBytes;
+        this.availableBytes = availableBytes;
+        this.threads = threads;
+        this.report = report;
+    }
+
+    Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * @return the most heap the chosen pipeline needs, or that the smallest pipeline would have needed if nothing fits
+     */
+    long getPeakBytes() {
+        return peakBytes;
+    }
+
+    long getAvailableBytes() {
+        return availableBytes;
+    }
+
+    /**
+     * @return the number of scales, or Deep Zoom PNGs, to render at once
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return what was decided, if anything other than rendering as asked, otherwise <code>null</code>
+     */
+    String getReport() {
+        return report;
+    }
+
+    /**
+     * @return the heap which may be planned for, now
+     */
+    static long getAvailable() {
+        final Runtime runtime = Runtime.getRuntime();
+        return (long) ((runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory())) * HEADROOM);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes >= 1L << 30) {
+            return String.format("%.1fGB", bytes / (double) (1L << 30));
+        }
+        return String.format("%.1fMB", bytes / (double) (1L << 20));
+    }
+
+    /**
+     * @param processors the number of scales, or Deep Zoom PNGs, which would be rendered at once if they all fit
+     */
+    static MemoryPlan plan(Main.Params params, int processors, long available) {
+        switch (params.getFormat()) {
+            case Text:
+                return planText(params, available);
+            case Image:
+                if (params.getFieldFile() == null && params.getMosaic() == null) {
+                    return planImage(params, processors, available);
+                }
+                break;
+            default:
+                break;
+        }
+        return new MemoryPlan(Decision.InMemory, 0, available, processors, null);
+    }
+
+    // Borders are a pixel, or a character, wide at any scale
+    private static long getTileWidth(Main.Params params, int scale) {
+        return ((long) params.getX() * 2 * scale) + (params.getBorder() * 2L);
+    }
+
+    private static long getTileHeight(Main.Params params, int scale) {
+        return ((long) params.getY() * scale) + (params.getBorder() * 2L);
+    }
+
+    private static long getTiles(Main.Params params) {
+        return (long) params.getTileX() * params.getTileY();
+    }
+
+    // The values and palette picks of a grid of tiles
+    private static long getGridBytes(Main.Params params) {
+        final int picks = TileColours.getPicks(params.getColourMode(), params.getX(), params.getY());
+        return (2 * ARRAY_BYTES) + (getTiles(params) * (8 + (4L * picks)));
+    }
+
+    // The colours of the pixels of a tile
+    private static long getColourBytes(Main.Params params) {
+        return ARRAY_BYTES + (4L * params.getY()) + (params.getY() * (ARRAY_BYTES + (8L * params.getX())));
+    }
+
+    // The rows held as a PNG is offset, blurred and encoded a row at a time
+    private static long getRowBytes(long width, long height, int blurRadius) {
+        long bytes = ENCODER_BYTES + (width * (4 + 4 + 4 + 3));
+        if (blurRadius > 0) {
+            // The window of horizontally blurred rows, and the rows being summed, each a float per channel
+            bytes += 16 * width * (Math.min((blurRadius * 2L) + 1, height) + 2);
+        }
+        return bytes;
+    }
+
+    private static String describe(long width, long height) {
+        return String.format("a %d x %d PNG", width, height);
+    }
+
+    private static MemoryPlan reject(String what, long peak, long available) {
+        return new MemoryPlan(Decision.Reject, peak, available, 0, String.format(
+                "invaders: %s needs %s of heap, but only %s is free. Give Java more heap with -Xmx",
+                what, formatBytes(peak), formatBytes(available)));
+    }
+
+    private static MemoryPlan planImage(Main.Params params, int processors, long available) {
+        final long tileWidth = getTileWidth(params, params.getScale());
+        final long tileHeight = getTileHeight(params, params.getScale());
+        final long width = tileWidth * params.getTileX();
+        final long height = tileHeight * params.getTileY();
+        final long outWidth = (params.getPxWidth() < 1) ? width : params.getPxWidth();
+        final long outHeight = (params.getPxHeight() < 1) ? height : params.getPxHeight();
+        final long rows = getRowBytes(outWidth, outHeight, params.getBlurRadius());
+
+        // However little memory drawing it would need, an image is at most as many pixels along each side as an int
+        if (Math.max(width, outWidth) > Integer.MAX_VALUE || Math.max(height, outHeight) > Integer.MAX_VALUE) {
+            return new MemoryPlan(Decision.Reject, 0, available, 0, String.format(
+                    "invaders: %s is larger than %d pixels along a side", describe(outWidth, outHeight), Integer.MAX_VALUE));
+        }
+        if (params.getProcesses() > 1 && params.getShard() < 0) {
+            // Each process plans its own shard
+            return new MemoryPlan(Decision.InMemory, 0, available, processors, null);
+        }
+        if (params.isDzi()) {
+            return planDeepZoom(params, width, height, processors, available);
+        }
+        if (params.getScales() != null) {
+            return planScales(params, processors, available);
+        }
+
+        // A row of tiles, offset, blurred and encoded, as a shard is always rendered
+        final long streamed = (4 * width * tileHeight) + rows;
+        if (params.getShard() >= 0) {
+            return fits(Decision.Streaming, streamed, describe(outWidth, outHeight), available, processors);
+        }
+        if (params.isOffHeap()) {
+            return fits(Decision.InMemory, rows + (4 * width), describe(outWidth, outHeight), available, processors);
+        }
+        final long inMemory = (4 * width * height) + rows;
+        if (width * height <= MAX_ARRAY && inMemory <= available) {
+            return new MemoryPlan(Decision.InMemory, inMemory, available, processors, null);
+        }
+        if (streamed > available || width * tileHeight > MAX_ARRAY) {
+            return reject(describe(outWidth, outHeight), Math.min(inMemory, streamed), available);
+        }
+        return new MemoryPlan(Decision.Streaming, streamed, available, processors, String.format(
+                "invaders: %s needs %s of heap, but only %s is free, so it is rendered a row of tiles at a time, in %s",
+                describe(outWidth, outHeight), formatBytes(inMemory), formatBytes(available), formatBytes(streamed)));
+    }
+
+    private static MemoryPlan fits(Decision decision, long peak, String what, long available, int processors) {
+        if (peak > available) {
+            return reject(what, peak, available);
+        }
+        return new MemoryPlan(decision, peak, available, processors, null);
+    }
+
+    private static MemoryPlan planDeepZoom(Main.Params params, long width, long height, int processors, long available) {
+        final long grid = getGridBytes(params);
+        final int levels = 65 - Long.numberOfLeadingZeros(Math.max(1, Math.max(width, height) - 1));
+        // Each PNG is drawn with a margin for the blur, and the four below it are held at every level above it
+        final long margin = DeepZoom.TILE_SIZE + (params.getBlurRadius() * 2L);
+        final long worker = (4L * margin * margin * 3) + (4L * levels * 4 * DeepZoom.TILE_SIZE * DeepZoom.TILE_SIZE)
+                + getRowBytes(DeepZoom.TILE_SIZE, DeepZoom.TILE_SIZE, 0);
+        return planWorkers(String.format("a Deep Zoom Image of %s", describe(width, height)), "PNGs", grid, new long[]{worker},
+                processors, available);
+    }
+
+    private static MemoryPlan planScales(Main.Params params, int processors, long available) {
+        final int[] scales = params.getScales();
+        final long[] images = new long[scales.length];
+        for (int i = 0; i < scales.length; i++) {
+            final long width = getTileWidth(params, scales[i]) * params.getTileX();
+            final long height = getTileHeight(params, scales[i]) * params.getTileY();
+            images[i] = (width * height <= MAX_ARRAY) ? (4 * width * height) + getRowBytes(width, height, params.getBlurRadius()) : Long.MAX_VALUE / 2;
+        }
+        return planWorkers(String.format("the largest of %d scales", scales.length), "scales", getGridBytes(params), images,
+                Math.min(scales.length, processors), available);
+    }
+
+    /**
+     * Plans for as many workers as fit, each needing one of <code>workers</code> (the last for every worker beyond
+     * them), up to <code>wanted</code>, as well as <code>shared</code>. The largest are planned for first.
+     */
+    private static MemoryPlan planWorkers(String what, String units, long shared, long[] workers, int wanted, long available) {
+        final long[] sorted = workers.clone();
+        Arrays.sort(sorted);
+        long peak = shared;
+        int threads = 0;
+        while (threads < wanted) {
+            final long next = sorted[Math.max(0, sorted.length - 1 - threads)];
+            if (peak + next > available) {
+                break;
+            }
+            peak += next;
+            threads++;
+        }
+        if (threads == 0) {
+            return reject(what, shared + sorted[sorted.length - 1], available);
+        }
+        if (threads < wanted) {
+            return new MemoryPlan(Decision.InMemory, peak, available, threads, String.format(
+                    "invaders: only %s of heap is free, so %d %s are rendered at once rather than %d, in %s",
+                    formatBytes(available), threads, units, wanted, formatBytes(peak)));
+        }
+        return new MemoryPlan(Decision.InMemory, peak, available, threads, null);
+    }
+
+    private static MemoryPlan planText(Main.Params params, long available) {
+        final long tileHeight = getTileHeight(params, params.getScale());
+        final long lineWidth = getTileWidth(params, params.getScale()) * params.getTileX();
+        final long lineBytes = (lineWidth * 4) + 16;
+        final long tiles = getTiles(params);
+        if (tiles > MAX_ARRAY) {
+            return reject(String.format("text of %d tiles", tiles), tiles * 8, available);
+        }
+        // Glyphs are written a line at a time, and only the invaders, or with colour their grid and the colours of two
+        // rows of tiles, are held
+        final long colours = params.isAnsi() ? getGridBytes(params) + (2L * params.getTileX() * getColourBytes(params)) : 0;
+        final long streamed = (tiles * 8) + colours + (12 * (lineWidth + (tileHeight * params.getTileY()))) + lineBytes;
+        if (params.getGlyphs() != Invaders.Glyphs.Ascii || params.isAnsi()) {
+            return fits(Decision.InMemory, streamed, String.format("text of %d tiles", tiles), available, 1);
+        }
+
+        // Plain text is drawn into a buffer of characters, with a line break on every line, and copied to a string
+        final long lines = tileHeight * params.getTileY();
+        final long characters = (lineWidth + 1) * lines;
+        final long inMemory = characters * 2 * 2;
+        if (characters <= MAX_ARRAY && inMemory <= available) {
+            return new MemoryPlan(Decision.InMemory, inMemory, available, 1, null);
+        }
+        if (streamed > available) {
+            return reject(String.format("text of %d characters", characters), Math.min(inMemory, streamed), available);
+        }
+        return new MemoryPlan(Decision.Streaming, streamed, available, 1, String.format(
+                "invaders: text of %d characters needs %s of heap, but only %s is free, so it is written a line at a time, in %s",
+                characters, formatBytes(inMemory), formatBytes(available), formatBytes(streamed)));
+    }
+}
@@ -0,0 +1,185 @@
+package com.cleggatt.invaders;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Matches the cells of an image, one for each tile, to the invader and colour which best approximate them.
+ * <p>
+ * Seen from a distance, a tile is the colour of its invader, darkened by the black pixels around it: its colour scaled
+ * by the fraction of the tile's pixels which are set. That fraction only depends on how many pixels the invader has set,
+ * so each cell is matched to a number of set pixels and a palette colour, rather than to an invader. The best match for
+ * every colour, to 5 bits a channel, is worked out once, so matching a cell is a single lookup.
+ * <p>
+ * The image is read with ImageIO, so this is the only part of rendering which uses AWT, and mosaics cannot be made by
+ * the native image.
+ */
+final class Mosaic {
+
+    private static final int LUT_BITS = 5;
+
+    // The number of set pixels in the upper bits, and the palette index in the lower 16
+    private final int[] lut = new int[1 << (LUT_BITS * 3)];
+
+    /**
+     * @param x the width of a tile, before mirroring and scaling
+     */
+    Mosaic(int x, int y, int scale, int border, Palette palette) {
+        // Every pixel set in the un-mirrored half is mirrored and scaled, but the border around the tile is not
+        final int bits = x * y;
+        final double pixels = ((2.0 * x * scale) + (border * 2)) * ((y * scale) + (border * 2));
+        final int candidates = (bits + 1) * palette.size();
+        final double[][] colours = new double[candidates][3];
+        for (int count = 0; count <= bits; count++) {
+            final double coverage = (2.0 * count * scale * scale) / pixels;
+            for (int i = 0; i < palette.size(); i++) {
+                final int colour = palette.get(i);
+                final double[] candidate = colours[(count * palette.size()) + i];
+                candidate[0] = ((colour >> 16) & 0xFF) * coverage;
+                candidate[1] = ((colour >> 8) & 0xFF) * coverage;
+                candidate[2] = (colour & 0xFF) * coverage;
+            }
+        }
+
+        final int levels = 1 << LUT_BITS;
+        final int shift = 8 - LUT_BITS;
+        for (int entry = 0; entry < lut.length; entry++) {
+            // The centre of the colours the entry covers
+            final int r = (((entry >> (LUT_BITS * 2)) & (levels - 1)) << shift) + (1 << (shift - 1));
+            final int g = (((entry >> LUT_BITS) & (levels - 1)) << shift) + (1 << (shift - 1));
+            final int b = ((entry & (levels - 1)) << shift) + (1 << (shift - 1));
+            int best = 0;
+            double bestDistance = Double.MAX_VALUE;
+            for (int c = 0; c < candidates; c++) {
+                final double dr = r - colours[c][0];
+                final double dg = g - colours[c][1];
+                final double db = b - colours[c][2];
+                final double distance = (dr * dr) + (dg * dg) + (db * db);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = c;
+                }
+            }
+            lut[entry] = ((best / palette.size()) << 16) | (best % palette.size());
+        }
+    }
+
+    /**
+     * @return the best match for a colour, for {@link #getCount(int)} and {@link #getColour(int)}
+     */
+    int match(int rgb) {
+        final int shift = 8 - LUT_BITS;
+        final int r = ((rgb >> 16) & 0xFF) >> shift;
+        final int g = ((rgb >> 8) & 0xFF) >> shift;
+        final int b = (rgb & 0xFF) >> shift;
+        return lut[(r << (LUT_BITS * 2)) | (g << LUT_BITS) | b];
+    }
+
+    /**
+     * @return the number of pixels of the un-mirrored half of the invader of a match which are set
+     */
+    static int getCount(int match) {
+        return match >>> 16;
+    }
+
+    /**
+     * @return the palette index of a match
+     */
+    static int getColour(int match) {
+        return match & 0xFFFF;
+    }
+
+    // The average colour of columns x0 to x1 of the rows of a cell, starting at offset
+    private static int average(int[] rgb, int offset, int stride, int x0, int x1, int rows) {
+        long r = 0;
+        long g = 0;
+        long b = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = x0; x < x1; x++) {
+                final int pixel = rgb[offset + (y * stride) + x];
+                r += (pixel >> 16) & 0xFF;
+                g += (pixel >> 8) & 0xFF;
+                b += pixel & 0xFF;
+            }
+        }
+        final long count = (long) (x1 - x0) * rows;
+        return (int) (((r / count) << 16) | ((g / count) << 8) | (b / count));
+    }
+
+    private static int getStart(int cell, int cells, int length) {
+        return (int) (((long) cell * length) / cells);
+    }
+
+    // A cell is at least one pixel, so an image smaller than the grid has cells in common
+    private static int getEnd(int cell, int cells, int length) {
+        return Math.min(length, Math.max(getStart(cell + 1, cells, length), getStart(cell, cells, length) + 1));
+    }
+
+    /**
+     * Reads an image in any format ImageIO can, into pixels which no longer need AWT.
+     */
+    static PixelImage read(File file) throws IOException {
+        final BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException(String.format("%s is not an image", file.getAbsolutePath()));
+        }
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IOException(String.format("%s is too large to match", file.getAbsolutePath()));
+        }
+        return new PixelImage(image.getRGB(0, 0, width, height, null, 0, width), width, height);
+    }
+
+    /**
+     * Matches the cells of an image, a row of cells to each task.
+     *
+     * @return the match for each cell, row by row
+     */
+    int[] match(final PixelImage image, final int numWide, final int numHigh, ExecutorService executor) throws IOException {
+        final int[] matches = new int[numWide * numHigh];
+        final int width = image.getWidth();
+        final int[] rgb = image.getPixels();
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int row = 0; row < numHigh; row++) {
+            final int cellRow = row;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    final int y0 = getStart(cellRow, numHigh, image.getHeight());
+                    final int rows = getEnd(cellRow, numHigh, image.getHeight()) - y0;
+                    for (int column = 0; column < numWide; column++) {
+                        final int x0 = getStart(column, numWide, width);
+                        final int x1 = getEnd(column, numWide, width);
+                        matches[(cellRow * numWide) + column] = match(average(rgb, y0 * width, width, x0, x1, rows));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // Nothing is checked
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw (Error) cause;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while matching cells", e);
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,130 @@
+package com.cleggatt.invaders;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * <code>INT_ARGB</code> pixels held in a memory-mapped temporary file rather than on the heap, allowing images with
+ * more than 2^31 pixels. The file is mapped in chunks of whole rows, as a single mapping is limited to 2GB.
+ * <p>
+ * The file starts out sparse and zeroed, so unwritten pixels read as transparent black.
+ */
+public final class OffHeapRaster implements RowSource, Closeable {
+
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private final int width;
+    private final int height;
+    private final int rowsPerChunk;
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final IntBuffer[] chunks;
+
+    private int[] span = new int[0];
+
+    OffHeapRaster(int width, int height, File directory) throws IOException {
+        this(width, height, directory, MAX_CHUNK_BYTES);
+    }
+
+    // VisibleForTesting
+    OffHeapRaster(int width, int height, File directory, long maxChunkBytes) throws IOException {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException(String.format("Invalid raster size %d x %d", width, height));
+        }
+        final long rowBytes = width * 4L;
+        if (rowBytes > maxChunkBytes) {
+            throw new IllegalArgumentException(String.format("Raster width %d is too large", width));
+        }
+
+        this.width = width;
+        this.height = height;
+        this.rowsPerChunk = (int) Math.min(height, maxChunkBytes / rowBytes);
+
+        file = File.createTempFile("invaders", ".raster", directory);
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            randomAccessFile.setLength(rowBytes * height);
+
+            final FileChannel channel = randomAccessFile.getChannel();
+            chunks = new IntBuffer[((height - 1) / rowsPerChunk) + 1];
+            for (int i = 0; i < chunks.length; i++) {
+                final long firstRow = (long) i * rowsPerChunk;
+                final long rows = Math.min(rowsPerChunk, height - firstRow);
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, firstRow * rowBytes, rows * rowBytes);
+                chunks[i] = buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    private IntBuffer getChunk(int y) {
+        return chunks[y / rowsPerChunk];
+    }
+
+    private int getIndex(int x, int y) {
+        return ((y % rowsPerChunk) * width) + x;
+    }
+
+    void setPixel(int x, int y, int colour) {
+        getChunk(y).put(getIndex(x, y), colour);
+    }
+
+    int getPixel(int x, int y) {
+        return getChunk(y).get(getIndex(x, y));
+    }
+
+    void fillRect(int x, int y, int width, int height, int colour) {
+        if (span.length < width) {
+            span = new int[width];
+        }
+        Arrays.fill(span, 0, width, colour);
+
+        for (int line = y; line < y + height; line++) {
+            final IntBuffer chunk = getChunk(line).duplicate();
+            chunk.position(getIndex(x, line));
+            chunk.put(span, 0, width);
+        }
+    }
+
+    @Override
+    public void getRow(int y, int[] row) {
+        final IntBuffer chunk = getChunk(y).duplicate();
+        chunk.position(getIndex(0, y));
+        chunk.get(row, 0, width);
+    }
+
+    /**
+     * Closes and deletes the backing file. The mappings themselves are released when they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            randomAccessFile.close();
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
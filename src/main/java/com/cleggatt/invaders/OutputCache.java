@@ -0,0 +1,253 @@
+package com.cleggatt.invaders;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Output files stored under a hash of the parameters which produced them, so repeated seeded runs need not render
+ * anything. Entries are copied with {@link FileChannel#transferTo}, which the OS can do without copying through the
+ * JVM. When the cache grows past its maximum size, the least recently used entries are deleted.
+ * <p>
+ * Several processes may share a cache directory, as entries are written to a temporary file and renamed into place.
+ */
+final class OutputCache {
+
+    private static final String SUFFIX = ".out";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final long maxBytes;
+
+    OutputCache(File directory, long maxBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Cannot create cache directory %s", directory));
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return a hash of everything which affects the output of a seeded run, but not of where it is written
+     */
+    static String key(Main.Params params, String version) {
+        final StringBuilder normalised = new StringBuilder();
+        normalised.append(version).append('\n')
+                .append(params.getFormat()).append('\n')
+                .append(params.getX()).append('x').append(params.getY()).append('\n')
+                .append(params.getScale()).append('\n')
+                .append(params.getTileX()).append('x').append(params.getTileY()).append('\n')
+                .append(params.getBorder()).append('\n')
+                .append(params.getPxWidth()).append('x').append(params.getPxHeight()).append('\n')
+                .append(params.getSeed()).append('\n')
+                .append(params.getBlurRadius()).append('\n')
+                .append(params.getEdge()).append('\n')
+                .append(params.getRng()).append('\n')
+                .append(params.getColourMode()).append('\n')
+                .append(params.getGlyphs()).append('\n')
+                .append(params.isAnsi()).append('\n');
+        final Palette palette = params.getPalette();
+        for (int i = 0; i < palette.size(); i++) {
+            normalised.append(Integer.toHexString(palette.get(i))).append(',');
+        }
+
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalised.toString().getBytes(UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File getEntry(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    /**
+     * Copies the entry for <code>key</code>, if there is one, to <code>target</code>.
+     *
+     * @return whether there was an entry
+     */
+    boolean copyTo(String key, WritableByteChannel target) throws IOException {
+        final File entry = getEntry(key);
+        final FileInputStream in;
+        try {
+            in = new FileInputStream(entry);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            transfer(in.getChannel(), target);
+        } finally {
+            in.close();
+        }
+        // Marks the entry as recently used
+        entry.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * As {@link #copyTo(String, WritableByteChannel)}, replacing <code>target</code> if there is an entry.
+     */
+    boolean copyTo(String key, File target) throws IOException {
+        if (!getEntry(key).isFile()) {
+            return false;
+        }
+        final FileOutputStream out = new FileOutputStream(target);
+        try {
+            return copyTo(key, out.getChannel());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void transfer(FileChannel source, WritableByteChannel target) throws IOException {
+        final long size = source.size();
+        long position = 0;
+        while (position < size) {
+            position += source.transferTo(position, size - position, target);
+        }
+    }
+
+    /**
+     * Stores a copy of <code>source</code> as the entry for <code>key</code>, then evicts entries if the cache is full.
+     */
+    void put(String key, File source) throws IOException {
+        final FileInputStream in = new FileInputStream(source);
+        try {
+            put(key, in.getChannel());
+        } finally {
+            in.close();
+        }
+    }
+
+    void put(String key, byte[] content) throws IOException {
+        final File temp = File.createTempFile("invaders", ".tmp", directory);
+        final FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        commit(temp, key);
+    }
+
+    /**
+     * An entry written as it is produced, rather than held in memory first. It is only stored if it is committed, and
+     * closing it without committing it discards it.
+     */
+    final class Entry extends FilterOutputStream {
+        private final String key;
+        private final File temp;
+        private boolean closed;
+
+        private Entry(String key, File temp) throws IOException {
+            super(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+            this.key = key;
+            this.temp = temp;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /**
+         * Stores what has been written as the entry for its key, then evicts entries if the cache is full.
+         */
+        void commit() throws IOException {
+            closed = true;
+            super.close();
+            OutputCache.this.commit(temp, key);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a new entry for <code>key</code>, which must be closed whether or not it is committed
+     */
+    Entry create(String key) throws IOException {
+        return new Entry(key, File.createTempFile("invaders", ".tmp", directory));
+    }
+
+    private void put(String key, FileChannel source) throws IOException {
+        final File temp = File.createTempFile("invaders", ".tmp", directory);
+        final FileOutputStream out = new FileOutputStream(temp);
+        try {
+            transfer(source, out.getChannel());
+        } finally {
+            out.close();
+        }
+        commit(temp, key);
+    }
+
+    private void commit(File temp, String key) {
+        final File entry = getEntry(key);
+        // Another process may have stored the same entry, in which case either copy will do
+        if (!temp.renameTo(entry) && !(entry.delete() && temp.renameTo(entry))) {
+            temp.delete();
+        }
+        evict();
+    }
+
+    private void evict() {
+        final File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        long total = 0;
+        for (File entry : entries) {
+            if (entry.getName().endsWith(SUFFIX)) {
+                total += entry.length();
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                final long difference = a.lastModified() - b.lastModified();
+                return (difference < 0) ? -1 : (difference > 0) ? 1 : 0;
+            }
+        });
+        for (File entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (entry.getName().endsWith(SUFFIX)) {
+                final long length = entry.length();
+                if (entry.delete()) {
+                    total -= length;
+                }
+            }
+        }
+    }
+}
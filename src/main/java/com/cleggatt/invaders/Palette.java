@@ -0,0 +1,95 @@
+package com.cleggatt.invaders;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * The colours from which tiles are coloured.
+ */
+public final class Palette {
+
+    public static final Palette DEFAULT = new Palette(Invaders.COLORS);
+
+    private final int[] colours;
+
+    /**
+     * @param colours RGB colours. Any alpha is ignored, as tiles are always opaque.
+     */
+    public Palette(int... colours) {
+        if (colours.length == 0) {
+            throw new IllegalArgumentException("A palette must have at least one colour");
+        }
+        this.colours = new int[colours.length];
+        for (int i = 0; i < colours.length; i++) {
+            this.colours[i] = colours[i] | Invaders.BLACK;
+        }
+    }
+
+    /**
+     * @param colours hexadecimal RGB colours, such as <code>ff0000</code> or <code>#ff0000</code>, separated by commas
+     *                or whitespace
+     */
+    public static Palette parse(String colours) {
+        final String trimmed = colours.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("A palette must have at least one colour");
+        }
+        final String[] tokens = trimmed.split("[\\s,]+");
+        final int[] parsed = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("#")) {
+                token = token.substring(1);
+            }
+            if (token.length() != 6) {
+                throw new IllegalArgumentException(String.format("Invalid colour '%s'", tokens[i]));
+            }
+            try {
+                parsed[i] = Integer.parseInt(token, 16);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid colour '%s'", tokens[i]));
+            }
+        }
+        return new Palette(parsed);
+    }
+
+    /**
+     * Loads a palette from a file of colours in the format accepted by {@link #parse(String)}.
+     */
+    public static Palette load(File file) throws IOException {
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final StringBuilder contents = new StringBuilder();
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                contents.append(buffer, 0, read);
+            }
+            return parse(contents.toString());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public int size() {
+        return colours.length;
+    }
+
+    public int get(int index) {
+        return colours[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof Palette) && Arrays.equals(colours, ((Palette) o).colours);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(colours);
+    }
+}
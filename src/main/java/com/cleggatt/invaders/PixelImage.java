@@ -0,0 +1,58 @@
+package com.cleggatt.invaders;
+
+/**
+ * An in-memory image of <code>INT_ARGB</code> pixels, held row by row in a single array. Unlike a
+ * <code>BufferedImage</code>, creating one does not initialise AWT.
+ */
+public final class PixelImage implements RowSource {
+
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+
+    public PixelImage(int width, int height) {
+        this(new int[checkSize(width, height)], width, height);
+    }
+
+    PixelImage(int[] pixels, int width, int height) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel array is smaller than width * height");
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    private static int checkSize(int width, int height) {
+        if (width < 1 || height < 1 || ((long) width * height) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid image size %d x %d", width, height));
+        }
+        return width * height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPixel(int x, int y) {
+        return pixels[(y * width) + x];
+    }
+
+    /**
+     * @return the array backing this image, so changes to it change the image
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    @Override
+    public void getRow(int y, int[] row) {
+        System.arraycopy(pixels, y * width, row, 0, width);
+    }
+}
@@ -0,0 +1,220 @@
+package com.cleggatt.invaders;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes PNGs a row at a time from a {@link RowSource}, so the image never needs to be held in memory.
+ */
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final int COLOUR_TYPE_RGB = 2;
+    private static final int COLOUR_TYPE_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+
+    static final int IDAT_SIZE = 64 * 1024;
+
+    private PngEncoder() {
+    }
+
+    /**
+     * @param alpha whether to write the alpha channel. If not, pixels are written as though they were opaque.
+     */
+    static void write(RowSource src, boolean alpha, OutputStream out) throws IOException {
+        final Encoder encoder = new Encoder();
+        try {
+            encoder.write(src, alpha, out);
+        } finally {
+            encoder.end();
+        }
+    }
+
+    /**
+     * Writes PNGs one after another, reusing its deflater and buffers, so once they have grown to fit, writing a PNG
+     * allocates almost nothing. PNGs are exactly as {@link #write(RowSource, boolean, OutputStream)} writes them. Not
+     * thread safe.
+     */
+    static final class Encoder {
+
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final CRC32 crc = new CRC32();
+        private final byte[] idatType = "IDAT".getBytes(ASCII);
+        private int[] row = new int[0];
+        private byte[] scanline = new byte[0];
+        private byte[] idat = new byte[0];
+
+        void write(RowSource src, boolean alpha, OutputStream out) throws IOException {
+            final int width = src.getWidth();
+            final int height = src.getHeight();
+            final int scanlineLength = 1 + (width * (alpha ? 4 : 3));
+
+            final DataOutputStream data = new DataOutputStream(out);
+            writeHeader(data, width, height, alpha);
+
+            if (row.length < width) {
+                row = new int[width];
+                scanline = new byte[scanlineLength];
+            }
+            // Small images, such as avatars, need not allocate and zero full size buffers
+            final int chunkSize = (int) Math.min(IDAT_SIZE, ((long) scanlineLength * height) + 64);
+            if (idat.length < chunkSize) {
+                idat = new byte[chunkSize];
+            }
+
+            deflater.reset();
+            int count = 0;
+            boolean written = false;
+            for (int y = 0; y <= height; y++) {
+                if (y < height) {
+                    src.getRow(y, row);
+                    toScanline(row, width, alpha, scanline);
+                    deflater.setInput(scanline, 0, scanlineLength);
+                } else {
+                    deflater.finish();
+                }
+                // Chunks are written as they fill, exactly as a ChunkOutputStream of the same size would write them
+                while (y < height ? !deflater.needsInput() : !deflater.finished()) {
+                    count += deflater.deflate(idat, count, chunkSize - count);
+                    if (count == chunkSize) {
+                        writeIdat(data, count);
+                        count = 0;
+                        written = true;
+                    }
+                }
+            }
+            if (count > 0 || !written) {
+                writeIdat(data, count);
+            }
+
+            writeEnd(data);
+        }
+
+        private void writeIdat(DataOutputStream data, int count) throws IOException {
+            data.writeInt(count);
+            data.write(idatType);
+            data.write(idat, 0, count);
+            crc.reset();
+            crc.update(idatType);
+            crc.update(idat, 0, count);
+            data.writeInt((int) crc.getValue());
+        }
+
+        /**
+         * Frees the deflater. The encoder cannot be used afterwards.
+         */
+        void end() {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the signature and header of a PNG, which should be followed by its IDAT chunks and then
+     * {@link #writeEnd(DataOutputStream)}.
+     */
+    static void writeHeader(DataOutputStream data, int width, int height, boolean alpha) throws IOException {
+        data.write(SIGNATURE);
+
+        final ChunkOutputStream header = new ChunkOutputStream(data, "IHDR", 13);
+        final DataOutputStream ihdr = new DataOutputStream(header);
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.writeByte(8);
+        ihdr.writeByte(alpha ? COLOUR_TYPE_RGBA : COLOUR_TYPE_RGB);
+        ihdr.writeByte(0); // Deflate
+        ihdr.writeByte(0); // Adaptive filtering
+        ihdr.writeByte(0); // No interlace
+        header.close();
+    }
+
+    static void writeEnd(DataOutputStream data) throws IOException {
+        new ChunkOutputStream(data, "IEND", 0).close();
+        data.flush();
+    }
+
+    /**
+     * Converts a row of pixels to an unfiltered scanline.
+     *
+     * @param scanline an array of <code>1 + (width * 3)</code> bytes, or <code>1 + (width * 4)</code> with alpha
+     */
+    static void toScanline(int[] row, int width, boolean alpha, byte[] scanline) {
+        scanline[0] = FILTER_NONE;
+        int pos = 1;
+        for (int x = 0; x < width; x++) {
+            final int pixel = row[x];
+            scanline[pos++] = (byte) (pixel >> 16);
+            scanline[pos++] = (byte) (pixel >> 8);
+            scanline[pos++] = (byte) pixel;
+            if (alpha) {
+                scanline[pos++] = (byte) (pixel >> 24);
+            }
+        }
+    }
+
+    /**
+     * Buffers up to <code>size</code> bytes and writes them as a chunk of the given type, with its length and CRC. Closing
+     * this stream writes any remaining bytes as a final chunk, but does not close the underlying stream.
+     */
+    static final class ChunkOutputStream extends OutputStream {
+
+        private final DataOutputStream out;
+        private final byte[] type;
+        private final byte[] buffer;
+        private final CRC32 crc = new CRC32();
+        private int count = 0;
+        private boolean written = false;
+
+        ChunkOutputStream(DataOutputStream out, String type, int size) {
+            this.out = out;
+            this.type = type.getBytes(ASCII);
+            this.buffer = new byte[size];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeChunk();
+                }
+                final int copied = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, copied);
+                count += copied;
+                off += copied;
+                len -= copied;
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            out.writeInt(count);
+            out.write(type);
+            out.write(buffer, 0, count);
+            crc.reset();
+            crc.update(type);
+            crc.update(buffer, 0, count);
+            out.writeInt((int) crc.getValue());
+            count = 0;
+            written = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (count > 0 || !written) {
+                writeChunk();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.cleggatt.invaders;
+
+/**
+ * A source of random numbers for generating invaders and their colours. Implementations need not be thread safe.
+ *
+ * @see RandomSources
+ */
+public interface RandomSource {
+
+    /**
+     * @return a value between 0 (inclusive) and <code>bound</code> (exclusive)
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return a value between 0 (inclusive) and <code>bound</code> (exclusive)
+     */
+    long nextLong(long bound);
+}
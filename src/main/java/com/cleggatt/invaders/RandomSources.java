@@ -0,0 +1,58 @@
+package com.cleggatt.invaders;
+
+import java.util.Random;
+
+/**
+ * Creates {@link RandomSource}s.
+ */
+public final class RandomSources {
+
+    public enum Algorithm {
+        /**
+         * Produces the same invaders as earlier versions, which used <code>java.util.Random</code>, for the same seed
+         */
+        Jdk {
+            @Override
+            public RandomSource create(long seed) {
+                return new JdkRandomSource(seed);
+            }
+        },
+        SplitMix {
+            @Override
+            public RandomSource create(long seed) {
+                return new SplitMix64(seed);
+            }
+        },
+        Xoshiro {
+            @Override
+            public RandomSource create(long seed) {
+                return new Xoshiro256StarStar(seed);
+            }
+        };
+
+        /**
+         * @return a new source, which is not thread safe
+         */
+        public abstract RandomSource create(long seed);
+    }
+
+    private RandomSources() {
+    }
+
+    /**
+     * @return a source backed by <code>random</code>, generating long values as <code>nextDouble() * bound</code>
+     */
+    public static RandomSource wrap(final Random random) {
+        return new RandomSource() {
+            @Override
+            public int nextInt(int bound) {
+                return random.nextInt(bound);
+            }
+
+            @Override
+            public long nextLong(long bound) {
+                return (long) (random.nextDouble() * bound);
+            }
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.cleggatt.invaders;
+
+/**
+ * A source of <code>INT_ARGB</code> pixels which can be read a row at a time, so images need not be held in memory.
+ */
+interface RowSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @param row an array at least {@link #getWidth()} long, which will be filled with the pixels of row <code>y</code>
+     */
+    void getRow(int y, int[] row);
+}
@@ -0,0 +1,217 @@
+package com.cleggatt.invaders;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches for the first seed which generates a given invader at a given tile. Each seed is checked by generating the
+ * invaders up to the tile, exactly as {@link Invaders} would, and comparing the last as a <code>long</code>, so no
+ * pixels are ever drawn.
+ */
+final class SeedSearch {
+
+    // Seeds are claimed by the workers in blocks, so they rarely contend
+    private static final int BLOCK = 1 << 16;
+
+    private final RandomSources.Algorithm rng;
+    private final long maxValue;
+    private final long mask;
+    private final long target;
+    private final long tile;
+    private final AtomicLong searched = new AtomicLong();
+
+    /**
+     * @param target the pixels of the un-mirrored half of the invader, as {@link Invaders#getPixels(long)} reads them
+     * @param tile the index of the tile, row by row, at which the invader must be generated
+     */
+    SeedSearch(int x, int y, long target, RandomSources.Algorithm rng, long tile) {
+        this.rng = rng;
+        this.maxValue = 1L << (x * y);
+        this.mask = maxValue - 1;
+        this.target = target;
+        this.tile = tile;
+    }
+
+    /**
+     * @param rows the rows of the invader, with a space or <code>.</code> for each pixel which is not set and any other
+     *             character for each which is. Rows may be of the un-mirrored half of the invader, or of all of it, and
+     *             missing pixels at the end of a row, or rows at the bottom, are not set.
+     * @return the pixels of the un-mirrored half of the invader
+     * @throws IllegalArgumentException if no invader of the given size has the pixels
+     */
+    static long parsePattern(List<String> rows, int x, int y) {
+        while (!rows.isEmpty() && rows.get(rows.size() - 1).trim().isEmpty()) {
+            rows = rows.subList(0, rows.size() - 1);
+        }
+        if (rows.size() > y) {
+            throw new IllegalArgumentException(String.format("The pattern is %d pixels high, not %d", rows.size(), y));
+        }
+        int width = x;
+        for (String row : rows) {
+            if (row.length() > x * 2) {
+                throw new IllegalArgumentException(String.format("The pattern is %d pixels wide, not %d or %d", row.length(), x, x * 2));
+            }
+            width = Math.max(width, row.length());
+        }
+        final boolean mirrored = width > x;
+
+        long pattern = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            final String pixels = rows.get(row);
+            for (int column = 0; column < x; column++) {
+                final boolean set = isSet(pixels, column);
+                if (mirrored && set != isSet(pixels, (x * 2) - 1 - column)) {
+                    throw new IllegalArgumentException(String.format("Row %d of the pattern is not mirrored, so no invader has it", row + 1));
+                }
+                if (set) {
+                    pattern |= 1L << ((row * x) + column);
+                }
+            }
+        }
+        return pattern;
+    }
+
+    private static boolean isSet(String row, int column) {
+        if (column >= row.length()) {
+            return false;
+        }
+        final char pixel = row.charAt(column);
+        return pixel != ' ' && pixel != '.';
+    }
+
+    /**
+     * As {@link #parsePattern(List, int, int)}, from the lines of a file.
+     */
+    static long readPattern(File file, int x, int y) throws IOException {
+        try {
+            return parsePattern(Files.readAllLines(file.toPath(), Charset.forName("UTF-8")), x, y);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(String.format("%s: %s", file.getAbsolutePath(), e.getMessage()), e);
+        }
+    }
+
+    boolean matches(long seed) {
+        final RandomSource random = rng.create(seed);
+        for (long i = 0; i < tile; i++) {
+            random.nextLong(maxValue);
+        }
+        // Invaders are from 1 to 2^(x * y), so the invader with no pixels set is 2^(x * y) rather than 0
+        return ((random.nextLong(maxValue) + 1) & mask) == target;
+    }
+
+    /**
+     * @return the number of seeds checked by the last search. Workers may have checked some seeds beyond the one found.
+     */
+    long getSearched() {
+        return searched.get();
+    }
+
+    /**
+     * Searches <code>limit</code> seeds from <code>first</code> upwards, in <code>threads</code> workers.
+     *
+     * @param progress where to report progress every <code>reportMillis</code>, or <code>null</code>
+     * @return the lowest seed which generates the invader at the tile, or <code>null</code> if there is none
+     */
+    Long search(final long first, long limit, int threads, long reportMillis, PrintStream progress) throws IOException {
+        final long count = Math.min(limit, Long.MAX_VALUE - first);
+        final AtomicLong nextBlock = new AtomicLong();
+        // The offset of the lowest seed found, which workers need never search beyond
+        final AtomicLong found = new AtomicLong(Long.MAX_VALUE);
+        final CountDownLatch done = new CountDownLatch(threads);
+        searched.set(0);
+
+        final long start = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            search(first, count, nextBlock, found);
+                        } finally {
+                            done.countDown();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            while (!done.await(reportMillis, TimeUnit.MILLISECONDS)) {
+                if (progress != null) {
+                    progress.print(String.format("Searched %d seeds (%s)\n", searched.get(), getThroughput(searched.get(), System.nanoTime() - start)));
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // Nothing is checked
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching seeds", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return (found.get() == Long.MAX_VALUE) ? null : first + found.get();
+    }
+
+    private void search(long first, long count, AtomicLong nextBlock, AtomicLong found) {
+        while (true) {
+            final long from = nextBlock.getAndAdd(BLOCK);
+            if (from >= count || from >= found.get()) {
+                return;
+            }
+            final long to = from + Math.min(BLOCK, count - from);
+            for (long i = from; i < to; i++) {
+                if (matches(first + i)) {
+                    long lowest;
+                    do {
+                        lowest = found.get();
+                    } while (i < lowest && !found.compareAndSet(lowest, i));
+                    searched.addAndGet(i + 1 - from);
+                    return;
+                }
+            }
+            searched.addAndGet(to - from);
+        }
+    }
+
+    static String getThroughput(long seeds, long nanos) {
+        return String.format("%.1fs, %.2f million seeds/s", nanos / 1e9, (nanos == 0) ? 0 : (seeds * 1e3) / nanos);
+    }
+
+    /**
+     * Searches for the invader of the parameters, with a worker per processor, reporting progress every second.
+     */
+    static void run(Main.Params params) throws IOException {
+        final long pattern = readPattern(params.getFindPattern(), params.getX(), params.getY());
+        final SeedSearch search = new SeedSearch(params.getX(), params.getY(), pattern, params.getRng(), params.getFindTile());
+        final long start = System.nanoTime();
+        final Long seed = search.search(params.getFindFrom(), params.getFindLimit(), Runtime.getRuntime().availableProcessors(), 1000, System.err);
+        final String throughput = getThroughput(search.getSearched(), System.nanoTime() - start);
+        if (seed == null) {
+            System.out.print(String.format("No seed searched generates the pattern at tile %d (%d seeds in %s)\n", params.getFindTile(), search.getSearched(), throughput));
+        } else {
+            System.out.print(String.format("Seed %d generates the pattern at tile %d (%d seeds in %s)\n", seed, params.getFindTile(), search.getSearched(), throughput));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.cleggatt.invaders;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Renders a PNG in several processes. Each process renders a band of rows of tiles to a shard: a raw deflate stream of
+ * its scanlines, followed by a trailer holding the checksum of the scanlines. The shards are then joined into one PNG
+ * by concatenating their deflate streams and combining their checksums, without decompressing them.
+ * <p>
+ * Each process generates, but does not draw, the invaders above its band, so its tiles are exactly those a single
+ * process would draw for the same seed.
+ */
+final class ShardedPng {
+
+    private static final int MAGIC = 0x494E5653;
+    // The width, height, length of the scanlines, their checksum, whether the stream is finished and the magic number
+    private static final int TRAILER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int ADLER_BASE = 65521;
+    // Deflate with a 32K window and default compression
+    private static final byte[] ZLIB_HEADER = new byte[]{0x78, (byte) 0x9C};
+
+    private ShardedPng() {
+    }
+
+    /**
+     * @return the first row of tiles in a shard. The rows of the shard end at the first row of the next.
+     */
+    static int getFirstRow(int shard, int shards, int rows) {
+        return (int) (((long) shard * rows) / shards);
+    }
+
+    static File getShardFile(String output, int shard) {
+        return new File(String.format("%s.shard%d", output, shard));
+    }
+
+    /**
+     * @return the Adler-32 checksum of two sequences of bytes, given the checksum of each, as zlib's
+     *         <code>adler32_combine</code> does
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE * 2) {
+            sum2 -= ADLER_BASE * 2;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Renders the shard of the parameters, as a worker process started by {@link #render(String[], Main.Params)}.
+     */
+    static void writeShard(Invaders invaders, Main.Params params) throws IOException {
+        final int rows = params.getTileY();
+        final int first = getFirstRow(params.getShard(), params.getShards(), rows);
+        final int last = getFirstRow(params.getShard() + 1, params.getShards(), rows);
+        final int tileHeight = invaders.getTileHeight(params.getBorder());
+
+        // Blurring needs the rows of tiles either side, so only the edges of the whole image are treated as edges
+        final int margin = (params.getBlurRadius() + tileHeight - 1) / tileHeight;
+        final int from = Math.max(0, first - margin);
+        final int to = Math.min(rows, last + margin);
+
+        invaders.skipInvaders((long) from * params.getTileX());
+        final RowSource band = ImageOutput.blur(new TileRows(invaders, params.getTileX(), to - from, params.getBorder(), params.getEdge()), params.getBlurRadius());
+        writeShard(band, (first - from) * tileHeight, (last - first) * tileHeight, last == rows,
+                getShardFile(params.getOutputFile(), params.getShard()));
+    }
+
+    /**
+     * Writes <code>rows</code> rows of <code>src</code>, after skipping <code>skip</code> rows, as a shard.
+     *
+     * @param finished whether this is the last shard, which ends the deflate stream
+     */
+    // VisibleForTesting
+    static void writeShard(RowSource src, int skip, int rows, boolean finished, File output) throws IOException {
+        final int width = src.getWidth();
+        final int[] row = new int[width];
+        final byte[] scanline = new byte[1 + (width * 3)];
+        final Adler32 adler = new Adler32();
+
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), PngEncoder.IDAT_SIZE));
+        try {
+            // A sync flush ends the stream on a byte boundary without finishing it, so another can follow it
+            final DeflaterOutputStream compressed = new DeflaterOutputStream(out, deflater, PngEncoder.IDAT_SIZE, true);
+            for (int y = 0; y < skip; y++) {
+                src.getRow(y, row);
+            }
+            for (int y = skip; y < skip + rows; y++) {
+                src.getRow(y, row);
+                PngEncoder.toScanline(row, width, false, scanline);
+                adler.update(scanline);
+                compressed.write(scanline);
+            }
+            if (finished) {
+                compressed.finish();
+            } else {
+                compressed.flush();
+            }
+
+            out.writeInt(width);
+            out.writeInt(rows);
+            out.writeLong((long) scanline.length * rows);
+            out.writeInt((int) adler.getValue());
+            out.writeInt(finished ? 1 : 0);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private static final class Trailer {
+        private final int width;
+        private final int height;
+        private final long length;
+        private final long adler;
+        private final boolean finished;
+        private final long compressed;
+
+        private Trailer(File shard) throws IOException {
+            final RandomAccessFile file = new RandomAccessFile(shard, "r");
+            try {
+                compressed = file.length() - TRAILER_SIZE;
+                if (compressed < 0) {
+                    throw new IOException(String.format("%s is not a shard", shard.getAbsolutePath()));
+                }
+                file.seek(compressed);
+                width = file.readInt();
+                height = file.readInt();
+                length = file.readLong();
+                adler = file.readInt() & 0xFFFFFFFFL;
+                finished = file.readInt() != 0;
+                if (file.readInt() != MAGIC) {
+                    throw new IOException(String.format("%s is not a shard", shard.getAbsolutePath()));
+                }
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Joins shards, from top to bottom, into a PNG.
+     */
+    static void join(List<File> shards, File output) throws IOException {
+        final Trailer[] trailers = new Trailer[shards.size()];
+        long height = 0;
+        long adler = 1;
+        for (int i = 0; i < trailers.length; i++) {
+            final Trailer trailer = new Trailer(shards.get(i));
+            if (i > 0 && trailer.width != trailers[0].width) {
+                throw new IOException(String.format("%s is %d pixels wide, not %d", shards.get(i).getAbsolutePath(), trailer.width, trailers[0].width));
+            }
+            if (trailer.finished != (i == trailers.length - 1)) {
+                throw new IOException(String.format("%s is out of order", shards.get(i).getAbsolutePath()));
+            }
+            trailers[i] = trailer;
+            height += trailer.height;
+            adler = (i == 0) ? trailer.adler : combineAdler32(adler, trailer.adler, trailer.length);
+        }
+        if (height > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Shards are %d pixels high, which is too high for a PNG", height));
+        }
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), PngEncoder.IDAT_SIZE));
+        try {
+            PngEncoder.writeHeader(data, trailers[0].width, (int) height, false);
+            final PngEncoder.ChunkOutputStream idat = new PngEncoder.ChunkOutputStream(data, "IDAT", PngEncoder.IDAT_SIZE);
+            idat.write(ZLIB_HEADER);
+            final byte[] buffer = new byte[PngEncoder.IDAT_SIZE];
+            for (int i = 0; i < trailers.length; i++) {
+                final InputStream in = new FileInputStream(shards.get(i));
+                try {
+                    long remaining = trailers[i].compressed;
+                    while (remaining > 0) {
+                        final int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            throw new IOException(String.format("%s is truncated", shards.get(i).getAbsolutePath()));
+                        }
+                        idat.write(buffer, 0, read);
+                        remaining -= read;
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            idat.write(new byte[]{(byte) (adler >> 24), (byte) (adler >> 16), (byte) (adler >> 8), (byte) adler});
+            idat.close();
+            PngEncoder.writeEnd(data);
+        } finally {
+            data.close();
+        }
+        ImageOutput.printSaved(trailers[0].width, (int) height, output);
+    }
+
+    /**
+     * Renders the PNG of the parameters in {@link Main.Params#getProcesses()} worker processes, started with the same
+     * arguments and JVM options, and then joins their shards. A seed is chosen for the workers if none was given.
+     */
+    static void render(String[] args, Main.Params params) throws IOException {
+        final List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // Heap sizes and properties, but not agents such as debuggers, which cannot be shared
+            if (argument.startsWith("-X") || argument.startsWith("-D")) {
+                command.add(argument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(Arrays.asList(args));
+        if (params.getSeed() == null) {
+            command.add("-seed");
+            // Not negative, so it is not mistaken for an option
+            command.add(Long.toString(new Random().nextLong() & Long.MAX_VALUE));
+        }
+
+        final int processes = params.getProcesses();
+        final List<File> shards = new ArrayList<File>();
+        final List<Process> workers = new ArrayList<Process>();
+        try {
+            for (int i = 0; i < processes; i++) {
+                final List<String> worker = new ArrayList<String>(command);
+                worker.add("-shard");
+                worker.add(String.format("%d/%d", i, processes));
+                shards.add(getShardFile(params.getOutputFile(), i));
+                workers.add(new ProcessBuilder(worker).inheritIO().start());
+            }
+            for (int i = 0; i < processes; i++) {
+                final int status = workers.get(i).waitFor();
+                if (status != 0) {
+                    throw new IOException(String.format("Shard %d of %d failed with exit status %d", i, processes, status));
+                }
+            }
+            join(shards, new File(params.getOutputFile()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for shards", e);
+        } finally {
+            for (Process worker : workers) {
+                worker.destroy();
+            }
+            for (File shard : shards) {
+                shard.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cleggatt.invaders;
+
+/**
+ * Steele, Lea and Flood's SplitMix64 generator, as used by <code>java.util.SplittableRandom</code>. Each value is a
+ * single addition and a mix of the result, with no synchronisation.
+ */
+final class SplitMix64 extends LongRandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Starts again from <code>seed</code>, exactly as a new instance would, so one instance can be reused.
+     */
+    void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
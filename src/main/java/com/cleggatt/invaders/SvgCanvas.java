@@ -0,0 +1,146 @@
+package com.cleggatt.invaders;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Draws invaders as SVG. Each distinct invader is defined once as a <code>symbol</code>, with a single
+ * <code>rect</code> for each horizontal run of pixels, and every tile is a <code>use</code> of that symbol. Scaling is
+ * left to the SVG renderer, so the size of the output does not depend on the scale.
+ * <p>
+ * A tile of a single colour sets it as the <code>fill</code> of its <code>use</code>, so its symbol can be shared by
+ * tiles of other colours. Tiles of several colours are defined as a symbol per invader and set of colours, with the
+ * colour of each run in the symbol.
+ */
+final class SvgCanvas implements Invaders.InvaderCanvas<String> {
+
+    private final int scaledWidth;
+    private final int scaledHeight;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final int outputWidth;
+    private final int outputHeight;
+    private final int blurRadius;
+
+    private final Set<Long> defined = new HashSet<Long>();
+    private final Map<String, String> colouredIds = new HashMap<String, String>();
+    private final StringBuilder symbols = new StringBuilder();
+    private final StringBuilder uses = new StringBuilder();
+
+    /**
+     * @param pxWidth the width of the output. The invaders will be centred within it. If this is less than 1, the
+     *                output will be exactly as wide as the invaders.
+     * @param blurRadius the radius of the guassian blur to apply, or 0 for none
+     */
+    SvgCanvas(int width, int height, int scale, int numWide, int numHigh, int border, int pxWidth, int pxHeight, int blurRadius) {
+        scaledWidth = width * 2 * scale;
+        scaledHeight = height * scale;
+        imageWidth = (scaledWidth * numWide) + (numWide * border * 2);
+        imageHeight = (scaledHeight * numHigh) + (numHigh * border * 2);
+        outputWidth = (pxWidth > 0) ? pxWidth : imageWidth;
+        outputHeight = (pxHeight > 0) ? pxHeight : imageHeight;
+        this.blurRadius = blurRadius;
+    }
+
+    @Override
+    public void drawInvader(long value, boolean[][] pixels, int xOffset, int yOffset, int[][] colours) {
+        final int colour = getSingleColour(pixels, colours);
+        if (colour != 0) {
+            if (defined.add(value)) {
+                defineSymbol("i" + value, pixels, null);
+            }
+            uses.append(String.format("<use xlink:href=\"#i%d\" x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" fill=\"%s\"/>\n",
+                    value, xOffset, yOffset, scaledWidth, scaledHeight, toHex(colour)));
+            return;
+        }
+
+        final String key = value + Arrays.deepToString(colours);
+        String id = colouredIds.get(key);
+        if (id == null) {
+            id = String.format("i%d-%d", value, colouredIds.size());
+            colouredIds.put(key, id);
+            defineSymbol(id, pixels, colours);
+        }
+        uses.append(String.format("<use xlink:href=\"#%s\" x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\"/>\n",
+                id, xOffset, yOffset, scaledWidth, scaledHeight));
+    }
+
+    // The colour of every set pixel, or 0 if there is more than one (or none)
+    private static int getSingleColour(boolean[][] pixels, int[][] colours) {
+        int colour = 0;
+        for (int y = 0; y < pixels.length; y++) {
+            for (int x = 0; x < pixels[y].length; x++) {
+                if (pixels[y][x]) {
+                    if (colour == 0) {
+                        colour = colours[y][x];
+                    } else if (colours[y][x] != colour) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return colour;
+    }
+
+    /**
+     * @param colours the colour of each pixel, or <code>null</code> to leave the fill to the <code>use</code>
+     */
+    private void defineSymbol(String id, boolean[][] pixels, int[][] colours) {
+        symbols.append(String.format("<symbol id=\"%s\" viewBox=\"0 0 %d %d\">", id, pixels[0].length, pixels.length));
+        for (int y = 0; y < pixels.length; y++) {
+            int x = 0;
+            while (x < pixels[y].length) {
+                if (!pixels[y][x]) {
+                    x++;
+                    continue;
+                }
+                final int start = x;
+                while (x < pixels[y].length && pixels[y][x] && (colours == null || colours[y][x] == colours[y][start])) {
+                    x++;
+                }
+                if (colours == null) {
+                    symbols.append(String.format("<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"1\"/>", start, y, x - start));
+                } else {
+                    symbols.append(String.format("<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"1\" fill=\"%s\"/>", start, y, x - start, toHex(colours[y][start])));
+                }
+            }
+        }
+        symbols.append("</symbol>\n");
+    }
+
+    private static String toHex(int colour) {
+        return String.format("#%06x", colour & 0xFFFFFF);
+    }
+
+    @Override
+    public String getInvader() {
+        final StringBuilder svg = new StringBuilder(symbols.length() + uses.length() + 1024);
+
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        svg.append(String.format("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" " +
+                "width=\"%1$d\" height=\"%2$d\" viewBox=\"0 0 %1$d %2$d\" shape-rendering=\"crispEdges\">\n", outputWidth, outputHeight));
+
+        svg.append("<defs>\n");
+        svg.append(symbols);
+        if (blurRadius > 0) {
+            // Match the standard deviation used by the PNG blur
+            svg.append(String.format("<filter id=\"blur\"><feGaussianBlur stdDeviation=\"%s\"/></filter>\n", blurRadius / 3.0f));
+        }
+        svg.append("</defs>\n");
+
+        svg.append("<rect width=\"100%\" height=\"100%\" fill=\"#000000\"/>\n");
+        svg.append(String.format("<g transform=\"translate(%d,%d)\"", (outputWidth - imageWidth) / 2, (outputHeight - imageHeight) / 2));
+        if (blurRadius > 0) {
+            svg.append(" filter=\"url(#blur)\"");
+        }
+        svg.append(">\n");
+        svg.append(uses);
+        svg.append("</g>\n");
+        svg.append("</svg>\n");
+
+        return svg.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.cleggatt.invaders;
+
+/**
+ * A row of tiles, as published by {@link TileBandPublisher}.
+ */
+public final class TileBand {
+
+    private final int index;
+    private final int y;
+    private final PixelImage image;
+
+    TileBand(int index, int y, PixelImage image) {
+        this.index = index;
+        this.y = y;
+        this.image = image;
+    }
+
+    /**
+     * @return the index of the row of tiles, from 0 at the top
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the position of the top of the band in the whole image
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return the pixels of the band, which is as wide as the whole image and as high as a tile
+     */
+    public PixelImage getImage() {
+        return image;
+    }
+}
@@ -0,0 +1,174 @@
+package com.cleggatt.invaders;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of tiles that {@link Invaders#getPixelInvaders(int, int, int, Invaders.Edge)} would render, as
+ * {@link TileBand}s from top to bottom. A band is only rendered once the subscriber has requested it, so at most the
+ * requested bands are ever in memory, however slowly they are consumed.
+ * <p>
+ * This is a Reactive Streams publisher. On Java 9 or higher, <code>org.reactivestreams.FlowAdapters</code> adapts it to
+ * a <code>java.util.concurrent.Flow.Publisher</code>.
+ * <p>
+ * Rendering consumes the random sources of the invaders, so there can only be one subscriber.
+ */
+public final class TileBandPublisher implements Publisher<TileBand> {
+
+    // Renders on the thread requesting bands. Requests made while rendering are queued rather than recursing.
+    private static final Executor CALLER = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Subscription CANCELLED = new Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final Invaders invaders;
+    private final int numWide;
+    private final int numHigh;
+    private final int border;
+    private final Invaders.Edge edge;
+    private final Executor executor;
+    private final int tileHeight;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * A publisher which renders bands on the thread which requests them.
+     */
+    public TileBandPublisher(Invaders invaders, int numWide, int numHigh, int border, Invaders.Edge edge) {
+        this(invaders, numWide, numHigh, border, edge, CALLER);
+    }
+
+    /**
+     * @param executor the executor on which to render bands and signal the subscriber
+     */
+    public TileBandPublisher(Invaders invaders, int numWide, int numHigh, int border, Invaders.Edge edge, Executor executor) {
+        if (numWide < 1 || numHigh < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of tiles %d x %d", numWide, numHigh));
+        }
+        this.invaders = invaders;
+        this.numWide = numWide;
+        this.numHigh = numHigh;
+        this.border = border;
+        this.edge = edge;
+        this.executor = executor;
+        this.tileHeight = invaders.getTileHeight(border);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super TileBand> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(CANCELLED);
+            subscriber.onError(new IllegalStateException("Tiles can only be published to one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new BandSubscription(subscriber));
+    }
+
+    private final class BandSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super TileBand> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // The number of times the subscription has been scheduled to run, so only one thread ever signals the subscriber
+        private final AtomicInteger scheduled = new AtomicInteger();
+        private volatile boolean done = false;
+        private volatile boolean invalid = false;
+        // Published by the write to invalid
+        private long invalidRequest;
+        // Only accessed while running
+        private int next = 0;
+
+        private BandSubscription(Subscriber<? super TileBand> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = n;
+                invalid = true;
+            } else {
+                long current;
+                long updated;
+                do {
+                    current = demand.get();
+                    updated = current + n;
+                    // Demand of Long.MAX_VALUE or more is unbounded
+                    if (updated < 0) {
+                        updated = Long.MAX_VALUE;
+                    }
+                } while (!demand.compareAndSet(current, updated));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        private void schedule() {
+            if (scheduled.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                publish();
+                missed = scheduled.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void publish() {
+            while (!done) {
+                if (invalid) {
+                    done = true;
+                    subscriber.onError(new IllegalArgumentException(String.format("Requested %d bands, which is not positive", invalidRequest)));
+                    return;
+                }
+                if (next == numHigh) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+
+                final PixelImage image;
+                try {
+                    image = invaders.getPixelInvaderRow(numWide, border, edge);
+                } catch (RuntimeException e) {
+                    done = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                demand.decrementAndGet();
+                subscriber.onNext(new TileBand(next, next * tileHeight, image));
+                next++;
+            }
+        }
+    }
+}
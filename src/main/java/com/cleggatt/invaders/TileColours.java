@@ -0,0 +1,171 @@
+package com.cleggatt.invaders;
+
+import java.util.Arrays;
+
+/**
+ * Works out the colour of each pixel of a tile, before scaling. The same table is refilled for every tile, so colouring
+ * allocates nothing and the canvases only ever look colours up.
+ * <p>
+ * Colouring is in two steps: the palette indices for a tile are picked from the random source, and the pixels are then
+ * coloured from them. The picks can be stored, and a tile coloured again from them without the random source.
+ */
+final class TileColours {
+
+    private final Invaders.ColourMode mode;
+    private final Palette palette;
+    private final int[][] colours;
+    private final int[] picks;
+
+    /**
+     * @param width the width of a tile, after mirroring
+     */
+    TileColours(Invaders.ColourMode mode, Palette palette, int width, int height) {
+        this.mode = mode;
+        this.palette = palette;
+        this.colours = new int[height][width];
+        this.picks = new int[getPicks(mode, width / 2, height)];
+    }
+
+    /**
+     * @param width the width of a tile, before mirroring
+     * @return the number of palette indices picked for each tile
+     */
+    static int getPicks(Invaders.ColourMode mode, int width, int height) {
+        switch (mode) {
+            case Gradient:
+            case TwoTone:
+                return 2;
+            case Cell:
+                // One for each pixel of the un-mirrored half, though only those which are set are picked
+                return width * height;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * @return the colour of each pixel, indexed as <code>pixels</code> is. The colours of unset pixels are undefined.
+     *         The table is only valid until the next call.
+     */
+    int[][] colour(boolean[][] pixels, RandomSource random) {
+        pick(pixels, random, picks);
+        return colour(pixels, picks);
+    }
+
+    /**
+     * Picks the palette indices for a tile, as {@link #colour(boolean[][], RandomSource)} would.
+     *
+     * @param picks an array of {@link #getPicks(Invaders.ColourMode, int, int)} indices to fill. For
+     *              {@link Invaders.ColourMode#Cell}, the indices of unset pixels are 0.
+     */
+    void pick(boolean[][] pixels, RandomSource random, int[] picks) {
+        switch (mode) {
+            case Flat:
+                picks[0] = random.nextInt(palette.size());
+                break;
+            case Gradient:
+            case TwoTone:
+                picks[0] = random.nextInt(palette.size());
+                picks[1] = nextOther(random, picks[0]);
+                break;
+            case Cell:
+                final int width = colours[0].length / 2;
+                for (int y = 0; y < pixels.length; y++) {
+                    for (int x = 0; x < width; x++) {
+                        picks[(y * width) + x] = pixels[y][x] ? random.nextInt(palette.size()) : 0;
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * As {@link #colour(boolean[][], RandomSource)}, from palette indices picked by
+     * {@link #pick(boolean[][], RandomSource, int[])}.
+     */
+    int[][] colour(boolean[][] pixels, int[] picks) {
+        return colour(pixels, picks, 0);
+    }
+
+    /**
+     * As {@link #colour(boolean[][], int[])}, from the palette indices starting at <code>offset</code>, so the picks of
+     * many tiles can be held in one array.
+     */
+    int[][] colour(boolean[][] pixels, int[] picks, int offset) {
+        switch (mode) {
+            case Flat:
+                fill(palette.get(picks[offset]));
+                break;
+            case Gradient:
+                gradient(palette.get(picks[offset]), palette.get(picks[offset + 1]));
+                break;
+            case TwoTone:
+                twoTone(pixels, palette.get(picks[offset]), palette.get(picks[offset + 1]));
+                break;
+            case Cell:
+                cells(pixels, picks, offset);
+                break;
+        }
+        return colours;
+    }
+
+    // A different palette index to first, if there is one
+    private int nextOther(RandomSource random, int first) {
+        if (palette.size() == 1) {
+            return first;
+        }
+        final int other = random.nextInt(palette.size() - 1);
+        return (other >= first) ? other + 1 : other;
+    }
+
+    private void fill(int colour) {
+        for (int[] row : colours) {
+            Arrays.fill(row, colour);
+        }
+    }
+
+    private void gradient(int top, int bottom) {
+        final int steps = Math.max(1, colours.length - 1);
+        for (int y = 0; y < colours.length; y++) {
+            Arrays.fill(colours[y], blend(top, bottom, y, steps));
+        }
+    }
+
+    private static int blend(int from, int to, int step, int steps) {
+        final int r = channel(from, to, 16, step, steps);
+        final int g = channel(from, to, 8, step, steps);
+        final int b = channel(from, to, 0, step, steps);
+        return Invaders.BLACK | (r << 16) | (g << 8) | b;
+    }
+
+    private static int channel(int from, int to, int shift, int step, int steps) {
+        final int start = (from >> shift) & 0xFF;
+        final int end = (to >> shift) & 0xFF;
+        return start + (((end - start) * step) / steps);
+    }
+
+    // Pixels inside the invader take the body colour, and those on its outline the outline colour
+    private void twoTone(boolean[][] pixels, int body, int outline) {
+        for (int y = 0; y < pixels.length; y++) {
+            final int[] row = colours[y];
+            for (int x = 0; x < row.length; x++) {
+                final boolean inside = y > 0 && y < pixels.length - 1 && x > 0 && x < row.length - 1 &&
+                        pixels[y - 1][x] && pixels[y + 1][x] && pixels[y][x - 1] && pixels[y][x + 1];
+                row[x] = inside ? body : outline;
+            }
+        }
+    }
+
+    // Each pixel takes a random colour, mirrored as the pixels are
+    private void cells(boolean[][] pixels, int[] picks, int offset) {
+        for (int y = 0; y < pixels.length; y++) {
+            final int[] row = colours[y];
+            final int width = row.length / 2;
+            for (int x = 0; x < width; x++) {
+                final int colour = pixels[y][x] ? palette.get(picks[offset + (y * width) + x]) : Invaders.BLACK;
+                row[x] = colour;
+                row[row.length - 1 - x] = colour;
+            }
+        }
+    }
+}
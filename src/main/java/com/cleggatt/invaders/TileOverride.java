@@ -0,0 +1,42 @@
+package com.cleggatt.invaders;
+
+/**
+ * A tile to draw with a given invader and colour, rather than random ones.
+ *
+ * @see IncrementalImage#redraw(java.util.Collection)
+ */
+public final class TileOverride {
+
+    private final int tileX;
+    private final int tileY;
+    private final long value;
+    private final int colour;
+
+    /**
+     * @param tileX the column of the tile, from 0
+     * @param value the invader to draw, between 1 and {@link Invaders#getMaxValue()}
+     * @param colour the RGB colour to draw it in
+     */
+    public TileOverride(int tileX, int tileY, long value, int colour) {
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.value = value;
+        this.colour = colour;
+    }
+
+    public int getTileX() {
+        return tileX;
+    }
+
+    public int getTileY() {
+        return tileY;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public int getColour() {
+        return colour;
+    }
+}
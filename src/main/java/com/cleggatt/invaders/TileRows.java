@@ -0,0 +1,55 @@
+package com.cleggatt.invaders;
+
+/**
+ * Rows of tiles, drawn as they are read, so only one row of tiles is ever held in memory. Rows must be read in order.
+ */
+final class TileRows implements RowSource {
+
+    private final Invaders invaders;
+    private final int numWide;
+    private final int border;
+    private final Invaders.Edge edge;
+    private final int width;
+    private final int height;
+    private final int tileHeight;
+    private PixelImage current;
+    private int currentRow = -1;
+
+    TileRows(Invaders invaders, int numWide, int numHigh, int border, Invaders.Edge edge) {
+        this.invaders = invaders;
+        this.numWide = numWide;
+        this.border = border;
+        this.edge = edge;
+        this.tileHeight = invaders.getTileHeight(border);
+        final long width = (long) invaders.getTileWidth(border) * numWide;
+        final long height = (long) tileHeight * numHigh;
+        if (width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid image size %d x %d", width, height));
+        }
+        this.width = (int) width;
+        this.height = (int) height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void getRow(int y, int[] row) {
+        final int tileRow = y / tileHeight;
+        if (tileRow < currentRow) {
+            throw new IllegalStateException(String.format("Row %d has already been read", y));
+        }
+        while (currentRow < tileRow) {
+            current = invaders.getPixelInvaderRow(numWide, border, edge);
+            currentRow++;
+        }
+        System.arraycopy(current.getPixels(), (y % tileHeight) * width, row, 0, width);
+    }
+}
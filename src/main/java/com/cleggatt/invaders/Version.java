@@ -0,0 +1,38 @@
+package com.cleggatt.invaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The version of the build, which is filled into <code>version.properties</code> as resources are processed.
+ */
+final class Version {
+
+    private static final String UNKNOWN = "development";
+
+    private Version() {
+    }
+
+    /**
+     * @return the version, or "development" if the resources were not processed by the build
+     */
+    static String get() {
+        final InputStream in = Version.class.getResourceAsStream("version.properties");
+        if (in == null) {
+            return UNKNOWN;
+        }
+        try {
+            try {
+                final Properties properties = new Properties();
+                properties.load(in);
+                final String version = properties.getProperty("version", UNKNOWN);
+                return version.startsWith("@") ? UNKNOWN : version;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.cleggatt.invaders;
+
+/**
+ * Blackman and Vigna's xoshiro256** generator, which has 256 bits of state. The state is initialised from a 64 bit
+ * seed with {@link SplitMix64}, as its authors recommend, so it is never all zero.
+ */
+final class Xoshiro256StarStar extends LongRandomSource {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    Xoshiro256StarStar(long seed) {
+        final SplitMix64 seeder = new SplitMix64(seed);
+        this.s0 = seeder.nextLong();
+        this.s1 = seeder.nextLong();
+        this.s2 = seeder.nextLong();
+        this.s3 = seeder.nextLong();
+    }
+
+    // VisibleForTesting
+    Xoshiro256StarStar(long s0, long s1, long s2, long s3) {
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    long nextLong() {
+        final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        final long t = s1 << 17;
+
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+
+        return result;
+    }
+}
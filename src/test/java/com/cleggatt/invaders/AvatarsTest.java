@@ -0,0 +1,157 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class AvatarsTest {
+
+    private static int[] render(Avatars avatars, long hash) {
+        final int[] argb = new int[avatars.getWidth() * avatars.getHeight()];
+        avatars.render(hash, argb, 0, avatars.getWidth());
+        return argb;
+    }
+
+    public static class HashTest {
+        @Test
+        public void hashShouldBeFnv1a() {
+            // Exercise / Verify
+            assertEquals(0xCBF29CE484222325L, Avatars.hash(new byte[0]));
+            assertEquals(0xAF63DC4C8601EC8CL, Avatars.hash("a"));
+            assertEquals(0x85944171F73967E8L, Avatars.hash("foobar"));
+        }
+
+        @Test
+        public void stringShouldHashAsUtf8() {
+            // Exercise / Verify
+            assertEquals(Avatars.hash("caf\u00e9".getBytes(Charset.forName("UTF-8"))), Avatars.hash("caf\u00e9"));
+        }
+    }
+
+    public static class RenderTest {
+        @Test
+        public void renderShouldMatchInvaderChosenByHash() {
+            // Set up
+            final Avatars avatars = new Avatars(4, 6, 2, 1);
+            final Invaders invaders = new Invaders(4, 6, 2, null, null, Palette.DEFAULT, Invaders.ColourMode.Flat);
+            final RandomSource random = new SplitMix64(42);
+            final long value = random.nextLong(invaders.getMaxValue()) + 1;
+            final int colour = Palette.DEFAULT.get(random.nextInt(Palette.DEFAULT.size()));
+            final PixelImage expected = invaders.getPixelInvaders(new long[]{value}, new int[]{colour}, 1, Invaders.Edge.Square)[0];
+            // Exercise
+            final int[] argb = render(avatars, 42);
+            // Verify
+            assertEquals(expected.getWidth(), avatars.getWidth());
+            assertEquals(expected.getHeight(), avatars.getHeight());
+            assertArrayEquals(expected.getPixels(), argb);
+        }
+
+        @Test
+        public void renderShouldBeRepeatable() {
+            // Set up
+            final Avatars avatars = new Avatars(3, 4, 1, 0, Palette.DEFAULT, Invaders.ColourMode.Cell, Invaders.Edge.Round, 0);
+            // Exercise / Verify
+            assertArrayEquals(render(avatars, Avatars.hash("user")), render(avatars, Avatars.hash("user")));
+            assertFalse(Arrays.equals(render(avatars, Avatars.hash("user")), render(avatars, Avatars.hash("other"))));
+        }
+
+        @Test
+        public void renderShouldNotDependOnEarlierRenders() {
+            // Set up (the tables of this thread are reused)
+            final Avatars avatars = new Avatars(3, 4, 1, 0, Palette.DEFAULT, Invaders.ColourMode.Cell, Invaders.Edge.Round, 0);
+            final int[] expected = render(new Avatars(3, 4, 1, 0, Palette.DEFAULT, Invaders.ColourMode.Cell, Invaders.Edge.Round, 0), Avatars.hash("user"));
+            render(avatars, Avatars.hash("other"));
+            avatars.png("another");
+            // Exercise
+            final int[] actual = render(avatars, Avatars.hash("user"));
+            // Verify
+            assertArrayEquals(expected, actual);
+        }
+
+        @Test
+        public void renderShouldUseOffsetAndStride() {
+            // Set up
+            final Avatars avatars = new Avatars(2, 2, 1, 0);
+            final int[] expected = render(avatars, 7);
+            final int[] argb = new int[2 + (6 * 2)];
+            Arrays.fill(argb, 1);
+            // Exercise
+            avatars.render(7, argb, 2, 6);
+            // Verify
+            assertArrayEquals(new int[]{1, 1}, Arrays.copyOfRange(argb, 0, 2));
+            assertArrayEquals(Arrays.copyOfRange(expected, 0, 4), Arrays.copyOfRange(argb, 2, 6));
+            assertArrayEquals(new int[]{1, 1}, Arrays.copyOfRange(argb, 6, 8));
+            assertArrayEquals(Arrays.copyOfRange(expected, 4, 8), Arrays.copyOfRange(argb, 8, 12));
+            assertArrayEquals(new int[]{1, 1}, Arrays.copyOfRange(argb, 12, 14));
+        }
+
+        @Test
+        public void rgbaShouldMatchArgb() {
+            // Set up
+            final Avatars avatars = new Avatars(2, 3, 1, 1);
+            final int[] argb = render(avatars, 99);
+            final byte[] rgba = new byte[argb.length * 4];
+            // Exercise
+            avatars.render(99, rgba, 0, avatars.getWidth());
+            // Verify
+            for (int i = 0; i < argb.length; i++) {
+                assertEquals((byte) (argb[i] >> 16), rgba[i * 4]);
+                assertEquals((byte) (argb[i] >> 8), rgba[(i * 4) + 1]);
+                assertEquals((byte) argb[i], rgba[(i * 4) + 2]);
+                assertEquals((byte) 0xFF, rgba[(i * 4) + 3]);
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void smallBufferShouldBeInvalid() {
+            // Set up
+            final Avatars avatars = new Avatars(2, 2, 1, 0);
+            // Exercise (and verify by exception)
+            avatars.render(1, new int[8], 1, 4);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void shortStrideShouldBeInvalid() {
+            // Set up
+            final Avatars avatars = new Avatars(2, 2, 1, 0);
+            // Exercise (and verify by exception)
+            avatars.render(1, new int[100], 0, 3);
+        }
+    }
+
+    public static class PngTest {
+        @Test
+        public void pngShouldDecodeToRender() throws IOException {
+            // Set up
+            final Avatars avatars = new Avatars(4, 6, 3, 2);
+            final int[] expected = render(avatars, Avatars.hash("user"));
+            // Exercise
+            final BufferedImage image = ImageIO.read(new ByteArrayInputStream(avatars.png("user")));
+            // Verify
+            assertArrayEquals(expected, image.getRGB(0, 0, avatars.getWidth(), avatars.getHeight(), null, 0, avatars.getWidth()));
+        }
+
+        @Test
+        public void cachedPngShouldMatchAndBeCopied() {
+            // Set up
+            final Avatars avatars = new Avatars(4, 6, 3, 2, Palette.DEFAULT, Invaders.ColourMode.Gradient, Invaders.Edge.Square, 2);
+            final byte[] first = avatars.png("user");
+            first[0] = 0;
+            // Exercise
+            final byte[] second = avatars.png("user");
+            // Verify
+            assertEquals((byte) 0x89, second[0]);
+            assertArrayEquals(new Avatars(4, 6, 3, 2, Palette.DEFAULT, Invaders.ColourMode.Gradient, Invaders.Edge.Square, 0).png("user"), second);
+        }
+    }
+}
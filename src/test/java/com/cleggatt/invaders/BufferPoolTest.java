@@ -0,0 +1,80 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class BufferPoolTest {
+
+    public static class BorrowTest {
+        @Test
+        public void lengthShouldBeRoundedUpToSizeClass() {
+            // Set up
+            final BufferPool<int[]> pool = BufferPool.ints(2, 1 << 20);
+            // Exercise
+            final int[] small = pool.borrow(10);
+            final int[] large = pool.borrow(5000);
+            // Verify
+            assertEquals(1024, small.length);
+            assertEquals(8192, large.length);
+            assertEquals(2, pool.getAllocated());
+        }
+
+        @Test
+        public void givenBackBufferShouldBeReused() {
+            // Set up
+            final BufferPool<char[]> pool = BufferPool.chars(2, 1 << 20);
+            final char[] buffer = pool.borrow(3000);
+            pool.giveBack(buffer);
+            // Exercise
+            final char[] reused = pool.borrow(4000);
+            // Verify
+            assertSame(buffer, reused);
+            assertEquals(1, pool.getAllocated());
+        }
+
+        @Test
+        public void buffersBeyondSlotsShouldNotBeKept() {
+            // Set up
+            final BufferPool<int[]> pool = BufferPool.ints(1, 1 << 20);
+            final int[] first = pool.borrow(2000);
+            final int[] second = pool.borrow(2000);
+            pool.giveBack(first);
+            pool.giveBack(second);
+            // Exercise
+            final int[] reused = pool.borrow(2000);
+            final int[] allocated = pool.borrow(2000);
+            // Verify
+            assertSame(first, reused);
+            assertNotSame(second, allocated);
+            assertEquals(3, pool.getAllocated());
+        }
+
+        @Test
+        public void longBuffersShouldNotBePooled() {
+            // Set up
+            final BufferPool<int[]> pool = BufferPool.ints(2, 4096);
+            final int[] buffer = pool.borrow(5000);
+            pool.giveBack(buffer);
+            // Exercise
+            final int[] next = pool.borrow(5000);
+            // Verify
+            assertEquals(5000, buffer.length);
+            assertNotSame(buffer, next);
+        }
+
+        @Test
+        public void buffersNotFromPoolShouldNotBeKept() {
+            // Set up
+            final BufferPool<int[]> pool = BufferPool.ints(2, 1 << 20);
+            pool.giveBack(new int[3000]);
+            // Exercise
+            final int[] buffer = pool.borrow(3000);
+            // Verify
+            assertEquals(4096, buffer.length);
+        }
+    }
+}
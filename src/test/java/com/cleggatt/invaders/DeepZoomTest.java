@@ -0,0 +1,168 @@
+package com.cleggatt.invaders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.cleggatt.invaders.TestInvaders.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class DeepZoomTest {
+
+    private static DeepZoom createZoom(int scale, int numWide, int numHigh, int border, Invaders.Edge edge, int blurRadius) {
+        final Invaders invaders = seeded(5, 6, scale);
+        return new DeepZoom(invaders, invaders.getTileGrid(numWide, numHigh), border, edge, blurRadius);
+    }
+
+    public static class LevelTest {
+        @Test
+        public void levelsShouldHalveDownToOnePixel() {
+            // Exercise (tiles of 10 x 6 at scale 1, so 300 x 96)
+            final DeepZoom zoom = createZoom(1, 30, 16, 0, Invaders.Edge.Square, 0);
+            // Verify
+            assertEquals(300, zoom.getWidth());
+            assertEquals(96, zoom.getHeight());
+            assertEquals(10, zoom.getLevels());
+            assertEquals(300, zoom.getLevelWidth(9));
+            assertEquals(150, zoom.getLevelWidth(8));
+            assertEquals(75, zoom.getLevelWidth(7));
+            assertEquals(38, zoom.getLevelWidth(6));
+            assertEquals(12, zoom.getLevelHeight(6));
+            assertEquals(1, zoom.getLevelWidth(0));
+            assertEquals(1, zoom.getLevelHeight(0));
+        }
+
+        @Test
+        public void descriptorShouldBeNamedFromOutput() {
+            // Exercise
+            final File descriptor = DeepZoom.getDescriptor("gallery/field.PNG");
+            // Verify
+            assertEquals(new File("gallery/field.dzi"), descriptor);
+            assertEquals(new File("gallery/field_files").getAbsoluteFile(), DeepZoom.getTileDirectory(descriptor));
+        }
+    }
+
+    public static class RenderTest {
+        @Test
+        public void pngsShouldMatchWholeImage() {
+            // Set up
+            final PixelImage expected = seeded(5, 6, 3).getPixelInvaders(20, 15, 2, Invaders.Edge.Round);
+            // Exercise
+            final DeepZoom zoom = createZoom(3, 20, 15, 2, Invaders.Edge.Round, 0);
+            // Verify
+            assertEquals(expected.getWidth(), zoom.getWidth());
+            assertEquals(expected.getHeight(), zoom.getHeight());
+            for (int row = 0; row * DeepZoom.TILE_SIZE < zoom.getHeight(); row++) {
+                for (int column = 0; column * DeepZoom.TILE_SIZE < zoom.getWidth(); column++) {
+                    assertRegionEquals(expected, column * DeepZoom.TILE_SIZE, row * DeepZoom.TILE_SIZE, zoom.render(column, row));
+                }
+            }
+        }
+
+        @Test
+        public void blurredPngsShouldMatchWholeBlurredImage() {
+            // Set up
+            final RowSource expected = ImageOutput.blur(seeded(5, 6, 2).getPixelInvaders(30, 25, 1, Invaders.Edge.Square), 3);
+            // Exercise
+            final DeepZoom zoom = createZoom(2, 30, 25, 1, Invaders.Edge.Square, 3);
+            // Verify (rows of a blurred image must be read in order, so the PNGs are checked a row at a time)
+            final int[] row = new int[zoom.getWidth()];
+            final PixelImage[] pngs = new PixelImage[(zoom.getWidth() + DeepZoom.TILE_SIZE - 1) / DeepZoom.TILE_SIZE];
+            for (int y = 0; y < zoom.getHeight(); y++) {
+                if (y % DeepZoom.TILE_SIZE == 0) {
+                    for (int column = 0; column < pngs.length; column++) {
+                        pngs[column] = zoom.render(column, y / DeepZoom.TILE_SIZE);
+                    }
+                }
+                expected.getRow(y, row);
+                for (int x = 0; x < zoom.getWidth(); x++) {
+                    assertEquals(String.format("(%d, %d)", x, y), row[x], pngs[x / DeepZoom.TILE_SIZE].getPixel(x % DeepZoom.TILE_SIZE, y % DeepZoom.TILE_SIZE));
+                }
+            }
+        }
+    }
+
+    public static class DownsampleTest {
+        @Test
+        public void pixelsShouldBeAveraged() {
+            // Set up
+            final PixelImage quadrant = new PixelImage(new int[]{
+                    0xFF000000, 0xFF040404, 0xFF0000FF,
+                    0xFF080808, 0xFF0C0C0C, 0xFF000001}, 3, 2);
+            // Exercise
+            final PixelImage image = DeepZoom.downsample(new PixelImage[]{quadrant, null, null, null}, 2, 1);
+            // Verify (a partial block is the average of the pixels it has)
+            assertEquals(0xFF060606, image.getPixel(0, 0));
+            assertEquals(0xFF000080, image.getPixel(1, 0));
+        }
+
+        @Test
+        public void quadrantsShouldBePlacedInOrder() {
+            // Set up
+            final PixelImage[] quadrants = new PixelImage[4];
+            for (int q = 0; q < quadrants.length; q++) {
+                final int[] pixels = new int[DeepZoom.TILE_SIZE * 2];
+                Arrays.fill(pixels, 0xFF000000 | q);
+                quadrants[q] = new PixelImage(pixels, DeepZoom.TILE_SIZE, 2);
+            }
+            // Exercise
+            final PixelImage image = DeepZoom.downsample(quadrants, DeepZoom.TILE_SIZE, (DeepZoom.TILE_SIZE / 2) + 1);
+            // Verify
+            assertEquals(0xFF000000, image.getPixel(0, 0));
+            assertEquals(0xFF000001, image.getPixel(DeepZoom.TILE_SIZE - 1, 0));
+            assertEquals(0xFF000002, image.getPixel(0, DeepZoom.TILE_SIZE / 2));
+            assertEquals(0xFF000003, image.getPixel(DeepZoom.TILE_SIZE - 1, DeepZoom.TILE_SIZE / 2));
+        }
+    }
+
+    public static class WriteTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void everyLevelShouldBeWritten() throws IOException {
+            // Set up
+            final DeepZoom zoom = createZoom(2, 40, 30, 1, Invaders.Edge.Square, 0);
+            final File descriptor = new File(folder.getRoot(), "field.dzi");
+            final ForkJoinPool pool = new ForkJoinPool(2);
+            // Exercise
+            try {
+                zoom.write(descriptor, pool);
+            } finally {
+                pool.shutdownNow();
+            }
+            // Verify
+            final String xml = new String(Files.readAllBytes(descriptor.toPath()), Charset.forName("UTF-8"));
+            assertTrue(xml, xml.contains("TileSize=\"256\""));
+            assertTrue(xml, xml.contains(String.format("<Size Width=\"%d\" Height=\"%d\"/>", zoom.getWidth(), zoom.getHeight())));
+            final File directory = new File(folder.getRoot(), "field_files");
+            for (int level = 0; level < zoom.getLevels(); level++) {
+                final int columns = (zoom.getLevelWidth(level) + DeepZoom.TILE_SIZE - 1) / DeepZoom.TILE_SIZE;
+                final int rows = (zoom.getLevelHeight(level) + DeepZoom.TILE_SIZE - 1) / DeepZoom.TILE_SIZE;
+                assertEquals(columns * rows, new File(directory, Integer.toString(level)).list().length);
+                final BufferedImage last = ImageIO.read(new File(directory, String.format("%d/%d_%d.png", level, columns - 1, rows - 1)));
+                assertEquals(zoom.getLevelWidth(level) - ((columns - 1) * DeepZoom.TILE_SIZE), last.getWidth());
+                assertEquals(zoom.getLevelHeight(level) - ((rows - 1) * DeepZoom.TILE_SIZE), last.getHeight());
+            }
+            final BufferedImage png = ImageIO.read(new File(directory, String.format("%d/1_0.png", zoom.getLevels() - 1)));
+            final PixelImage expected = zoom.render(1, 0);
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    assertEquals(expected.getPixel(x, y), png.getRGB(x, y));
+                }
+            }
+        }
+    }
+}
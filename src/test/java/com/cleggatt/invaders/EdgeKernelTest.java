@@ -0,0 +1,86 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class EdgeKernelTest {
+
+    public static class ConstructorTest {
+        @Test(expected = IllegalArgumentException.class)
+        public void squareEdgesShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            new EdgeKernel(Invaders.Edge.Square, 4);
+        }
+    }
+
+    public static class RoundTest {
+        @Test
+        public void surroundedPixelShouldBeFullyCovered() {
+            // Set up
+            final EdgeKernel kernel = new EdgeKernel(Invaders.Edge.Round, 4);
+            // Exercise
+            final int[] alphas = kernel.getAlphas(EdgeKernel.ALL);
+            // Verify
+            for (int alpha : alphas) {
+                assertEquals(255, alpha);
+            }
+        }
+
+        @Test
+        public void isolatedPixelShouldHaveRoundedCorners() {
+            // Set up
+            final EdgeKernel kernel = new EdgeKernel(Invaders.Edge.Round, 8);
+            // Exercise
+            final int[] alphas = kernel.getAlphas(0);
+            // Verify
+            assertEquals(0, alphas[0]);
+            assertEquals(0, alphas[7]);
+            assertEquals(0, alphas[56]);
+            assertEquals(0, alphas[63]);
+            assertEquals(255, alphas[(3 * 8) + 3]);
+        }
+
+        @Test
+        public void cornerWithNeighbourShouldBeSquare() {
+            // Set up
+            final EdgeKernel kernel = new EdgeKernel(Invaders.Edge.Round, 8);
+            // Exercise
+            final int[] alphas = kernel.getAlphas(EdgeKernel.NORTH);
+            // Verify
+            assertEquals(255, alphas[0]);
+            assertEquals(255, alphas[7]);
+            assertEquals(0, alphas[56]);
+            assertEquals(0, alphas[63]);
+        }
+    }
+
+    public static class SoftTest {
+        @Test
+        public void exposedEdgeShouldFadeOut() {
+            // Set up
+            final EdgeKernel kernel = new EdgeKernel(Invaders.Edge.Soft, 4);
+            // Exercise
+            final int[] alphas = kernel.getAlphas(EdgeKernel.ALL & ~EdgeKernel.WEST);
+            // Verify
+            for (int y = 0; y < 4; y++) {
+                assertTrue(alphas[y * 4] < alphas[(y * 4) + 1]);
+                assertEquals(255, alphas[(y * 4) + 2]);
+                assertEquals(255, alphas[(y * 4) + 3]);
+            }
+        }
+    }
+
+    public static class ShadeTest {
+        @Test
+        public void shadeShouldDarkenTowardsBlack() {
+            // Exercise and verify
+            assertEquals(0xFFFFFFFF, EdgeKernel.shade(0xFFFFFFFF, 255));
+            assertEquals(0xFF808080, EdgeKernel.shade(0xFFFFFFFF, 128));
+            assertEquals(0xFF000000, EdgeKernel.shade(0xFFFFFFFF, 0));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.cleggatt.invaders;
+
+import org.jdesktop.swingx.image.GaussianBlurFilter;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class GaussianBlurTest {
+
+    @RunWith(Parameterized.class)
+    public static class MatchesGaussianBlurFilterTest {
+
+        private final int width;
+        private final int height;
+        private final int radius;
+
+        public MatchesGaussianBlurFilterTest(int width, int height, int radius) {
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+        }
+
+        @Parameterized.Parameters
+        public static Collection params() {
+            return Arrays.asList(new Object[][]{
+                    {1, 1, 1},
+                    {16, 9, 1},
+                    {16, 9, 3},
+                    {31, 17, 8},
+                    // Radius larger than the image
+                    {3, 2, 5},
+            });
+        }
+
+        private int[] expected(int[] pixels) {
+            final BufferedImage src = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            src.setRGB(0, 0, width, height, pixels, 0, width);
+            final BufferedImage dst = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            new GaussianBlurFilter(radius).filter(src, dst);
+            return dst.getRGB(0, 0, width, height, null, 0, width);
+        }
+
+        private int[] randomPixels() {
+            final Random random = new Random(width * height * radius);
+            final int[] pixels = new int[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = random.nextInt();
+            }
+            return pixels;
+        }
+
+        @Test
+        public void scalarShouldMatchGaussianBlurFilter() {
+            // Set up
+            final int[] pixels = randomPixels();
+            // Exercise
+            final int[] blurred = GaussianBlur.blurScalar(pixels, width, height, radius);
+            // Verify
+            assertArrayEquals(expected(pixels), blurred);
+        }
+
+        @Test
+        public void regionShouldMatchGaussianBlurFilter() {
+            // Set up
+            final int[] pixels = randomPixels();
+            final int[] expected = expected(pixels);
+            final int x0 = width / 4, y0 = height / 3, x1 = Math.max(x0 + 1, (width * 3) / 4), y1 = height;
+            final int[] blurred = new int[pixels.length];
+            // Exercise
+            GaussianBlur.blur(pixels, blurred, width, height, radius, x0, y0, x1, y1);
+            // Verify
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    final boolean inside = x >= x0 && x < x1 && y >= y0 && y < y1;
+                    assertEquals(inside ? expected[(y * width) + x] : 0, blurred[(y * width) + x]);
+                }
+            }
+        }
+
+        @Test
+        public void planarShouldMatchGaussianBlurFilter() {
+            // Set up
+            final int[] pixels = randomPixels();
+            // Exercise
+            final int[] blurred = GaussianBlur.blurPlanar(pixels, width, height, radius);
+            // Verify
+            assertArrayEquals(expected(pixels), blurred);
+        }
+
+        private int[] readRows(RowSource blurred) {
+            final int[] pixels = new int[width * height];
+            final int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                blurred.getRow(y, row);
+                System.arraycopy(row, 0, pixels, y * width, width);
+            }
+            return pixels;
+        }
+
+        @Test
+        public void rowsShouldMatchWithEitherKernel() {
+            // Set up
+            final int[] pixels = randomPixels();
+            // Exercise
+            final int[] planar = readRows(GaussianBlur.blur(new PixelImage(pixels, width, height), radius, true));
+            final int[] scalar = readRows(GaussianBlur.blur(new PixelImage(pixels, width, height), radius, false));
+            // Verify
+            assertArrayEquals(scalar, planar);
+            assertArrayEquals(expected(pixels), scalar);
+        }
+    }
+
+    public static class KernelTest {
+        @Test(expected = IllegalArgumentException.class)
+        public void radiusLessThanOneShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            GaussianBlur.createKernel(0);
+        }
+
+        @Test
+        public void kernelShouldBeNormalised() {
+            // Exercise
+            final float[] kernel = GaussianBlur.createKernel(3);
+            // Verify
+            float total = 0;
+            for (float factor : kernel) {
+                total += factor;
+            }
+            assertEquals(7, kernel.length);
+            assertEquals(1.0f, total, 0.0001f);
+        }
+    }
+}
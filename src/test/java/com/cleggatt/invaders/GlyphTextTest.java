@@ -0,0 +1,206 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static com.cleggatt.invaders.TestInvaders.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class GlyphTextTest {
+
+    private static String write(Invaders invaders, int numWide, int numHigh, int border, Invaders.Glyphs glyphs) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        invaders.writeTextInvaders(numWide, numHigh, border, glyphs, out);
+        return out.toString("UTF-8");
+    }
+
+    // Whether the pixel is set in text written with a character per pixel, treating anything outside it as unset
+    private static boolean isSet(String[] lines, int x, int y) {
+        return y < lines.length && x < lines[y].length() && lines[y].charAt(x) == '*';
+    }
+
+    @RunWith(Parameterized.class)
+    public static class GlyphsTest {
+
+        private final int width;
+        private final int height;
+        private final int scale;
+        private final int numWide;
+        private final int numHigh;
+        private final int border;
+
+        public GlyphsTest(int width, int height, int scale, int numWide, int numHigh, int border) {
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.numWide = numWide;
+            this.numHigh = numHigh;
+            this.border = border;
+        }
+
+        @Parameterized.Parameters
+        public static Collection params() {
+            return Arrays.asList(new Object[][]{
+                    {4, 6, 1, 2, 3, 0},
+                    {4, 6, 2, 3, 2, 1},
+                    {3, 5, 1, 1, 4, 1},
+                    {5, 7, 3, 2, 1, 2},
+            });
+        }
+
+        @Test
+        public void asciiShouldMatchTextInvaders() throws IOException {
+            // Set up
+            final String expected = seeded(width, height, scale).getTextInvaders(numWide, numHigh, border) + "\n";
+            // Exercise
+            final String actual = write(seeded(width, height, scale), numWide, numHigh, border, Invaders.Glyphs.Ascii);
+            // Verify
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        public void halfBlocksShouldPackPairsOfRows() throws IOException {
+            // Set up
+            final String[] ascii = seeded(width, height, scale).getTextInvaders(numWide, numHigh, border).split("\n");
+            // Exercise
+            final String[] lines = write(seeded(width, height, scale), numWide, numHigh, border, Invaders.Glyphs.HalfBlock).split("\n");
+            // Verify
+            assertEquals((ascii.length + 1) / 2, lines.length);
+            for (int line = 0; line < lines.length; line++) {
+                assertEquals(ascii[0].length(), lines[line].length());
+                for (int x = 0; x < lines[line].length(); x++) {
+                    final boolean top = isSet(ascii, x, line * 2);
+                    final boolean bottom = isSet(ascii, x, (line * 2) + 1);
+                    final char expected = top ? (bottom ? '\u2588' : '\u2580') : (bottom ? '\u2584' : ' ');
+                    assertEquals(expected, lines[line].charAt(x));
+                }
+            }
+        }
+
+        @Test
+        public void brailleShouldPackCellsOfPixels() throws IOException {
+            // Set up
+            final String[] ascii = seeded(width, height, scale).getTextInvaders(numWide, numHigh, border).split("\n");
+            final int[][] dots = new int[][]{{0x01, 0x08}, {0x02, 0x10}, {0x04, 0x20}, {0x40, 0x80}};
+            // Exercise
+            final String[] lines = write(seeded(width, height, scale), numWide, numHigh, border, Invaders.Glyphs.Braille).split("\n");
+            // Verify
+            assertEquals((ascii.length + 3) / 4, lines.length);
+            for (int line = 0; line < lines.length; line++) {
+                assertEquals((ascii[0].length() + 1) / 2, lines[line].length());
+                for (int column = 0; column < lines[line].length(); column++) {
+                    int expected = 0;
+                    for (int dy = 0; dy < 4; dy++) {
+                        for (int dx = 0; dx < 2; dx++) {
+                            if (isSet(ascii, (column * 2) + dx, (line * 4) + dy)) {
+                                expected |= dots[dy][dx];
+                            }
+                        }
+                    }
+                    assertEquals((expected == 0) ? ' ' : (char) (0x2800 | expected), lines[line].charAt(column));
+                }
+            }
+        }
+    }
+
+    public static class AnsiTest {
+
+        private static final String ESCAPE = "\u001B\\[[0-9;]*m";
+
+        private static String writeAnsi(Invaders invaders, int numWide, int numHigh, int border, Invaders.Glyphs glyphs) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            invaders.writeTextInvaders(numWide, numHigh, border, glyphs, true, out);
+            return out.toString("UTF-8");
+        }
+
+        @Test
+        public void withoutEscapesShouldMatchUncolouredText() throws IOException {
+            for (Invaders.Glyphs glyphs : Invaders.Glyphs.values()) {
+                // Set up
+                final String expected = write(seeded(4, 6, 2), 3, 2, 1, glyphs);
+                // Exercise
+                final String actual = writeAnsi(seeded(4, 6, 2, Palette.DEFAULT, Invaders.ColourMode.Flat), 3, 2, 1, glyphs);
+                // Verify
+                assertEquals(glyphs.name(), expected, actual.replaceAll(ESCAPE, ""));
+            }
+        }
+
+        @Test
+        public void escapeShouldOnlyBeWrittenWhenColourChanges() throws IOException {
+            // Set up (a single colour, so each line sets it once and resets it at the end)
+            final Invaders invaders = seeded(4, 6, 2, new Palette(0x12AB03), Invaders.ColourMode.Flat);
+            // Exercise
+            final String text = writeAnsi(invaders, 3, 2, 1, Invaders.Glyphs.Ascii);
+            // Verify
+            for (String line : text.split("\n")) {
+                if (line.contains("*")) {
+                    assertEquals("\u001B[38;2;18;171;3m", line.substring(line.indexOf('\u001B'), line.indexOf('m') + 1));
+                    assertEquals(line, 2, line.split("\u001B", -1).length - 1);
+                    assertTrue(line, line.endsWith("\u001B[0m"));
+                } else {
+                    assertFalse(line, line.contains("\u001B"));
+                }
+            }
+        }
+
+        @Test
+        public void colourShouldMatchImage() throws IOException {
+            // Set up
+            final PixelImage image = seeded(4, 6, 2, Palette.DEFAULT, Invaders.ColourMode.Gradient).getPixelInvaders(2, 1, 0);
+            // Exercise
+            final String[] lines = writeAnsi(seeded(4, 6, 2, Palette.DEFAULT, Invaders.ColourMode.Gradient), 2, 1, 0, Invaders.Glyphs.Ascii).split("\n");
+            // Verify
+            for (int y = 0; y < image.getHeight(); y++) {
+                int colour = -1;
+                int x = 0;
+                final String line = lines[y];
+                for (int i = 0; i < line.length(); i++) {
+                    if (line.charAt(i) == '\u001B') {
+                        final int end = line.indexOf('m', i);
+                        final String[] codes = line.substring(i + 2, end).split(";");
+                        if (codes.length == 5) {
+                            colour = (Integer.parseInt(codes[2]) << 16) | (Integer.parseInt(codes[3]) << 8) | Integer.parseInt(codes[4]);
+                        }
+                        i = end;
+                    } else {
+                        if (line.charAt(i) == '*') {
+                            assertEquals(image.getPixel(x, y) & 0xFFFFFF, colour);
+                        }
+                        x++;
+                    }
+                }
+            }
+        }
+
+        @Test
+        public void differingHalvesShouldUseBackground() throws IOException {
+            // Set up (a colour per pixel, at a scale of 1 so the halves of a character are different pixels)
+            final Invaders invaders = seeded(4, 6, 1, Palette.DEFAULT, Invaders.ColourMode.Cell);
+            // Exercise
+            final String text = writeAnsi(invaders, 4, 4, 0, Invaders.Glyphs.HalfBlock);
+            // Verify
+            assertTrue(text.contains("\u001B[48;2;"));
+            assertFalse(text.replaceAll(ESCAPE, "").contains("\u001B"));
+        }
+    }
+
+    public static class SizeTest {
+        @Test
+        public void halfBlocksShouldHalveLines() throws IOException {
+            // Set up
+            final Invaders invaders = seeded(4, 6, 2);
+            // Exercise
+            final String text = write(invaders, 1, 1, 0, Invaders.Glyphs.HalfBlock);
+            // Verify (an empty line follows the invader, as it does for ASCII)
+            assertEquals("Lines", 6 + 1, text.split("\n", -1).length - 1);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class ImageOutputTest {
+
+    public static class OffsetRowsTest {
+        @Test
+        public void offsetShouldCentreAndFillWithBlack() {
+            // Set up
+            final RowSource src = new PixelImage(new int[]{1, 2, 3, 4}, 2, 2);
+            // Exercise
+            final RowSource offset = ImageOutput.offset(src, 5, 3);
+            // Verify
+            assertEquals(5, offset.getWidth());
+            assertEquals(3, offset.getHeight());
+            final int[] row = new int[5];
+            offset.getRow(0, row);
+            assertArrayEquals(new int[]{BLACK, 1, 2, BLACK, BLACK}, row);
+            offset.getRow(1, row);
+            assertArrayEquals(new int[]{BLACK, 3, 4, BLACK, BLACK}, row);
+            offset.getRow(2, row);
+            assertArrayEquals(new int[]{BLACK, BLACK, BLACK, BLACK, BLACK}, row);
+        }
+
+        @Test
+        public void unsetSizeShouldNotOffset() {
+            // Set up
+            final RowSource src = new PixelImage(new int[]{1, 2, 3, 4}, 2, 2);
+            // Exercise
+            final RowSource offset = ImageOutput.offset(src, -1, -1);
+            // Verify
+            final int[] row = new int[2];
+            offset.getRow(1, row);
+            assertArrayEquals(new int[]{3, 4}, row);
+        }
+
+        private static final int BLACK = 0xFF000000;
+    }
+
+    public static class ScaledOutputTest {
+        @Test
+        public void scaleOfOneShouldBeOutput() {
+            // Exercise / Verify
+            assertEquals(new File("invader.png"), ImageOutput.getScaledOutput("invader.png", 1));
+        }
+
+        @Test
+        public void scaleShouldPrecedeExtension() {
+            // Exercise / Verify
+            assertEquals(new File("out/invader@2x.png"), ImageOutput.getScaledOutput("out/invader.png", 2));
+            assertEquals(new File("a.b/invader@4x"), ImageOutput.getScaledOutput("a.b/invader", 4));
+            assertEquals(new File(".png@3x"), ImageOutput.getScaledOutput(".png", 3));
+        }
+    }
+}
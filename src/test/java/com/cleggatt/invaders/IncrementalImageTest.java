@@ -0,0 +1,79 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@RunWith(Enclosed.class)
+public class IncrementalImageTest {
+
+    // Renders 2 x 2 tiles of the given invaders, coloured with the given palette indexes
+    private static IncrementalImage render(long[] values, int[] colours, int border, Invaders.Edge edge, int pxWidth, int pxHeight, int blurRadius) {
+        final RandomSource invaderRandom = mock(RandomSource.class);
+        when(invaderRandom.nextLong(anyLong())).thenReturn(values[0] - 1, values[1] - 1, values[2] - 1, values[3] - 1);
+        final RandomSource colourRandom = mock(RandomSource.class);
+        when(colourRandom.nextInt(Invaders.COLORS.length)).thenReturn(colours[0], colours[1], colours[2], colours[3]);
+
+        final Invaders invaders = new Invaders(2, 3, 2, invaderRandom, colourRandom);
+        return new IncrementalImage(invaders, 2, 2, border, edge, pxWidth, pxHeight, blurRadius);
+    }
+
+    public static class RedrawTest {
+        @Test
+        public void redrawShouldMatchFullRender() {
+            // Set up
+            final IncrementalImage image = render(new long[]{1, 2, 3, 4}, new int[]{0, 1, 2, 3}, 1, Invaders.Edge.Square, 21, 19, 3);
+            final IncrementalImage expected = render(new long[]{1, 2, 3, 42}, new int[]{0, 1, 2, 5}, 1, Invaders.Edge.Square, 21, 19, 3);
+            // Exercise
+            image.redraw(Collections.singletonList(new TileOverride(1, 1, 42, Invaders.COLORS[5])));
+            // Verify
+            assertArrayEquals(expected.getUnblurred().getPixels(), image.getUnblurred().getPixels());
+            assertArrayEquals(expected.getImage().getPixels(), image.getImage().getPixels());
+        }
+
+        @Test
+        public void redrawShouldMatchFullRenderWithEdges() {
+            // Set up
+            final IncrementalImage image = render(new long[]{5, 6, 7, 8}, new int[]{0, 1, 2, 3}, 0, Invaders.Edge.Round, -1, -1, 0);
+            final IncrementalImage expected = render(new long[]{5, 33, 7, 8}, new int[]{0, 4, 2, 3}, 0, Invaders.Edge.Round, -1, -1, 0);
+            // Exercise
+            image.redraw(Arrays.asList(new TileOverride(1, 0, 33, Invaders.COLORS[4])));
+            // Verify
+            assertArrayEquals(expected.getImage().getPixels(), image.getImage().getPixels());
+        }
+
+        @Test
+        public void redrawShouldClipTilesAsOffsetDoes() {
+            // Set up
+            final IncrementalImage image = render(new long[]{1, 2, 3, 4}, new int[]{0, 1, 2, 3}, 0, Invaders.Edge.Square, 10, 7, 2);
+            final IncrementalImage expected = render(new long[]{63, 2, 3, 4}, new int[]{8, 1, 2, 3}, 0, Invaders.Edge.Square, 10, 7, 2);
+            // Exercise
+            image.redraw(Arrays.asList(new TileOverride(0, 0, 63, Invaders.COLORS[8])));
+            // Verify
+            assertArrayEquals(expected.getImage().getPixels(), image.getImage().getPixels());
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void tileOutsideImageShouldThrowIllegalArgumentException() {
+            // Set up
+            final IncrementalImage image = render(new long[]{1, 2, 3, 4}, new int[]{0, 1, 2, 3}, 0, Invaders.Edge.Square, -1, -1, 0);
+            // Exercise (and verify by exception)
+            image.redraw(Arrays.asList(new TileOverride(2, 0, 1, 0)));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void invalidInvaderShouldThrowIllegalArgumentException() {
+            // Set up
+            final IncrementalImage image = render(new long[]{1, 2, 3, 4}, new int[]{0, 1, 2, 3}, 0, Invaders.Edge.Square, -1, -1, 0);
+            // Exercise (and verify by exception)
+            image.redraw(Arrays.asList(new TileOverride(0, 0, 65, 0)));
+        }
+    }
+}
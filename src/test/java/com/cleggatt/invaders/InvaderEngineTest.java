@@ -0,0 +1,147 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.cleggatt.invaders.TestInvaders.assertImageEquals;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class InvaderEngineTest {
+
+    private static final Palette PALETTE = new Palette(0xFF0000, 0x00FF00, 0x0000FF);
+
+    private static InvaderEngine create(Invaders.ColourMode colourMode, Invaders.Edge edge) {
+        return new InvaderEngine(4, 6, 3, PALETTE, colourMode, edge, 2);
+    }
+
+    private static Invaders createInvaders(long seed, Invaders.ColourMode colourMode) {
+        return new Invaders(4, 6, 3, RandomSources.Algorithm.Xoshiro.create(seed), RandomSources.Algorithm.Xoshiro.create(seed + 1), PALETTE, colourMode);
+    }
+
+    public static class RenderTest {
+        @Test
+        public void imageShouldMatchInvaders() {
+            // Set up
+            final InvaderEngine engine = create(Invaders.ColourMode.Cell, Invaders.Edge.Round);
+            // Exercise
+            final PixelImage image = engine.render(7, 5, 2, RandomSources.Algorithm.Xoshiro.create(42), RandomSources.Algorithm.Xoshiro.create(43));
+            // Verify
+            assertImageEquals(createInvaders(42, Invaders.ColourMode.Cell).getPixelInvaders(7, 5, 2, Invaders.Edge.Round), image);
+            engine.release(image);
+        }
+
+        @Test
+        public void reusedBufferShouldBeRedrawn() {
+            // Set up (a buffer drawn with a border, then reused for tiles of the same size without one)
+            final InvaderEngine engine = create(Invaders.ColourMode.Flat, Invaders.Edge.Square);
+            engine.release(engine.render(4, 4, 2, RandomSources.Algorithm.Xoshiro.create(1), RandomSources.Algorithm.Xoshiro.create(2)));
+            // Exercise
+            final PixelImage image = engine.render(4, 5, 0, RandomSources.Algorithm.Xoshiro.create(42), RandomSources.Algorithm.Xoshiro.create(43));
+            // Verify
+            assertImageEquals(createInvaders(42, Invaders.ColourMode.Flat).getPixelInvaders(4, 5, 0, Invaders.Edge.Square), image);
+            assertEquals(1, engine.getAllocatedBuffers());
+        }
+
+        @Test
+        public void pngShouldMatchInvaders() throws IOException {
+            // Set up
+            final InvaderEngine engine = create(Invaders.ColourMode.Gradient, Invaders.Edge.Square);
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            PngEncoder.write(createInvaders(42, Invaders.ColourMode.Gradient).getPixelInvaders(6, 3, 1, Invaders.Edge.Square), false, expected);
+            // Exercise
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            engine.writePng(6, 3, 1, RandomSources.Algorithm.Xoshiro.create(42), RandomSources.Algorithm.Xoshiro.create(43), out);
+            // Verify
+            assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        }
+
+        @Test
+        public void textShouldMatchInvaders() throws IOException {
+            // Set up
+            final InvaderEngine engine = create(Invaders.ColourMode.Flat, Invaders.Edge.Square);
+            // Exercise (twice, so the second is drawn over the first)
+            final StringWriter first = new StringWriter();
+            engine.writeText(5, 4, 1, RandomSources.Algorithm.Xoshiro.create(7), first);
+            final StringWriter second = new StringWriter();
+            engine.writeText(5, 4, 1, RandomSources.Algorithm.Xoshiro.create(42), second);
+            // Verify
+            assertEquals(createInvaders(7, Invaders.ColourMode.Flat).getTextInvaders(5, 4, 1), first.toString());
+            assertEquals(createInvaders(42, Invaders.ColourMode.Flat).getTextInvaders(5, 4, 1), second.toString());
+            assertEquals(1, engine.getAllocatedBuffers());
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void emptyGridShouldBeInvalid() {
+            // Exercise (and verify by exception)
+            create(Invaders.ColourMode.Flat, Invaders.Edge.Square).render(0, 3, 1, RandomSources.Algorithm.Xoshiro.create(1), RandomSources.Algorithm.Xoshiro.create(2));
+        }
+    }
+
+    public static class ConcurrencyTest {
+        @Test
+        public void concurrentRendersShouldMatchInvadersAndReuseBuffers() throws Exception {
+            // Set up
+            final InvaderEngine engine = create(Invaders.ColourMode.TwoTone, Invaders.Edge.Soft);
+            final int threads = 4;
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            // Exercise
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            try {
+                for (int i = 0; i < threads; i++) {
+                    final long first = i * 1000L;
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            for (long seed = first; seed < first + 25; seed++) {
+                                final PixelImage image = engine.render(8, 6, 1, RandomSources.Algorithm.Xoshiro.create(seed),
+                                        RandomSources.Algorithm.Xoshiro.create(seed + 1));
+                                try {
+                                    assertImageEquals(createInvaders(seed, Invaders.ColourMode.TwoTone).getPixelInvaders(8, 6, 1, Invaders.Edge.Soft), image);
+                                } finally {
+                                    engine.release(image);
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            // Verify (at most a buffer for each thread, the rest reused)
+            assertTrue(engine.getAllocatedBuffers() <= threads);
+        }
+
+        @Test
+        public void threadsShouldNotKeepEngineAlive() throws IOException {
+            // Set up (an engine which has drawn an image and text on this thread, and so has its tables)
+            InvaderEngine engine = create(Invaders.ColourMode.Flat, Invaders.Edge.Square);
+            engine.release(engine.render(2, 2, 1, RandomSources.Algorithm.Xoshiro.create(1), RandomSources.Algorithm.Xoshiro.create(2)));
+            engine.writeText(2, 2, 1, RandomSources.Algorithm.Xoshiro.create(1), new StringWriter());
+            final WeakReference<InvaderEngine> reference = new WeakReference<InvaderEngine>(engine);
+            // Exercise
+            engine = null;
+            for (int i = 0; i < 50 && reference.get() != null; i++) {
+                System.gc();
+            }
+            // Verify
+            assertNull(reference.get());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.cleggatt.invaders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import com.cleggatt.invaders.Main.Params;
+import com.cleggatt.invaders.Main.Params.Format;
+
+import static com.cleggatt.invaders.TestInvaders.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class InvaderFieldTest {
+
+    private static final Palette PALETTE = new Palette(0xFF0000, 0x00FF00, 0x0000FF);
+
+    private static Params.Builder builder(int x, int y, int numWide, int numHigh, Invaders.ColourMode mode) {
+        return new Params.Builder(Format.Field).size(x, y).scale(2).border(1).tiles(numWide, numHigh).seed(42L).palette(PALETTE).colourMode(mode);
+    }
+
+    private static InvaderField save(TemporaryFolder folder, int x, int y, int numWide, int numHigh, Invaders.ColourMode mode) throws IOException {
+        final File file = folder.newFile();
+        InvaderField.write(seeded(x, y, 2, PALETTE, mode), builder(x, y, numWide, numHigh, mode).build(), file);
+        return InvaderField.open(file);
+    }
+
+    public static class HeaderTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void headerShouldBeRead() throws IOException {
+            // Exercise
+            final InvaderField field = save(folder, 4, 6, 7, 5, Invaders.ColourMode.Gradient);
+            // Verify
+            assertEquals(4, field.getX());
+            assertEquals(6, field.getY());
+            assertEquals(2, field.getScale());
+            assertEquals(1, field.getBorder());
+            assertEquals(7, field.getNumWide());
+            assertEquals(5, field.getNumHigh());
+            assertEquals(Long.valueOf(42), field.getSeed());
+            assertEquals(Invaders.ColourMode.Gradient, field.getColourMode());
+            assertEquals(PALETTE, field.getPalette());
+            assertEquals(2, field.getPicks());
+        }
+
+        @Test
+        public void recordsShouldBePackedToTheBit() throws IOException {
+            // Set up
+            final File file = folder.newFile();
+            // Exercise
+            InvaderField.write(seeded(4, 6, 2, PALETTE, Invaders.ColourMode.Flat), builder(4, 6, 7, 5, Invaders.ColourMode.Flat).build(), file);
+            // Verify (a header of 63 bytes, then 24 bits for the invader and 2 for its colour for each of 35 tiles)
+            assertEquals(63 + (((35 * 26) + 7) / 8), file.length());
+        }
+
+        @Test(expected = IOException.class)
+        public void otherFilesShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = folder.newFile();
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[64]);
+            } finally {
+                out.close();
+            }
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        // Saves a field, with the int at offset in its header replaced
+        private File saveWithInt(long offset, int value) throws IOException {
+            final File file = folder.newFile();
+            InvaderField.write(seeded(4, 6, 2, PALETTE, Invaders.ColourMode.Flat), builder(4, 6, 7, 5, Invaders.ColourMode.Flat).build(), file);
+            final RandomAccessFile out = new RandomAccessFile(file, "rw");
+            try {
+                out.seek(offset);
+                out.writeInt(value);
+            } finally {
+                out.close();
+            }
+            return file;
+        }
+
+        // Saves a field, with the count of colours in its palette replaced
+        private File saveWithPaletteSize(int size) throws IOException {
+            // After 41 bytes of header, and "Flat" as modified UTF-8
+            return saveWithInt(41 + 2 + 4, size);
+        }
+
+        @Test(expected = IOException.class)
+        public void paletteLongerThanFileShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = saveWithPaletteSize(Integer.MAX_VALUE);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void negativePaletteShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = saveWithPaletteSize(-1);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void emptyInvaderShouldBeInvalid() throws IOException {
+            // Set up (x)
+            final File file = saveWithInt(8, 0);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void negativeInvaderShouldBeInvalid() throws IOException {
+            // Set up (y)
+            final File file = saveWithInt(12, -6);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void invaderOfMoreThan62BitsShouldBeInvalid() throws IOException {
+            // Set up (x, so the invader is 16 x 6)
+            final File file = saveWithInt(8, 16);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void invaderOverflowingAnIntShouldBeInvalid() throws IOException {
+            // Set up (x and y, whose product overflows to 0)
+            final File file = saveWithInt(8, 1 << 16);
+            final RandomAccessFile out = new RandomAccessFile(file, "rw");
+            try {
+                out.seek(12);
+                out.writeInt(1 << 16);
+            } finally {
+                out.close();
+            }
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void zeroScaleShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = saveWithInt(16, 0);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void negativeBorderShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = saveWithInt(20, -1);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void negativeNumWideShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = saveWithInt(24, -7);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+
+        @Test(expected = IOException.class)
+        public void zeroNumHighShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = saveWithInt(28, 0);
+            // Exercise (and verify by exception)
+            InvaderField.open(file);
+        }
+    }
+
+    public static class RenderTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void fieldShouldRenderAsGenerated() throws IOException {
+            for (Invaders.ColourMode mode : Invaders.ColourMode.values()) {
+                // Set up
+                final PixelImage expected = seeded(4, 6, 2, PALETTE, mode).getPixelInvaders(7, 5, 1);
+                final InvaderField field = save(folder, 4, 6, 7, 5, mode);
+                final Invaders invaders = new Invaders(4, 6, 2, null, null, PALETTE, mode);
+                // Exercise
+                final PixelImage actual = invaders.getPixelInvaders(invaders.getTileGrid(field, 0, 0, 7, 5), 2, 1, Invaders.Edge.Square);
+                // Verify
+                assertEquals(expected.getWidth(), actual.getWidth());
+                assertEquals(expected.getHeight(), actual.getHeight());
+                assertRegionEquals(expected, 0, 0, actual);
+            }
+        }
+
+        @Test
+        public void regionShouldRenderAsGenerated() throws IOException {
+            // Set up
+            final Invaders generated = seeded(4, 6, 2, PALETTE, Invaders.ColourMode.Cell);
+            final PixelImage expected = generated.getPixelInvaders(7, 5, 1);
+            final InvaderField field = save(folder, 4, 6, 7, 5, Invaders.ColourMode.Cell);
+            final Invaders invaders = new Invaders(4, 6, 2, null, null, PALETTE, Invaders.ColourMode.Cell);
+            // Exercise
+            final PixelImage actual = invaders.getPixelInvaders(invaders.getTileGrid(field, 2, 3, 4, 2), 2, 1, Invaders.Edge.Square);
+            // Verify
+            assertEquals(4 * generated.getTileWidth(1), actual.getWidth());
+            assertEquals(2 * generated.getTileHeight(1), actual.getHeight());
+            assertRegionEquals(expected, 2 * generated.getTileWidth(1), 3 * generated.getTileHeight(1), actual);
+        }
+
+        @Test
+        public void widestInvadersShouldRenderAsGenerated() throws IOException {
+            // Set up (62 bits, so values are written in more than one part)
+            final PixelImage expected = seeded(2, 31, 1, PALETTE, Invaders.ColourMode.Flat).getPixelInvaders(9, 3, 0, Invaders.Edge.Square);
+            final InvaderField field = save(folder, 2, 31, 9, 3, Invaders.ColourMode.Flat);
+            final Invaders invaders = new Invaders(2, 31, 1, null, null, PALETTE, Invaders.ColourMode.Flat);
+            // Exercise
+            final PixelImage actual = invaders.getPixelInvaders(invaders.getTileGrid(field, 0, 0, 9, 3), 1, 0, Invaders.Edge.Square);
+            // Verify
+            assertRegionEquals(expected, 0, 0, actual);
+        }
+    }
+}
@@ -4,6 +4,6 @@ import org.junit.runners.Suite;
 import org.junit.runner.RunWith;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({InvadersTest.class, MainTest.class})
+@Suite.SuiteClasses({InvadersTest.class, MainTest.class, EdgeKernelTest.class, SvgCanvasTest.class, GaussianBlurTest.class, OffHeapRasterTest.class, PngEncoderTest.class, ImageOutputTest.class, PixelImageTest.class, RandomSourceTest.class, PaletteTest.class, TileColoursTest.class, IncrementalImageTest.class, OutputCacheTest.class, AvatarsTest.class, TileBandPublisherTest.class, GlyphTextTest.class, DeepZoomTest.class, ShardedPngTest.class, InvaderFieldTest.class, MosaicTest.class, SeedSearchTest.class, MemoryPlanTest.class, BufferPoolTest.class, InvaderEngineTest.class, LatencyHistogramTest.class})
 public class InvadersSuite {
 }
\ No newline at end of file
@@ -8,10 +8,12 @@ import org.junit.runners.Parameterized;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Random;
 
+import static com.cleggatt.invaders.TestInvaders.seeded;
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.Mockito.*;
@@ -25,6 +27,19 @@ public class InvadersTest {
         return(mock);
     }
 
+    public static class ColorsTest {
+        @Test
+        public void colorsShouldMatchAwtColors() {
+            // Set up
+            final Color[] expected = new Color[]{Color.red, Color.lightGray, Color.pink, Color.orange, Color.yellow, Color.green, Color.magenta, Color.cyan, Color.blue};
+            // Verify
+            assertEquals(expected.length, Invaders.COLORS.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getRGB(), Invaders.COLORS[i]);
+            }
+        }
+    }
+
     public static class ConstructorTest {
         @Test(expected = IllegalArgumentException.class)
         public void productOfWidthAndHeightGreaterThan63ShouldThrowIllegalArgumentException() {
@@ -163,6 +178,30 @@ public class InvadersTest {
             // @formatter:on
 
         }
+
+        @Test
+        public void identicalRows() {
+            // Set up
+            Random random = mock(Random.class);
+            final Invaders invaders = new Invaders(2, 3, 2, random, greenRandom());
+
+            double value = getRandomDoubleToGenerate(0b011010, invaders.getMaxValue());
+            stub(random.nextDouble()).toReturn(value);
+
+            // Exercise
+            final String textInvader = invaders.getTextInvaders(1, 1, 0);
+
+            // Verify
+            // @formatter:off
+            assertEquals(
+                    "  ****  \n" +
+                    "  ****  \n" +
+                    "  ****  \n" +
+                    "  ****  \n" +
+                    "**    **\n" +
+                    "**    **\n", textInvader);
+            // @formatter:on
+        }
     }
 
     public static class ImageInvaderTest {
@@ -303,6 +342,159 @@ public class InvadersTest {
         }
     }
 
+    public static class SmoothImageInvaderTest {
+        @Test
+        public void squareEdgesShouldMatchUnsmoothed() {
+            // Set up
+            Random random = mock(Random.class);
+
+            final Invaders invaders = new Invaders(2, 2, 2, random, greenRandom());
+
+            double value = getRandomDoubleToGenerate(0b0110, invaders.getMaxValue());
+            stub(random.nextDouble()).toReturn(value);
+
+            // Exercise
+            final BufferedImage square = invaders.getImageInvaders(1, 1, 0, Invaders.Edge.Square);
+            final BufferedImage plain = invaders.getImageInvaders(1, 1, 0);
+
+            // Verify
+            assertImageEquals(plain, square);
+        }
+
+        @Test
+        public void roundEdgesShouldClearExposedCorners() {
+            // Set up
+            Random random = mock(Random.class);
+
+            final Invaders invaders = new Invaders(1, 1, 8, random, greenRandom());
+
+            double value = getRandomDoubleToGenerate(0b1, invaders.getMaxValue());
+            stub(random.nextDouble()).toReturn(value);
+
+            // Exercise
+            final BufferedImage image = invaders.getImageInvaders(1, 1, 0, Invaders.Edge.Round);
+
+            // Verify
+            assertEquals(Color.BLACK.getRGB(), image.getRGB(0, 0));
+            assertEquals(Color.BLACK.getRGB(), image.getRGB(15, 7));
+            // The two pixels are joined, so the inner corners are not rounded
+            assertEquals(Color.GREEN.getRGB(), image.getRGB(7, 0));
+            assertEquals(Color.GREEN.getRGB(), image.getRGB(8, 7));
+            assertEquals(Color.GREEN.getRGB(), image.getRGB(4, 4));
+        }
+    }
+
+    public static class PixelInvaderTest {
+        @Test
+        public void pixelsShouldMatchImage() {
+            // Set up
+            Random random = mock(Random.class);
+
+            final Invaders invaders = new Invaders(2, 3, 2, random, greenRandom());
+
+            double value = getRandomDoubleToGenerate(0b100110, invaders.getMaxValue());
+            stub(random.nextDouble()).toReturn(value);
+
+            // Exercise
+            final PixelImage pixels = invaders.getPixelInvaders(2, 1, 1, Invaders.Edge.Soft);
+            final BufferedImage image = invaders.getImageInvaders(2, 1, 1, Invaders.Edge.Soft);
+
+            // Verify
+            assertEquals(image.getWidth(), pixels.getWidth());
+            assertEquals(image.getHeight(), pixels.getHeight());
+            for (int y = 0; y < pixels.getHeight(); y++) {
+                for (int x = 0; x < pixels.getWidth(); x++) {
+                    assertEquals(image.getRGB(x, y), pixels.getPixel(x, y));
+                }
+            }
+        }
+    }
+
+    public static class TileGridTest {
+        private static Invaders create(int scale) {
+            return seeded(4, 6, scale, Palette.DEFAULT, Invaders.ColourMode.Gradient);
+        }
+
+        @Test
+        public void gridShouldMatchRenderAtEachScale() {
+            // Set up
+            final Invaders invaders = create(1);
+            // Exercise
+            final Invaders.TileGrid grid = invaders.getTileGrid(3, 2);
+            // Verify
+            for (int scale : new int[]{1, 2, 5}) {
+                for (Invaders.Edge edge : Invaders.Edge.values()) {
+                    final PixelImage expected = create(scale).getPixelInvaders(3, 2, 1, edge);
+                    final PixelImage actual = invaders.getPixelInvaders(grid, scale, 1, edge);
+                    assertEquals(expected.getWidth(), actual.getWidth());
+                    assertEquals(expected.getHeight(), actual.getHeight());
+                    assertArrayEquals(expected.getPixels(), actual.getPixels());
+                }
+            }
+        }
+    }
+
+    public static class ColourModeTest {
+        @Test
+        public void gradientShouldColourRowsDifferently() {
+            // Set up
+            Random random = mock(Random.class);
+            RandomSource colourRandom = mock(RandomSource.class);
+            when(colourRandom.nextInt(2)).thenReturn(0);
+            when(colourRandom.nextInt(1)).thenReturn(0);
+
+            final Invaders invaders = new Invaders(1, 3, 2, RandomSources.wrap(random), colourRandom, new Palette(0xFF0000, 0x0000FF), Invaders.ColourMode.Gradient);
+
+            double value = getRandomDoubleToGenerate(0b111, invaders.getMaxValue());
+            stub(random.nextDouble()).toReturn(value);
+
+            // Exercise
+            final PixelImage image = invaders.getPixelInvaders(1, 1, 0);
+
+            // Verify
+            assertEquals(0xFFFF0000, image.getPixel(0, 0));
+            assertEquals(0xFFFF0000, image.getPixel(3, 1));
+            assertEquals(0xFF80007F, image.getPixel(0, 2));
+            assertEquals(0xFF0000FF, image.getPixel(3, 5));
+        }
+    }
+
+    public static class OffHeapInvaderTest {
+        @Test
+        public void offHeapShouldMatchImage() throws IOException {
+            // Set up
+            Random random = mock(Random.class);
+            Random colourRandom = mock(Random.class);
+
+            final Invaders invaders = new Invaders(2, 3, 3, random, colourRandom);
+
+            double valueOne = getRandomDoubleToGenerate(0b000001, invaders.getMaxValue());
+            double valueTwo = getRandomDoubleToGenerate(0b100110, invaders.getMaxValue());
+            when(random.nextDouble()).thenReturn(valueOne, valueTwo, valueOne, valueTwo);
+            when(colourRandom.nextInt(Invaders.COLORS.length)).thenReturn(1, 5, 1, 5);
+
+            // Exercise
+            final BufferedImage image = invaders.getImageInvaders(2, 1, 1, Invaders.Edge.Round);
+            final OffHeapRaster raster = invaders.getOffHeapInvaders(2, 1, 1, Invaders.Edge.Round, null);
+
+            // Verify
+            try {
+                assertEquals(image.getWidth(), raster.getWidth());
+                assertEquals(image.getHeight(), raster.getHeight());
+                final int[] row = new int[raster.getWidth()];
+                for (int y = 0; y < raster.getHeight(); y++) {
+                    raster.getRow(y, row);
+                    for (int x = 0; x < raster.getWidth(); x++) {
+                        // The off-heap background is transparent
+                        assertEquals(image.getRGB(x, y), row[x] | 0xFF000000);
+                    }
+                }
+            } finally {
+                raster.close();
+            }
+        }
+    }
+
     public static class TiledTest {
 
         @Test
@@ -353,21 +545,21 @@ public class InvadersTest {
             // Verify
             final BufferedImage expected = createBlackImage(8, 4);
 
-            expected.setRGB(0, 0, Invaders.COLORS[1].getRGB());
-            expected.setRGB(3, 0, Invaders.COLORS[1].getRGB());
+            expected.setRGB(0, 0, Invaders.COLORS[1]);
+            expected.setRGB(3, 0, Invaders.COLORS[1]);
 
-            expected.setRGB(5, 0, Invaders.COLORS[5].getRGB());
-            expected.setRGB(6, 0, Invaders.COLORS[5].getRGB());
+            expected.setRGB(5, 0, Invaders.COLORS[5]);
+            expected.setRGB(6, 0, Invaders.COLORS[5]);
 
-            expected.setRGB(0, 2, Invaders.COLORS[8].getRGB());
-            expected.setRGB(3, 2, Invaders.COLORS[8].getRGB());
-            expected.setRGB(1, 3, Invaders.COLORS[8].getRGB());
-            expected.setRGB(2, 3, Invaders.COLORS[8].getRGB());
+            expected.setRGB(0, 2, Invaders.COLORS[8]);
+            expected.setRGB(3, 2, Invaders.COLORS[8]);
+            expected.setRGB(1, 3, Invaders.COLORS[8]);
+            expected.setRGB(2, 3, Invaders.COLORS[8]);
 
-            expected.setRGB(5, 2, Invaders.COLORS[2].getRGB());
-            expected.setRGB(6, 2, Invaders.COLORS[2].getRGB());
-            expected.setRGB(5, 3, Invaders.COLORS[2].getRGB());
-            expected.setRGB(6, 3, Invaders.COLORS[2].getRGB());
+            expected.setRGB(5, 2, Invaders.COLORS[2]);
+            expected.setRGB(6, 2, Invaders.COLORS[2]);
+            expected.setRGB(5, 3, Invaders.COLORS[2]);
+            expected.setRGB(6, 3, Invaders.COLORS[2]);
 
             assertImageEquals(expected, image);
         }
@@ -0,0 +1,144 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class LatencyHistogramTest {
+
+    private static final long MAX_VALUE = (1L << 42) - 1;
+
+    public static class BucketTest {
+        @Test
+        public void smallValuesShouldHaveABucketEach() {
+            for (long value = 0; value < 2048; value++) {
+                // Exercise
+                final int index = LatencyHistogram.getIndex(value);
+                // Verify
+                assertEquals(value, index);
+                assertEquals(value, LatencyHistogram.getHighestValue(index));
+            }
+        }
+
+        @Test
+        public void bucketsShouldMeetAtPowersOfTwo() {
+            for (int bits = 11; bits < 42; bits++) {
+                // Set up
+                final long power = 1L << bits;
+                // Exercise
+                final int below = LatencyHistogram.getIndex(power - 1);
+                final int at = LatencyHistogram.getIndex(power);
+                // Verify (the last bucket below the power ends just before it, and the next starts at it)
+                assertEquals(Integer.toString(bits), below + 1, at);
+                assertEquals(Integer.toString(bits), power - 1, LatencyHistogram.getHighestValue(below));
+                assertEquals(Integer.toString(bits), power + (power >> 10) - 1, LatencyHistogram.getHighestValue(at));
+                assertEquals(Integer.toString(bits), at, LatencyHistogram.getIndex(power + (power >> 10) - 1));
+            }
+        }
+
+        @Test
+        public void bucketsShouldBeWithinATenthOfAPercent() {
+            for (int bits = 11; bits < 42; bits++) {
+                for (long value : new long[]{(1L << bits) + 1, (3L << (bits - 1)) + 7, (2L << bits) - 2}) {
+                    // Exercise
+                    final long highest = LatencyHistogram.getHighestValue(LatencyHistogram.getIndex(value));
+                    // Verify
+                    assertTrue(Long.toString(value), highest >= value);
+                    assertTrue(Long.toString(value), highest - value < value / 1000);
+                }
+            }
+        }
+
+        @Test
+        public void largestValueShouldBeInLastBucket() {
+            // Exercise
+            final int index = LatencyHistogram.getIndex(MAX_VALUE);
+            // Verify
+            assertEquals(MAX_VALUE, LatencyHistogram.getHighestValue(index));
+            assertEquals(index - 1, LatencyHistogram.getIndex(MAX_VALUE - (1L << 31)));
+        }
+    }
+
+    public static class PercentileTest {
+        @Test
+        public void emptyShouldBeZero() {
+            // Set up
+            final LatencyHistogram histogram = new LatencyHistogram();
+            // Exercise / Verify
+            assertEquals(0, histogram.getValueAtPercentile(50));
+            assertEquals(0, histogram.getCount());
+            assertEquals(0, histogram.getMean(), 0);
+        }
+
+        @Test
+        public void percentilesShouldBeExactForSmallValues() {
+            // Set up
+            final LatencyHistogram histogram = new LatencyHistogram();
+            for (long value = 1; value <= 1000; value++) {
+                histogram.record(value);
+            }
+            // Exercise / Verify
+            assertEquals(1, histogram.getValueAtPercentile(0));
+            assertEquals(500, histogram.getValueAtPercentile(50));
+            assertEquals(990, histogram.getValueAtPercentile(99));
+            assertEquals(999, histogram.getValueAtPercentile(99.9));
+            assertEquals(1000, histogram.getValueAtPercentile(100));
+            assertEquals(500.5, histogram.getMean(), 0);
+        }
+
+        @Test
+        public void percentilesShouldBeWithinBucketOfLargeValues() {
+            // Set up (99 requests of 2ms, and one of 1s)
+            final LatencyHistogram histogram = new LatencyHistogram();
+            for (int i = 0; i < 99; i++) {
+                histogram.record(2000000);
+            }
+            histogram.record(1000000000);
+            // Exercise
+            final long p99 = histogram.getValueAtPercentile(99);
+            final long p100 = histogram.getValueAtPercentile(100);
+            // Verify
+            assertTrue(p99 >= 2000000 && p99 < 2002000);
+            assertEquals(1000000000, p100);
+        }
+
+        @Test
+        public void valuesShouldBeClamped() {
+            // Set up
+            final LatencyHistogram histogram = new LatencyHistogram();
+            // Exercise
+            histogram.record(-5);
+            histogram.record(Long.MAX_VALUE);
+            // Verify
+            assertEquals(0, histogram.getValueAtPercentile(50));
+            assertEquals(MAX_VALUE, histogram.getValueAtPercentile(100));
+            assertEquals(MAX_VALUE, histogram.getMax());
+        }
+    }
+
+    public static class AddTest {
+        @Test
+        public void addedShouldCountBoth() {
+            // Set up
+            final LatencyHistogram first = new LatencyHistogram();
+            final LatencyHistogram second = new LatencyHistogram();
+            for (long value = 1; value <= 50; value++) {
+                first.record(value);
+                second.record(value + 50);
+            }
+            // Exercise
+            first.add(second);
+            // Verify
+            assertEquals(100, first.getCount());
+            assertEquals(100, first.getMax());
+            assertEquals(50.5, first.getMean(), 0);
+            assertEquals(50, first.getValueAtPercentile(50));
+            assertEquals(75, first.getValueAtPercentile(75));
+            // The other is unchanged
+            assertEquals(50, second.getCount());
+        }
+    }
+}
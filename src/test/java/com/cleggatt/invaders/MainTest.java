@@ -6,6 +6,10 @@ import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Random;
@@ -13,9 +17,9 @@ import java.util.Random;
 import com.cleggatt.invaders.Main.Params;
 import com.cleggatt.invaders.Main.Params.Format;
 
+import static com.cleggatt.invaders.TestInvaders.seeded;
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.*;
 import static com.cleggatt.invaders.Main.*;
 
@@ -71,6 +75,11 @@ public class MainTest {
                     {new String[]{"--png", "-x", "4"}, new Params(Format.Image, 4, DEFAULT_Y, 1, 1, 1, 1, 0, 0, null, DEFAULT_BLUR, DEFAULT_OUTPUT_STR)},
                     {new String[]{"--png", "-y", "5"}, new Params(Format.Image, DEFAULT_X, 5, 1, 1, 1, 1, 0, 0, null, DEFAULT_BLUR, DEFAULT_OUTPUT_STR)},
                     {new String[]{"--png", "--output", "file.out"}, new Params(Format.Image, DEFAULT_X, DEFAULT_Y, 1, 1, 1, 1, 0, 0, null, DEFAULT_BLUR, "file.out")},
+                    {new String[]{"--png", "--edges", "square"}, new Params(Format.Image, DEFAULT_X, DEFAULT_Y, 1, 1, 1, 1, 0, 0, null, DEFAULT_BLUR, DEFAULT_OUTPUT_STR)},
+                    {new String[]{"--png", "--edges", "round"}, new Params(Format.Image, DEFAULT_X, DEFAULT_Y, 1, 1, 1, 1, 0, 0, null, 0, DEFAULT_OUTPUT_STR)},
+
+                    {new String[]{"--svg"}, new Params(Format.Svg, DEFAULT_X, DEFAULT_Y, 1, 1, 1, 1, 0, 0, null, DEFAULT_BLUR, DEFAULT_SVG_OUTPUT_STR)},
+                    {new String[]{"--svg", "--guassian", "0", "--output", "file.out"}, new Params(Format.Svg, DEFAULT_X, DEFAULT_Y, 1, 1, 1, 1, 0, 0, null, 0, "file.out")},
             });
         }
 
@@ -152,6 +161,14 @@ public class MainTest {
                     {new String[]{"--text", "--png"}},
                     {new String[]{"--text", "--guassian", "1"}},
                     {new String[]{"--text", "--output", "file.out"}},
+                    {new String[]{"--text", "--edges", "round"}},
+                    {new String[]{"--text", "--svg"}},
+                    {new String[]{"--png", "--svg"}},
+                    {new String[]{"--svg", "--edges", "round"}},
+                    {new String[]{"--text", "-offheap"}},
+                    {new String[]{"--svg", "-offheap"}},
+                    {new String[]{"--png", "--edges", "round", "--guassian", "1"}},
+                    {new String[]{"--png", "--edges", "jagged"}},
                     {new String[]{"--text", "-pxWidth", "100", "-pxHeight", "100", "-tileX", "10", "-tileY", "10", }},
                     // Invalid option arguments values - use PNG as all options are valid for it
                     {new String[]{"--png", "--border", "-1"}},
@@ -199,6 +216,93 @@ public class MainTest {
         }
     }
 
+    public static class EdgesTest {
+        @Test
+        public void edgesShouldDefaultToSquare() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertEquals(Invaders.Edge.Square, params.getEdge());
+        }
+
+        @Test
+        public void edgesShouldBeCaseInsensitive() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "--edges", "SOFT"});
+            // Verify
+            assertEquals(Invaders.Edge.Soft, params.getEdge());
+            assertEquals(0, params.getBlurRadius());
+        }
+    }
+
+    public static class OffHeapTest {
+        @Test
+        public void offHeapShouldDefaultToFalse() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertFalse(params.isOffHeap());
+        }
+
+        @Test
+        public void offHeapShouldBeSet() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-offheap"});
+            // Verify
+            assertTrue(params.isOffHeap());
+        }
+    }
+
+    public static class ColoursTest {
+        @Test
+        public void coloursShouldDefaultToFlatWithDefaultPalette() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertEquals(Invaders.ColourMode.Flat, params.getColourMode());
+            assertEquals(Palette.DEFAULT, params.getPalette());
+        }
+
+        @Test
+        public void paletteAndColoursShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--svg", "-palette", "ff0000,00ff00", "-colours", "TwoTone"});
+            // Verify
+            assertEquals(Invaders.ColourMode.TwoTone, params.getColourMode());
+            assertEquals(new Palette(0xFF0000, 0x00FF00), params.getPalette());
+        }
+
+        @Test(expected = ParseException.class)
+        public void paletteShouldBeInvalidWithText() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--text", "-palette", "ff0000"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void paletteShouldBeInvalidWithPaletteFile() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-palette", "ff0000", "-paletteFile", "palette.txt"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void invalidPaletteShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-palette", "red"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void missingPaletteFileShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-paletteFile", "no-such-palette.txt"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void unknownColoursShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-colours", "rainbow"});
+        }
+    }
+
     @RunWith(Parameterized.class)
     public static class TileCalculationTest {
 
@@ -258,25 +362,510 @@ public class MainTest {
 
     public static class SeedTest {
         @Test
-        public void seedWithNonNullSeedParamShouldSetParamAsSeed() {
+        public void seedWithNonNullSeedParamShouldReturnParam() {
             // Set up
             Random random = mock(Random.class);
             // Exercise
             Params params = new Params(Format.Image, DEFAULT_X, DEFAULT_Y, 0, 0, 0, 0, 0, 0, 42L, 0, null);
-            Main.seed(random, params);
+            final long seed = Main.seed(random, params);
             // Verify
-            verify(random).setSeed(42L);
+            assertEquals(42L, seed);
+            verify(random, never()).nextLong();
         }
 
         @Test
-        public void seedWithNullSeedParamShouldDoNothing() {
+        public void seedWithNullSeedParamShouldUseRandom() {
             // Set up
             Random random = mock(Random.class);
+            stub(random.nextLong()).toReturn(7L);
             // Exercise
             Params params = new Params(Format.Image, DEFAULT_X, DEFAULT_Y,0, 0, 0, 0, 0, 0, null, 0, null);
-            Main.seed(random, params);
+            final long seed = Main.seed(random, params);
+            // Verify
+            assertEquals(7L, seed);
+        }
+
+        @Test
+        public void colourSeedShouldBeDerivedFromSeedParam() {
+            // Set up
+            Random random = mock(Random.class);
+            // Exercise
+            Params params = new Params(Format.Image, DEFAULT_X, DEFAULT_Y, 0, 0, 0, 0, 0, 0, 42L, 0, null);
+            final long colourSeed = Main.colourSeed(random, params);
+            // Verify
+            assertEquals(colourSeed, Main.colourSeed(random, params));
+            assertNotEquals(42L, colourSeed);
+            verify(random, never()).nextLong();
+        }
+
+        @Test
+        public void colourSeedWithNullSeedParamShouldUseRandom() {
+            // Set up
+            Random random = mock(Random.class);
+            stub(random.nextLong()).toReturn(7L);
+            // Exercise
+            Params params = new Params(Format.Image, DEFAULT_X, DEFAULT_Y, 0, 0, 0, 0, 0, 0, null, 0, null);
+            final long colourSeed = Main.colourSeed(random, params);
+            // Verify
+            assertEquals(7L, colourSeed);
+        }
+    }
+
+    public static class DziTest {
+        @Test
+        public void dziShouldDefaultToOff() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertFalse(params.isDzi());
+        }
+
+        @Test
+        public void dziShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-dzi", "-edges", "round"});
+            // Verify
+            assertTrue(params.isDzi());
+            assertEquals(Invaders.Edge.Round, params.getEdge());
+        }
+
+        @Test(expected = ParseException.class)
+        public void dziShouldBeInvalidWithSvg() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--svg", "-dzi"});
+        }
+
+        @Test
+        public void dziShouldAllowBlur() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-dzi", "-guassian", "2"});
+            // Verify
+            assertEquals(2, params.getBlurRadius());
+        }
+
+        @Test(expected = ParseException.class)
+        public void dziShouldBeInvalidWithPxWidth() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-dzi", "-pxWidth", "100"});
+        }
+    }
+
+    public static class ProcessesTest {
+        @Test
+        public void processesShouldDefaultToOne() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertEquals(1, params.getProcesses());
+            assertEquals(-1, params.getShard());
+        }
+
+        @Test
+        public void shardShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-tileY", "4", "-processes", "3", "-shard", "1/3"});
+            // Verify
+            assertEquals(3, params.getProcesses());
+            assertEquals(1, params.getShard());
+            assertEquals(3, params.getShards());
+        }
+
+        @Test(expected = ParseException.class)
+        public void processesShouldBeInvalidWithSvg() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--svg", "-processes", "2"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void moreProcessesThanRowsShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-tileY", "2", "-processes", "3"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void shardOutOfRangeShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-tileY", "4", "-shard", "3/3"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void processesShouldBeInvalidInNativeImage() throws ParseException {
+            // Set up (as the native image sets it)
+            System.setProperty("org.graalvm.nativeimage.imagecode", "runtime");
+            try {
+                // Exercise (and verify by exception)
+                Main.parseParams(new String[]{"--png", "-tileY", "4", "-processes", "2"});
+            } finally {
+                System.clearProperty("org.graalvm.nativeimage.imagecode");
+            }
+        }
+
+        @Test
+        public void shardShouldBeValidInNativeImage() throws ParseException {
+            // Set up (as the native image sets it)
+            System.setProperty("org.graalvm.nativeimage.imagecode", "runtime");
+            try {
+                // Exercise
+                final Params params = Main.parseParams(new String[]{"--png", "-tileY", "4", "-processes", "2", "-shard", "0/2"});
+                // Verify
+                assertEquals(0, params.getShard());
+            } finally {
+                System.clearProperty("org.graalvm.nativeimage.imagecode");
+            }
+        }
+    }
+
+    public static class FieldTest {
+        @Test
+        public void saveFieldShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"-saveField", "field.inv", "-tileX", "3", "-seed", "5"});
+            // Verify
+            assertEquals(Format.Field, params.getFormat());
+            assertEquals("field.inv", params.getOutputFile());
+            assertEquals(3, params.getTileX());
+            assertNull(params.getFieldFile());
+        }
+
+        @Test
+        public void loadFieldShouldDefaultToFieldScaleAndBorder() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-loadField", "field.inv"});
+            // Verify
+            assertEquals(Format.Image, params.getFormat());
+            assertEquals(new File("field.inv"), params.getFieldFile());
+            assertEquals(0, params.getScale());
+            assertEquals(-1, params.getBorder());
+            assertNull(params.getRegion());
+        }
+
+        @Test
+        public void regionShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-loadField", "field.inv", "-region", "10, 0,4,3", "-s", "2", "-b", "0"});
+            // Verify
+            assertArrayEquals(new int[]{10, 0, 4, 3}, params.getRegion());
+            assertEquals(2, params.getScale());
+            assertEquals(0, params.getBorder());
+        }
+
+        @Test(expected = ParseException.class)
+        public void saveFieldShouldBeInvalidWithPng() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-saveField", "field.inv"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void loadFieldShouldBeInvalidWithSeed() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-loadField", "field.inv", "-seed", "5"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void loadFieldShouldBeInvalidWithText() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--text", "-loadField", "field.inv"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void emptyRegionShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-loadField", "field.inv", "-region", "0,0,0,3"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void regionShouldBeInvalidWithoutLoadField() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-region", "0,0,1,1"});
+        }
+    }
+
+    public static class MosaicTest {
+        @Test
+        public void mosaicShouldCoverImageByDefault() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-mosaic", "photo.jpg"});
+            // Verify
+            assertEquals(new File("photo.jpg"), params.getMosaic());
+            assertEquals(0, params.getTileX());
+            assertEquals(0, params.getTileY());
+        }
+
+        @Test
+        public void tilesShouldOnlyCoverImageWhereNotGiven() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-mosaic", "photo.jpg", "-tileX", "40"});
+            // Verify
+            assertEquals(40, params.getTileX());
+            assertEquals(0, params.getTileY());
+        }
+
+        @Test(expected = ParseException.class)
+        public void mosaicShouldBeInvalidInNativeImage() throws ParseException {
+            // Set up (as the native image sets it)
+            System.setProperty("org.graalvm.nativeimage.imagecode", "runtime");
+            try {
+                // Exercise (and verify by exception)
+                Main.parseParams(new String[]{"--png", "-mosaic", "photo.jpg"});
+            } finally {
+                System.clearProperty("org.graalvm.nativeimage.imagecode");
+            }
+        }
+
+        @Test(expected = ParseException.class)
+        public void mosaicShouldBeInvalidWithText() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--text", "-mosaic", "photo.jpg"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void mosaicShouldBeInvalidWithColours() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-mosaic", "photo.jpg", "-colours", "cell"});
+        }
+    }
+
+    public static class FindTest {
+        @Test
+        public void findShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"-find", "pattern.txt", "-findTile", "12", "-findFrom", "100", "-rng", "splitmix"});
+            // Verify
+            assertEquals(Format.Search, params.getFormat());
+            assertEquals(new File("pattern.txt"), params.getFindPattern());
+            assertEquals(12, params.getFindTile());
+            assertEquals(100, params.getFindFrom());
+            assertEquals(Long.MAX_VALUE, params.getFindLimit());
+            assertEquals(RandomSources.Algorithm.SplitMix, params.getRng());
+        }
+
+        @Test(expected = ParseException.class)
+        public void findShouldBeInvalidWithSeed() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"-find", "pattern.txt", "-seed", "5"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void findShouldBeInvalidWithPng() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-find", "pattern.txt"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void emptyLimitShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"-find", "pattern.txt", "-findLimit", "0"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void findTileShouldBeInvalidWithoutFind() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-findTile", "1"});
+        }
+    }
+
+    public static class ScalesTest {
+        @Test
+        public void scalesShouldDefaultToNone() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertNull(params.getScales());
+        }
+
+        @Test
+        public void scalesShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png", "-scales", "1, 2,4", "-tileX", "3"});
+            // Verify
+            assertArrayEquals(new int[]{1, 2, 4}, params.getScales());
+            assertEquals(3, params.getTileX());
+        }
+
+        @Test(expected = ParseException.class)
+        public void repeatedScaleShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-scales", "1,2,1"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void zeroScaleShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-scales", "0,2"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void scalesShouldBeInvalidWithScale() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-scales", "1,2", "-s", "2"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void scalesShouldBeInvalidWithPxWidth() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-scales", "1,2", "-pxWidth", "100"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void scalesShouldBeInvalidWithSvg() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--svg", "-scales", "1,2"});
+        }
+    }
+
+    public static class GlyphsTest {
+        @Test
+        public void glyphsShouldDefaultToAscii() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--text"});
+            // Verify
+            assertEquals(Invaders.Glyphs.Ascii, params.getGlyphs());
+        }
+
+        @Test
+        public void glyphsShouldBeCaseInsensitive() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--text", "-glyphs", "BRAILLE"});
+            // Verify
+            assertEquals(Invaders.Glyphs.Braille, params.getGlyphs());
+        }
+
+        @Test(expected = ParseException.class)
+        public void glyphsShouldBeInvalidWithPng() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-glyphs", "halfblock"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void unknownGlyphsShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--text", "-glyphs", "emoji"});
+        }
+
+        @Test
+        public void ansiShouldAllowPaletteWithText() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--text", "-ansi", "-palette", "ff0000", "-colours", "gradient"});
+            // Verify
+            assertTrue(params.isAnsi());
+            assertEquals(new Palette(0xFF0000), params.getPalette());
+            assertEquals(Invaders.ColourMode.Gradient, params.getColourMode());
+        }
+
+        @Test(expected = ParseException.class)
+        public void ansiShouldBeInvalidWithPng() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-ansi"});
+        }
+    }
+
+    public static class CacheTest {
+        @Test
+        public void cacheShouldDefaultToNone() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--png"});
+            // Verify
+            assertNull(params.getCacheDir());
+        }
+
+        @Test
+        public void cacheShouldBeParsed() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--text", "-cacheDir", "cache", "-cacheSize", "2"});
+            // Verify
+            assertEquals(new File("cache"), params.getCacheDir());
+            assertEquals(2 * 1024 * 1024, params.getCacheBytes());
+        }
+
+        @Test
+        public void cacheSizeShouldDefault() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--svg", "--cacheDir", "cache"});
+            // Verify
+            assertEquals(DEFAULT_CACHE_SIZE_MB * 1024L * 1024L, params.getCacheBytes());
+        }
+
+        @Test(expected = ParseException.class)
+        public void cacheSizeShouldBeInvalidWithoutCacheDir() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-cacheSize", "2"});
+        }
+
+        @Test(expected = ParseException.class)
+        public void zeroCacheSizeShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--png", "-cacheDir", "cache", "-cacheSize", "0"});
+        }
+    }
+
+    public static class RngTest {
+        @Test
+        public void rngShouldDefaultToJdk() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--text"});
+            // Verify
+            assertEquals(RandomSources.Algorithm.Jdk, params.getRng());
+        }
+
+        @Test
+        public void rngShouldBeCaseInsensitive() throws ParseException {
+            // Exercise
+            final Params params = Main.parseParams(new String[]{"--text", "-rng", "XOSHIRO"});
+            // Verify
+            assertEquals(RandomSources.Algorithm.Xoshiro, params.getRng());
+        }
+
+        @Test(expected = ParseException.class)
+        public void unknownRngShouldBeInvalid() throws ParseException {
+            // Exercise (and verify by exception)
+            Main.parseParams(new String[]{"--text", "-rng", "dice"});
+        }
+    }
+
+    public static class TextTest {
+        // Prints the text of the parameters, planned with the memory given, and returns its lines
+        private static String[] print(Params params, long available) throws IOException {
+            final Invaders invaders = seeded(params.getX(), params.getY(), 1, Palette.DEFAULT, Invaders.ColourMode.Flat);
+            final PrintStream stdout = System.out;
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(out, true, "UTF-8"));
+            try {
+                writeText(invaders, params, MemoryPlan.plan(params, 1, available));
+            } finally {
+                System.setOut(stdout);
+            }
+            return out.toString("UTF-8").split("\n");
+        }
+
+        @Test
+        public void asciiShouldBeTileXByTileY() throws IOException {
+            // Set up
+            final Params params = new Params.Builder(Format.Text).tiles(3, 2).border(1).build();
+            // Exercise
+            final String[] lines = print(params, 1L << 30);
+            // Verify
+            assertEquals(2 * (6 + 2), lines.length);
+            assertEquals(3 * ((4 * 2) + 2), lines[0].length());
+        }
+
+        @Test
+        public void streamedAsciiShouldMatchInMemory() throws IOException {
+            // Set up
+            final Params params = new Params.Builder(Format.Text).tiles(3, 2).border(1).build();
+            // Exercise
+            final String[] streamed = print(params, 1);
+            // Verify
+            assertArrayEquals(print(params, 1L << 30), streamed);
+        }
+
+        @Test
+        public void glyphsShouldHaveAsManyRowsAsAscii() throws IOException {
+            // Set up (half blocks draw two rows of pixels on each line)
+            final Params params = new Params.Builder(Format.Text).tiles(3, 2).border(1).glyphs(Invaders.Glyphs.HalfBlock).build();
+            // Exercise
+            final String[] lines = print(params, 1L << 30);
             // Verify
-            verify(random, never()).setSeed(anyLong());
+            assertEquals(2 * (6 + 2) / 2, lines.length);
         }
     }
 }
\ No newline at end of file
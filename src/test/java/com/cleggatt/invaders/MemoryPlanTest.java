@@ -0,0 +1,200 @@
+package com.cleggatt.invaders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.cleggatt.invaders.Main.Params;
+import com.cleggatt.invaders.Main.Params.Format;
+
+import static com.cleggatt.invaders.TestInvaders.seeded;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class MemoryPlanTest {
+
+    private static final long MB = 1024 * 1024;
+
+    public static class ImageTest {
+        @Test
+        public void smallImageShouldBeInMemory() {
+            // Set up
+            final Params params = new Params.Builder(Format.Image).tiles(10, 10).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 4, 1024 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.InMemory, plan.getDecision());
+            assertEquals(4, plan.getThreads());
+            assertNull(plan.getReport());
+        }
+
+        @Test
+        public void largeImageShouldBeStreamed() {
+            // Set up (8000 x 6000 pixels, which is 183MB in memory)
+            final Params params = new Params.Builder(Format.Image).tiles(1000, 1000).blurRadius(3).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 4, 20 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.Streaming, plan.getDecision());
+            assertTrue(plan.getPeakBytes() <= 20 * MB);
+            assertNotNull(plan.getReport());
+        }
+
+        @Test
+        public void imageTallerThanAnIntShouldBeRejected() {
+            // Set up (8 x 2400000000 pixels, of which a row of tiles would easily fit)
+            final Params params = new Params.Builder(Format.Image).tiles(1, 400000000).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 4, 1024 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.Reject, plan.getDecision());
+            assertTrue(plan.getReport().contains("8 x 2400000000"));
+        }
+
+        @Test
+        public void imageShouldBeRejectedIfNothingFits() {
+            // Set up
+            final Params params = new Params.Builder(Format.Image).tiles(1000, 1000).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 4, MB / 2);
+            // Verify
+            assertEquals(MemoryPlan.Decision.Reject, plan.getDecision());
+            assertTrue(plan.getPeakBytes() > MB / 2);
+            assertTrue(plan.getReport().contains("-Xmx"));
+        }
+
+        @Test
+        public void imageTooLargeForAnArrayShouldBeStreamed() {
+            // Set up (800000 x 600000 pixels, which overflows an int)
+            final Params params = new Params.Builder(Format.Image).tiles(100000, 100000).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 4, Long.MAX_VALUE / 2);
+            // Verify
+            assertEquals(MemoryPlan.Decision.Streaming, plan.getDecision());
+            assertTrue(plan.getPeakBytes() > 0);
+            assertTrue(plan.getPeakBytes() < 100 * MB);
+        }
+
+        @Test
+        public void scalesShouldBeCapped() {
+            // Set up (the tiles are 0.1MB, and scales 4 and 3 are 30.3MB and 17.5MB more, so scale 2, at 8.3MB, does not fit)
+            final Params params = new Params.Builder(Format.Image).tiles(100, 100).scales(new int[]{1, 2, 3, 4}).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 4, 55 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.InMemory, plan.getDecision());
+            assertEquals(2, plan.getThreads());
+            assertNotNull(plan.getReport());
+        }
+
+        @Test
+        public void scalesShouldNotBeCappedBeyondProcessors() {
+            // Set up
+            final Params params = new Params.Builder(Format.Image).tiles(10, 10).scales(new int[]{1, 2, 3, 4}).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 2, 1024 * MB);
+            // Verify
+            assertEquals(2, plan.getThreads());
+            assertNull(plan.getReport());
+        }
+
+        @Test
+        public void deepZoomWorkersShouldBeCapped() {
+            // Set up (each worker holds about 13MB of PNGs)
+            final Params params = new Params.Builder(Format.Image).tiles(100, 100).dzi(true).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 8, 30 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.InMemory, plan.getDecision());
+            assertEquals(2, plan.getThreads());
+            assertNotNull(plan.getReport());
+        }
+    }
+
+    public static class TextTest {
+        @Test
+        public void largeTextShouldBeStreamed() {
+            // Set up (48 million characters, which is 183MB in memory)
+            final Params params = new Params.Builder(Format.Text).tiles(1000, 1000).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 1, 100 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.Streaming, plan.getDecision());
+            assertNotNull(plan.getReport());
+        }
+
+        @Test
+        public void textShouldBeSizedByRowsOfTiles() {
+            // Set up (a single row of 800000 x 8 characters, which is 12MB in memory)
+            final Params params = new Params.Builder(Format.Text).tiles(100000, 1).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 1, 100 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.InMemory, plan.getDecision());
+            assertEquals(((800000 + 1) * 6L) * 4, plan.getPeakBytes());
+        }
+
+        @Test
+        public void glyphsShouldAlwaysBeWrittenALineAtATime() {
+            // Set up
+            final Params params = new Params.Builder(Format.Text).tiles(1000, 1000).glyphs(Invaders.Glyphs.HalfBlock).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 1, 100 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.InMemory, plan.getDecision());
+            assertNull(plan.getReport());
+        }
+
+        @Test
+        public void colouredTextShouldOnlyHoldPicks() {
+            // Set up (a million tiles, which would be 313MB of colour tables)
+            final Params params = new Params.Builder(Format.Text).tiles(1000, 1000).glyphs(Invaders.Glyphs.HalfBlock).ansi(true).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 1, 100 * MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.InMemory, plan.getDecision());
+            assertTrue(plan.getPeakBytes() < 100 * MB);
+        }
+
+        @Test
+        public void textShouldBeRejectedIfNothingFits() {
+            // Set up
+            final Params params = new Params.Builder(Format.Text).tiles(1000, 1000).ansi(true).build();
+            // Exercise
+            final MemoryPlan plan = MemoryPlan.plan(params, 1, MB);
+            // Verify
+            assertEquals(MemoryPlan.Decision.Reject, plan.getDecision());
+        }
+    }
+
+    public static class RenderTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        private File render(Params.Builder builder, String name, long available) throws IOException {
+            final String output = new File(folder.getRoot(), name).getPath();
+            final Params params = builder.outputFile(output).build();
+            final Invaders invader = seeded(params.getX(), params.getY(), params.getScale(), params.getPalette(), params.getColourMode());
+            ImageOutput.write(invader, params, MemoryPlan.plan(params, 1, available));
+            return new File(output);
+        }
+
+        @Test
+        public void streamedImageShouldEqualImageRenderedInMemory() throws IOException {
+            // Set up
+            final Params.Builder builder = new Params.Builder(Format.Image).tiles(30, 20).scale(2).border(1).pixels(500, 300)
+                    .blurRadius(3).edge(Invaders.Edge.Round).colourMode(Invaders.ColourMode.Cell);
+            final File expected = render(builder, "expected.png", 1024 * MB);
+            // Exercise
+            final File actual = render(builder, "actual.png", 2 * MB);
+            // Verify
+            assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.cleggatt.invaders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.cleggatt.invaders.TestInvaders.assertImageEquals;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class MosaicTest {
+
+    private static final Palette PALETTE = new Palette(0xFF0000, 0x00FF00);
+
+    public static class MatchTest {
+        @Test
+        public void blackShouldMatchEmptyInvader() {
+            // Set up
+            final Mosaic mosaic = new Mosaic(2, 2, 1, 0, PALETTE);
+            // Exercise
+            final int match = mosaic.match(0x000000);
+            // Verify
+            assertEquals(0, Mosaic.getCount(match));
+        }
+
+        @Test
+        public void colourShouldMatchCoverage() {
+            // Set up (tiles of 4 x 2 pixels, so each pixel set in the un-mirrored half covers a quarter of the tile)
+            final Mosaic mosaic = new Mosaic(2, 2, 1, 0, PALETTE);
+            // Exercise
+            final int full = mosaic.match(0xFF0000);
+            final int half = mosaic.match(0x008000);
+            // Verify
+            assertEquals(4, Mosaic.getCount(full));
+            assertEquals(0, Mosaic.getColour(full));
+            assertEquals(2, Mosaic.getCount(half));
+            assertEquals(1, Mosaic.getColour(half));
+        }
+
+        @Test
+        public void borderShouldReduceCoverage() {
+            // Set up (tiles of 6 x 4 pixels, so a full invader only covers a third of the tile)
+            final Mosaic mosaic = new Mosaic(2, 2, 1, 1, PALETTE);
+            // Exercise
+            final int match = mosaic.match(0x550000);
+            // Verify
+            assertEquals(4, Mosaic.getCount(match));
+            assertEquals(0, Mosaic.getColour(match));
+        }
+
+        @Test
+        public void scaleShouldIncreaseCoverage() {
+            // Set up (tiles of 10 x 6 pixels at a scale of 2, so each pixel set in the un-mirrored half covers 8 of 60)
+            final Mosaic mosaic = new Mosaic(2, 2, 2, 1, PALETTE);
+            // Exercise
+            final int match = mosaic.match(0x660000);
+            // Verify
+            assertEquals(3, Mosaic.getCount(match));
+            assertEquals(0, Mosaic.getColour(match));
+        }
+
+        @Test
+        public void cellsShouldMatchAverageColour() throws IOException {
+            // Set up (a green half and a red half, with a dark row along the bottom of the red half)
+            final PixelImage image = new PixelImage(8, 4);
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 8; x++) {
+                    image.getPixels()[(y * 8) + x] = (x < 4) ? 0xFF00FF00 : ((y < 2) ? 0xFFFF0000 : Invaders.BLACK);
+                }
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
+            // Exercise
+            final int[] matches;
+            try {
+                matches = new Mosaic(2, 2, 1, 0, PALETTE).match(image, 2, 2, executor);
+            } finally {
+                executor.shutdownNow();
+            }
+            // Verify
+            assertEquals(4, matches.length);
+            assertEquals(1, Mosaic.getColour(matches[0]));
+            assertEquals(4, Mosaic.getCount(matches[0]));
+            assertEquals(0, Mosaic.getColour(matches[1]));
+            assertEquals(4, Mosaic.getCount(matches[1]));
+            assertEquals(1, Mosaic.getColour(matches[2]));
+            assertEquals(0, Mosaic.getCount(matches[3]));
+        }
+    }
+
+    public static class ReadTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void pixelsShouldBeRead() throws IOException {
+            // Set up
+            final PixelImage expected = new PixelImage(3, 2);
+            for (int i = 0; i < 6; i++) {
+                expected.getPixels()[i] = Invaders.BLACK | (i * 0x102030);
+            }
+            final File file = folder.newFile("image.png");
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                PngEncoder.write(expected, false, out);
+            } finally {
+                out.close();
+            }
+            // Exercise
+            final PixelImage actual = Mosaic.read(file);
+            // Verify
+            assertImageEquals(expected, actual);
+        }
+
+        @Test(expected = IOException.class)
+        public void otherFilesShouldBeInvalid() throws IOException {
+            // Set up
+            final File file = folder.newFile();
+            // Exercise (and verify by exception)
+            Mosaic.read(file);
+        }
+    }
+
+    public static class GridTest {
+        @Test
+        public void invadersShouldHaveMatchedPixelsAndColour() {
+            // Set up
+            final Invaders invaders = new Invaders(4, 6, 1, RandomSources.Algorithm.Jdk.create(42), null, PALETTE, Invaders.ColourMode.Flat);
+            final int[] matches = new int[25];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = (i << 16) | (i % 2);
+            }
+            // Exercise
+            final PixelImage image = invaders.getPixelInvaders(invaders.getTileGrid(matches, 25, 1), 1, 0, Invaders.Edge.Square);
+            // Verify
+            for (int i = 0; i < matches.length; i++) {
+                int set = 0;
+                for (int y = 0; y < 6; y++) {
+                    for (int x = 0; x < 8; x++) {
+                        final int pixel = image.getPixel((i * 8) + x, y);
+                        if (pixel != Invaders.BLACK) {
+                            assertEquals(PALETTE.get(i % 2) | Invaders.BLACK, pixel);
+                            set++;
+                        }
+                    }
+                }
+                assertEquals(Integer.toString(i), i * 2, set);
+            }
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void otherColourModesShouldBeInvalid() {
+            // Set up
+            final Invaders invaders = new Invaders(4, 6, 1, RandomSources.Algorithm.Jdk.create(42), null, PALETTE, Invaders.ColourMode.Cell);
+            // Exercise (and verify by exception)
+            invaders.getTileGrid(new int[1], 1, 1);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class OffHeapRasterTest {
+
+    public static class PixelTest {
+        @Test
+        public void newRasterShouldBeZeroed() throws IOException {
+            // Set up
+            final OffHeapRaster raster = new OffHeapRaster(3, 2, null);
+            try {
+                // Exercise
+                final int[] row = new int[3];
+                raster.getRow(1, row);
+                // Verify
+                assertArrayEquals(new int[]{0, 0, 0}, row);
+            } finally {
+                raster.close();
+            }
+        }
+
+        @Test
+        public void fillRectShouldSpanChunks() throws IOException {
+            // Set up (two rows per chunk)
+            final OffHeapRaster raster = new OffHeapRaster(4, 5, null, 4 * 4 * 2);
+            try {
+                // Exercise
+                raster.fillRect(1, 1, 2, 3, 0xFF00FF00);
+                raster.setPixel(3, 4, 0xFFFF0000);
+                // Verify
+                final int[] row = new int[4];
+                raster.getRow(0, row);
+                assertArrayEquals(new int[]{0, 0, 0, 0}, row);
+                for (int y = 1; y < 4; y++) {
+                    raster.getRow(y, row);
+                    assertArrayEquals(new int[]{0, 0xFF00FF00, 0xFF00FF00, 0}, row);
+                }
+                assertEquals(0xFFFF0000, raster.getPixel(3, 4));
+                assertEquals(0, raster.getPixel(2, 4));
+            } finally {
+                raster.close();
+            }
+        }
+    }
+
+    public static class FileTest {
+        @Test
+        public void closeShouldDeleteFile() throws IOException {
+            // Set up
+            final File directory = new File(System.getProperty("java.io.tmpdir"), "invaders-offheap-test");
+            assertTrue(directory.isDirectory() || directory.mkdirs());
+            final OffHeapRaster raster = new OffHeapRaster(2, 2, directory);
+            assertEquals(1, directory.list().length);
+            // Exercise
+            raster.close();
+            // Verify
+            assertEquals(0, directory.list().length);
+            assertTrue(directory.delete());
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void emptyRasterShouldThrowIllegalArgumentException() throws IOException {
+            // Exercise (and verify by exception)
+            new OffHeapRaster(0, 2, null);
+        }
+    }
+}
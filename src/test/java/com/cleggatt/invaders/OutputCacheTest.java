@@ -0,0 +1,161 @@
+package com.cleggatt.invaders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import com.cleggatt.invaders.Main.Params;
+import com.cleggatt.invaders.Main.Params.Format;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class OutputCacheTest {
+
+    private static byte[] read(OutputCache cache, String key) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return cache.copyTo(key, Channels.newChannel(out)) ? out.toByteArray() : null;
+    }
+
+    public static class KeyTest {
+        @Test
+        public void keyShouldBeStable() {
+            // Set up
+            final Params params = new Params.Builder(Format.Image).seed(42L).blurRadius(3).outputFile("a.png").build();
+            final Params same = new Params.Builder(Format.Image).seed(42L).blurRadius(3).outputFile("b.png").build();
+            // Exercise
+            final String key = OutputCache.key(params, "1.0");
+            // Verify
+            assertEquals(64, key.length());
+            assertEquals(key, OutputCache.key(same, "1.0"));
+        }
+
+        @Test
+        public void keyShouldDependOnParams() {
+            // Set up
+            final Params params = new Params.Builder(Format.Image).seed(42L).build();
+            final String key = OutputCache.key(params, "1.0");
+            // Exercise / Verify
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Svg).seed(42L).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Image).seed(43L).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Image).seed(42L).scale(2).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Image).seed(42L).tiles(2, 1).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Image).seed(42L).blurRadius(1).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Image).seed(42L).palette(new Palette(0xFF0000)).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(new Params.Builder(Format.Image).seed(42L).colourMode(Invaders.ColourMode.Cell).build(), "1.0"));
+            assertNotEquals(key, OutputCache.key(params, "1.1"));
+        }
+    }
+
+    public static class EntryTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void missShouldCopyNothing() throws IOException {
+            // Set up
+            final OutputCache cache = new OutputCache(folder.newFolder("cache"), 1024);
+            // Exercise / Verify
+            assertNull(read(cache, "missing"));
+        }
+
+        @Test
+        public void putShouldBeCopied() throws IOException {
+            // Set up
+            final OutputCache cache = new OutputCache(folder.newFolder("cache"), 1024);
+            final File source = folder.newFile("source");
+            final FileOutputStream out = new FileOutputStream(source);
+            try {
+                out.write(new byte[]{1, 2, 3});
+            } finally {
+                out.close();
+            }
+            // Exercise
+            cache.put("file", source);
+            cache.put("bytes", new byte[]{4, 5});
+            // Verify
+            assertArrayEquals(new byte[]{1, 2, 3}, read(cache, "file"));
+            assertArrayEquals(new byte[]{4, 5}, read(cache, "bytes"));
+        }
+
+        @Test
+        public void hitShouldReplaceTargetFile() throws IOException {
+            // Set up
+            final OutputCache cache = new OutputCache(folder.newFolder("cache"), 1024);
+            cache.put("key", new byte[]{1, 2});
+            final File target = folder.newFile("target");
+            final FileOutputStream out = new FileOutputStream(target);
+            try {
+                out.write(new byte[]{9, 9, 9, 9});
+            } finally {
+                out.close();
+            }
+            // Exercise
+            final boolean hit = cache.copyTo("key", target);
+            // Verify
+            assertTrue(hit);
+            assertEquals(2, target.length());
+        }
+
+        @Test
+        public void committedEntryShouldBeCopied() throws IOException {
+            // Set up
+            final OutputCache cache = new OutputCache(folder.newFolder("cache"), 1024);
+            final OutputCache.Entry entry = cache.create("key");
+            // Exercise
+            try {
+                entry.write(new byte[]{1, 2});
+                entry.write(3);
+                entry.commit();
+            } finally {
+                entry.close();
+            }
+            // Verify
+            assertArrayEquals(new byte[]{1, 2, 3}, read(cache, "key"));
+        }
+
+        @Test
+        public void uncommittedEntryShouldBeDiscarded() throws IOException {
+            // Set up
+            final File directory = folder.newFolder("cache");
+            final OutputCache cache = new OutputCache(directory, 1024);
+            final OutputCache.Entry entry = cache.create("key");
+            // Exercise
+            try {
+                entry.write(new byte[]{1, 2});
+            } finally {
+                entry.close();
+            }
+            // Verify
+            assertNull(read(cache, "key"));
+            assertEquals(0, directory.list().length);
+        }
+
+        @Test
+        public void leastRecentlyUsedShouldBeEvicted() throws IOException {
+            // Set up
+            final File directory = folder.newFolder("cache");
+            final OutputCache cache = new OutputCache(directory, 10);
+            cache.put("a", new byte[4]);
+            cache.put("b", new byte[4]);
+            new File(directory, "a.out").setLastModified(1000);
+            new File(directory, "b.out").setLastModified(2000);
+            // Using an entry makes it the most recently used
+            assertNotNull(read(cache, "a"));
+            // Exercise
+            cache.put("c", new byte[4]);
+            // Verify
+            assertNotNull(read(cache, "a"));
+            assertNull(read(cache, "b"));
+            assertNotNull(read(cache, "c"));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class PaletteTest {
+
+    public static class ParseTest {
+        @Test
+        public void parseShouldAcceptCommasWhitespaceAndHashes() {
+            // Exercise
+            final Palette palette = Palette.parse(" ff0000, #00FF00\n0000ff ");
+            // Verify
+            assertEquals(new Palette(0xFF0000, 0x00FF00, 0x0000FF), palette);
+        }
+
+        @Test
+        public void coloursShouldBeOpaque() {
+            // Exercise
+            final Palette palette = new Palette(0x123456);
+            // Verify
+            assertEquals(0xFF123456, palette.get(0));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void invalidColourShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            Palette.parse("ff0000,green");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void emptyPaletteShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            Palette.parse(" ");
+        }
+    }
+
+    public static class LoadTest {
+        @Test
+        public void loadShouldParseFile() throws IOException {
+            // Set up
+            final File file = File.createTempFile("palette", ".txt");
+            file.deleteOnExit();
+            final OutputStream out = new FileOutputStream(file);
+            out.write("#ff0000\n#00ff00\n".getBytes("UTF-8"));
+            out.close();
+            // Exercise
+            final Palette palette = Palette.load(file);
+            // Verify
+            assertEquals(new Palette(0xFF0000, 0x00FF00), palette);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class PixelImageTest {
+
+    public static class ConstructorTest {
+        @Test(expected = IllegalArgumentException.class)
+        public void emptyImageShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            new PixelImage(0, 1);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void tooManyPixelsShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            new PixelImage(65536, 65536);
+        }
+    }
+
+    public static class RowTest {
+        @Test
+        public void getRowShouldCopyRow() {
+            // Set up
+            final PixelImage image = new PixelImage(new int[]{1, 2, 3, 4, 5, 6}, 3, 2);
+            final int[] row = new int[3];
+            // Exercise
+            image.getRow(1, row);
+            // Verify
+            assertArrayEquals(new int[]{4, 5, 6}, row);
+            assertEquals(6, image.getPixel(2, 1));
+        }
+    }
+
+    public static class BufferedImagesTest {
+        @Test
+        public void wrapShouldSharePixels() {
+            // Set up
+            final PixelImage image = new PixelImage(3, 2);
+            // Exercise
+            final BufferedImage wrapped = BufferedImages.wrap(image);
+            image.getPixels()[4] = 0xFF00FF00;
+            // Verify
+            assertEquals(BufferedImage.TYPE_INT_ARGB, wrapped.getType());
+            assertEquals(3, wrapped.getWidth());
+            assertEquals(2, wrapped.getHeight());
+            assertEquals(0xFF00FF00, wrapped.getRGB(1, 1));
+        }
+    }
+}
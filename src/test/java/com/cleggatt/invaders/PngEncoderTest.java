@@ -0,0 +1,98 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class PngEncoderTest {
+
+    private static int[] randomPixels(int size) {
+        final Random random = new Random(size);
+        final int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static BufferedImage encodeAndDecode(int[] pixels, int width, int height, boolean alpha) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngEncoder.write(new PixelImage(pixels, width, height), alpha, out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    public static class EncodeTest {
+        @Test
+        public void rgbaShouldRoundTrip() throws IOException {
+            // Set up
+            final int[] pixels = randomPixels(7 * 5);
+            // Exercise
+            final BufferedImage image = encodeAndDecode(pixels, 7, 5, true);
+            // Verify
+            assertEquals(7, image.getWidth());
+            assertEquals(5, image.getHeight());
+            assertArrayEquals(pixels, image.getRGB(0, 0, 7, 5, null, 0, 7));
+        }
+
+        @Test
+        public void rgbShouldIgnoreAlpha() throws IOException {
+            // Set up
+            final int[] pixels = randomPixels(7 * 5);
+            // Exercise
+            final BufferedImage image = encodeAndDecode(pixels, 7, 5, false);
+            // Verify
+            final int[] decoded = image.getRGB(0, 0, 7, 5, null, 0, 7);
+            for (int i = 0; i < pixels.length; i++) {
+                assertEquals(pixels[i] | 0xFF000000, decoded[i]);
+            }
+        }
+
+        @Test
+        public void imageLargerThanOneChunkShouldRoundTrip() throws IOException {
+            // Set up
+            final int[] pixels = randomPixels(300 * 200);
+            // Exercise
+            final BufferedImage image = encodeAndDecode(pixels, 300, 200, true);
+            // Verify
+            assertArrayEquals(pixels, image.getRGB(0, 0, 300, 200, null, 0, 300));
+        }
+    }
+    public static class EncoderTest {
+        @Test
+        public void reusedEncoderShouldWriteSamePngs() throws IOException {
+            // Set up (a large image, then a smaller one into the grown buffers, then the large one again)
+            final PixelImage large = new PixelImage(randomPixels(300 * 200), 300, 200);
+            final PixelImage small = new PixelImage(randomPixels(7 * 5), 7, 5);
+            final PngEncoder.Encoder encoder = new PngEncoder.Encoder();
+            final ByteArrayOutputStream[] outs = new ByteArrayOutputStream[3];
+            // Exercise
+            try {
+                final PixelImage[] images = new PixelImage[]{large, small, large};
+                for (int i = 0; i < images.length; i++) {
+                    outs[i] = new ByteArrayOutputStream();
+                    encoder.write(images[i], i == 1, outs[i]);
+                }
+            } finally {
+                encoder.end();
+            }
+            // Verify
+            final ByteArrayOutputStream largeOut = new ByteArrayOutputStream();
+            PngEncoder.write(large, false, largeOut);
+            final ByteArrayOutputStream smallOut = new ByteArrayOutputStream();
+            PngEncoder.write(small, true, smallOut);
+            assertArrayEquals(largeOut.toByteArray(), outs[0].toByteArray());
+            assertArrayEquals(smallOut.toByteArray(), outs[1].toByteArray());
+            assertArrayEquals(largeOut.toByteArray(), outs[2].toByteArray());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class RandomSourceTest {
+
+    public static class JdkRandomSourceTest {
+        @Test
+        public void nextIntShouldMatchJavaUtilRandom() {
+            // Set up
+            final Random expected = new Random(42);
+            final JdkRandomSource source = new JdkRandomSource(42);
+            // Exercise and verify
+            for (int i = 0; i < 1000; i++) {
+                final int bound = (i % 2 == 0) ? Invaders.COLORS.length : 16;
+                assertEquals(expected.nextInt(bound), source.nextInt(bound));
+            }
+        }
+
+        @Test
+        public void nextLongShouldMatchScaledNextDouble() {
+            // Set up
+            final long bound = 1L << 24;
+            final Random expected = new Random(-7);
+            final JdkRandomSource source = new JdkRandomSource(-7);
+            // Exercise and verify
+            for (int i = 0; i < 1000; i++) {
+                assertEquals((long) (expected.nextDouble() * bound), source.nextLong(bound));
+            }
+        }
+
+        @Test
+        public void invadersShouldMatchJavaUtilRandom() {
+            // Set up
+            final Invaders expected = new Invaders(4, 6, 1, new Random(11), new Random(12));
+            final Invaders actual = new Invaders(4, 6, 1, new JdkRandomSource(11), new JdkRandomSource(12));
+            // Exercise and verify
+            assertArrayEquals(expected.getPixelInvaders(8, 8, 1).getPixels(), actual.getPixelInvaders(8, 8, 1).getPixels());
+        }
+    }
+
+    public static class SplitMix64Test {
+        @Test
+        public void shouldMatchReferenceOutput() {
+            // Set up
+            final SplitMix64 source = new SplitMix64(0);
+            // Exercise and verify
+            assertEquals(0xE220A8397B1DCDAFL, source.nextLong());
+            assertEquals(0x6E789E6AA1B965F4L, source.nextLong());
+            assertEquals(0x06C45D188009454FL, source.nextLong());
+        }
+
+        @Test
+        public void reseededShouldMatchNew() {
+            // Set up
+            final SplitMix64 expected = new SplitMix64(42);
+            final SplitMix64 source = new SplitMix64(7);
+            source.nextLong();
+            // Exercise
+            source.setSeed(42);
+            // Verify
+            for (int i = 0; i < 10; i++) {
+                assertEquals(expected.nextLong(), source.nextLong());
+            }
+        }
+    }
+
+    public static class Xoshiro256StarStarTest {
+        @Test
+        public void shouldMatchReferenceOutput() {
+            // Set up
+            final Xoshiro256StarStar source = new Xoshiro256StarStar(1, 2, 3, 4);
+            // Exercise and verify
+            assertEquals(11520L, source.nextLong());
+            assertEquals(0L, source.nextLong());
+            assertEquals(1509978240L, source.nextLong());
+        }
+    }
+
+    public static class BoundedTest {
+        @Test
+        public void nextIntShouldBeWithinBoundAndCoverIt() {
+            // Set up
+            final RandomSource source = new Xoshiro256StarStar(3);
+            final int[] counts = new int[Invaders.COLORS.length];
+            // Exercise
+            for (int i = 0; i < 9000; i++) {
+                counts[source.nextInt(counts.length)]++;
+            }
+            // Verify
+            for (int count : counts) {
+                assertTrue(count > 800 && count < 1200);
+            }
+        }
+
+        @Test
+        public void nextLongShouldBeWithinBound() {
+            // Set up
+            final RandomSource source = new SplitMix64(5);
+            final long bound = (1L << 62) + 1;
+            // Exercise and verify
+            for (int i = 0; i < 1000; i++) {
+                final long value = source.nextLong(bound);
+                assertTrue(value >= 0 && value < bound);
+            }
+        }
+
+        @Test
+        public void nextLongWithPowerOfTwoBoundShouldMask() {
+            // Set up
+            final SplitMix64 expected = new SplitMix64(9);
+            final RandomSource source = new SplitMix64(9);
+            // Exercise and verify
+            assertEquals(expected.nextLong() & 0xFF, source.nextLong(256));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void zeroBoundShouldThrowIllegalArgumentException() {
+            // Exercise (and verify by exception)
+            new SplitMix64(1).nextInt(0);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class SeedSearchTest {
+
+    // The rows of a tile of the text invaders generated with a seed
+    private static List<String> getTile(long seed, int tile) {
+        final Invaders invaders = new Invaders(4, 6, 1, RandomSources.Algorithm.Jdk.create(seed), RandomSources.Algorithm.Jdk.create(0));
+        final String[] lines = invaders.getTextInvaders(tile + 1, 1, 0).split("\n");
+        final List<String> rows = new ArrayList<String>();
+        for (int y = 0; y < 6; y++) {
+            rows.add(lines[y].substring(tile * 8, (tile + 1) * 8));
+        }
+        return rows;
+    }
+
+    public static class PatternTest {
+        @Test
+        public void halfShouldBeReadAsPixels() {
+            // Exercise
+            final long pattern = SeedSearch.parsePattern(Arrays.asList("*..*", "", " *"), 4, 6);
+            // Verify
+            assertEquals(0x009L | (0x2L << 8), pattern);
+        }
+
+        @Test
+        public void fullShouldBeReadAsHalf() {
+            // Exercise
+            final long pattern = SeedSearch.parsePattern(Arrays.asList("*..**..*", "", " *    *", "", ""), 4, 6);
+            // Verify
+            assertEquals(0x009L | (0x2L << 8), pattern);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void unmirroredShouldBeInvalid() {
+            // Exercise (and verify by exception)
+            SeedSearch.parsePattern(Arrays.asList("*..*", "*......."), 4, 6);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void tooHighShouldBeInvalid() {
+            // Exercise (and verify by exception)
+            SeedSearch.parsePattern(Arrays.asList("*", "*", "*", "*", "*", "*", "*"), 4, 6);
+        }
+    }
+
+    public static class SearchTest {
+        @Test
+        public void seedShouldBeFoundAtTile() throws IOException {
+            // Set up
+            final long pattern = SeedSearch.parsePattern(getTile(1234, 2), 4, 6);
+            final SeedSearch search = new SeedSearch(4, 6, pattern, RandomSources.Algorithm.Jdk, 2);
+            // Exercise
+            final Long seed = search.search(1000, 1000, 1, 1000, null);
+            // Verify
+            assertEquals(Long.valueOf(1234), seed);
+            assertEquals(235, search.getSearched());
+        }
+
+        @Test
+        public void lowestSeedShouldBeFoundByEveryWorker() throws IOException {
+            // Set up (a blank invader at the first tile, which is likelier than any other)
+            final SeedSearch search = new SeedSearch(2, 2, 0, RandomSources.Algorithm.Jdk, 0);
+            Long expected = null;
+            for (long seed = 0; expected == null; seed++) {
+                if (search.matches(seed)) {
+                    expected = seed;
+                }
+            }
+            // Exercise
+            final Long seed = search.search(0, Long.MAX_VALUE, 4, 1000, null);
+            // Verify
+            assertEquals(expected, seed);
+        }
+
+        @Test
+        public void limitShouldBeSearched() throws IOException {
+            // Set up
+            final long pattern = SeedSearch.parsePattern(getTile(1234, 0), 4, 6);
+            final SeedSearch search = new SeedSearch(4, 6, pattern, RandomSources.Algorithm.Jdk, 0);
+            // Exercise
+            final Long seed = search.search(1235, 20000, 2, 1000, null);
+            // Verify
+            assertNull(seed);
+            assertEquals(20000, search.getSearched());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.cleggatt.invaders;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.cleggatt.invaders.Main.Params;
+import com.cleggatt.invaders.Main.Params.Format;
+
+import static com.cleggatt.invaders.TestInvaders.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class ShardedPngTest {
+
+    private static long adler32(byte[] bytes, int offset, int length) {
+        final Adler32 adler = new Adler32();
+        adler.update(bytes, offset, length);
+        return adler.getValue();
+    }
+
+    // The concatenated data of the IDAT chunks of a PNG
+    private static byte[] readImageData(File png) throws IOException {
+        final DataInputStream in = new DataInputStream(new FileInputStream(png));
+        try {
+            in.skipBytes(8);
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            while (true) {
+                final int length = in.readInt();
+                final byte[] type = new byte[4];
+                in.readFully(type);
+                final byte[] chunk = new byte[length];
+                in.readFully(chunk);
+                in.readInt();
+                final String name = new String(type, "US-ASCII");
+                if (name.equals("IDAT")) {
+                    data.write(chunk);
+                } else if (name.equals("IEND")) {
+                    return data.toByteArray();
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertPixels(RowSource expected, File png) throws IOException {
+        final BufferedImage image = ImageIO.read(png);
+        assertEquals(expected.getWidth(), image.getWidth());
+        assertEquals(expected.getHeight(), image.getHeight());
+        final int[] row = new int[expected.getWidth()];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            expected.getRow(y, row);
+            for (int x = 0; x < row.length; x++) {
+                assertEquals(String.format("(%d, %d)", x, y), row[x] | 0xFF000000, image.getRGB(x, y));
+            }
+        }
+    }
+
+    public static class AdlerTest {
+        @Test
+        public void combinedShouldMatchWhole() {
+            // Set up
+            final byte[] bytes = new byte[200000];
+            new Random(1).nextBytes(bytes);
+            for (int split : new int[]{0, 1, 65521, 100000, 199999, 200000}) {
+                // Exercise
+                final long combined = ShardedPng.combineAdler32(adler32(bytes, 0, split), adler32(bytes, split, bytes.length - split), bytes.length - split);
+                // Verify
+                assertEquals(Integer.toString(split), adler32(bytes, 0, bytes.length), combined);
+            }
+        }
+    }
+
+    public static class JoinTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void joinedShardsShouldBeValidZlibStream() throws IOException, DataFormatException {
+            // Set up
+            final PixelImage image = seeded(4, 6, 2).getPixelInvaders(5, 9, 1);
+            final int[] bands = new int[]{0, 14, 15, 90, image.getHeight()};
+            final List<File> shards = new ArrayList<File>();
+            for (int i = 0; i < bands.length - 1; i++) {
+                shards.add(folder.newFile());
+                ShardedPng.writeShard(image, bands[i], bands[i + 1] - bands[i], i == bands.length - 2, shards.get(i));
+            }
+            final File png = folder.newFile();
+            // Exercise
+            ShardedPng.join(shards, png);
+            // Verify (inflating checks the combined checksum)
+            final byte[] data = readImageData(png);
+            final Inflater inflater = new Inflater();
+            inflater.setInput(data);
+            final byte[] scanlines = new byte[(1 + (image.getWidth() * 3)) * image.getHeight()];
+            assertEquals(scanlines.length, inflater.inflate(scanlines));
+            assertTrue(inflater.finished());
+            assertEquals(0, inflater.getRemaining());
+            inflater.end();
+            assertPixels(image, png);
+        }
+
+        @Test(expected = IOException.class)
+        public void unfinishedLastShardShouldBeInvalid() throws IOException {
+            // Set up
+            final PixelImage image = seeded(4, 6, 2).getPixelInvaders(2, 2, 0);
+            final List<File> shards = new ArrayList<File>();
+            shards.add(folder.newFile());
+            ShardedPng.writeShard(image, 0, image.getHeight(), false, shards.get(0));
+            // Exercise (and verify by exception)
+            ShardedPng.join(shards, folder.newFile());
+        }
+    }
+
+    public static class ShardTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        private void assertShardsMatch(Params.Builder builder, int numWide, int numHigh, int shards) throws IOException {
+            final String output = new File(folder.getRoot(), "invader.png").getPath();
+            final List<File> files = new ArrayList<File>();
+            for (int i = 0; i < shards; i++) {
+                final Params params = builder.tiles(numWide, numHigh).outputFile(output).shard(i, shards).build();
+                ShardedPng.writeShard(seeded(4, 6, 2), params);
+                files.add(ShardedPng.getShardFile(output, i));
+            }
+            ShardedPng.join(files, new File(output));
+
+            final Params params = builder.build();
+            final PixelImage whole = seeded(4, 6, 2).getPixelInvaders(numWide, numHigh, params.getBorder(), params.getEdge());
+            assertPixels(ImageOutput.blur(whole, params.getBlurRadius()), new File(output));
+        }
+
+        @Test
+        public void shardsShouldMatchSingleProcess() throws IOException {
+            // Exercise / Verify
+            assertShardsMatch(new Params.Builder(Format.Image).border(1).edge(Invaders.Edge.Round), 7, 10, 3);
+        }
+
+        @Test
+        public void blurredShardsShouldMatchSingleProcess() throws IOException {
+            // Exercise / Verify (a radius higher than a tile, so more than one row of tiles either side is needed)
+            assertShardsMatch(new Params.Builder(Format.Image).blurRadius(15), 3, 8, 4);
+        }
+
+        @Test
+        public void rowsShouldBeSplitEvenly() {
+            // Exercise / Verify
+            assertEquals(0, ShardedPng.getFirstRow(0, 3, 10));
+            assertEquals(3, ShardedPng.getFirstRow(1, 3, 10));
+            assertEquals(6, ShardedPng.getFirstRow(2, 3, 10));
+            assertEquals(10, ShardedPng.getFirstRow(3, 3, 10));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void rowsTallerThanAnIntShouldBeInvalid() {
+            // Exercise (and verify by exception) (tiles 14 pixels high, so 5600000000 in all)
+            new TileRows(seeded(4, 6, 2), 1, 400000000, 1, Invaders.Edge.Square);
+        }
+    }
+
+    public static class ProcessTest {
+        @Rule
+        public final TemporaryFolder folder = new TemporaryFolder();
+
+        @Test
+        public void processesShouldMatchSingleProcess() throws Exception {
+            // Set up
+            final File single = new File(folder.getRoot(), "single.png");
+            final File sharded = new File(folder.getRoot(), "sharded.png");
+            final String[] args = new String[]{"-p", "-tileX", "6", "-tileY", "5", "-seed", "42", "-o", sharded.getPath(), "-processes", "2"};
+            // Exercise
+            ShardedPng.render(args, Main.parseParams(args));
+            // Verify
+            Main.main(new String[]{"-p", "-tileX", "6", "-tileY", "5", "-seed", "42", "-o", single.getPath()});
+            final BufferedImage expected = ImageIO.read(single);
+            final BufferedImage actual = ImageIO.read(sharded);
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            assertArrayEquals(expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()),
+                    actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0, actual.getWidth()));
+            assertFalse(ShardedPng.getShardFile(sharded.getPath(), 0).exists());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class SvgCanvasTest {
+
+    private static final boolean[][] PIXELS = new boolean[][]{{false, true, true, false}, {true, false, false, true}};
+
+    private static int[][] colours(int colour) {
+        final int[][] colours = new int[PIXELS.length][PIXELS[0].length];
+        for (int[] row : colours) {
+            Arrays.fill(row, colour);
+        }
+        return colours;
+    }
+
+    private static int count(String haystack, String needle) {
+        int count = 0;
+        int pos = haystack.indexOf(needle);
+        while (pos >= 0) {
+            count++;
+            pos = haystack.indexOf(needle, pos + 1);
+        }
+        return count;
+    }
+
+    public static class SymbolTest {
+        @Test
+        public void repeatedInvaderShouldShareSymbol() {
+            // Set up
+            final SvgCanvas canvas = new SvgCanvas(2, 2, 1, 2, 1, 0, 0, 0, 0);
+            // Exercise
+            canvas.drawInvader(0b0110, PIXELS, 0, 0, colours(0x00FF00));
+            canvas.drawInvader(0b0110, PIXELS, 4, 0, colours(0xFF0000));
+            final String svg = canvas.getInvader();
+            // Verify
+            assertEquals(1, count(svg, "<symbol "));
+            assertEquals(2, count(svg, "<use "));
+            assertTrue(svg.contains("<use xlink:href=\"#i6\" x=\"0\" y=\"0\" width=\"4\" height=\"2\" fill=\"#00ff00\"/>"));
+            assertTrue(svg.contains("<use xlink:href=\"#i6\" x=\"4\" y=\"0\" width=\"4\" height=\"2\" fill=\"#ff0000\"/>"));
+        }
+
+        @Test
+        public void horizontalRunsShouldBeMerged() {
+            // Set up
+            final SvgCanvas canvas = new SvgCanvas(2, 2, 1, 1, 1, 0, 0, 0, 0);
+            // Exercise
+            canvas.drawInvader(0b0110, PIXELS, 0, 0, colours(0x00FF00));
+            final String svg = canvas.getInvader();
+            // Verify
+            assertEquals(3, count(svg, "<rect x="));
+            assertTrue(svg.contains("<rect x=\"1\" y=\"0\" width=\"2\" height=\"1\"/>"));
+            assertTrue(svg.contains("<rect x=\"0\" y=\"1\" width=\"1\" height=\"1\"/>"));
+            assertTrue(svg.contains("<rect x=\"3\" y=\"1\" width=\"1\" height=\"1\"/>"));
+        }
+    }
+
+    public static class ColourTest {
+        @Test
+        public void multipleColoursShouldBeDefinedInSymbol() {
+            // Set up
+            final SvgCanvas canvas = new SvgCanvas(2, 2, 1, 2, 1, 0, 0, 0, 0);
+            final int[][] colours = new int[][]{{0, 0x00FF00, 0x00FF00, 0}, {0xFF0000, 0, 0, 0xFF0000}};
+            // Exercise
+            canvas.drawInvader(0b0110, PIXELS, 0, 0, colours);
+            canvas.drawInvader(0b0110, PIXELS, 4, 0, colours);
+            final String svg = canvas.getInvader();
+            // Verify
+            assertEquals(1, count(svg, "<symbol "));
+            assertTrue(svg.contains("<rect x=\"1\" y=\"0\" width=\"2\" height=\"1\" fill=\"#00ff00\"/>"));
+            assertTrue(svg.contains("<rect x=\"0\" y=\"1\" width=\"1\" height=\"1\" fill=\"#ff0000\"/>"));
+            assertTrue(svg.contains("<use xlink:href=\"#i6-0\" x=\"4\" y=\"0\" width=\"4\" height=\"2\"/>"));
+        }
+    }
+
+    public static class SizeTest {
+        @Test
+        public void scaleShouldOnlyChangeDimensions() {
+            // Set up
+            final SvgCanvas small = new SvgCanvas(2, 2, 1, 1, 1, 0, 0, 0, 0);
+            final SvgCanvas large = new SvgCanvas(2, 2, 1000, 1, 1, 0, 0, 0, 0);
+            // Exercise
+            small.drawInvader(0b0110, PIXELS, 0, 0, colours(0x00FF00));
+            large.drawInvader(0b0110, PIXELS, 0, 0, colours(0x00FF00));
+            // Verify
+            assertTrue(large.getInvader().length() - small.getInvader().length() < 20);
+            assertTrue(large.getInvader().contains("width=\"4000\" height=\"2000\""));
+        }
+
+        @Test
+        public void outputSizeShouldCentreInvaders() {
+            // Set up
+            final SvgCanvas canvas = new SvgCanvas(2, 2, 1, 1, 1, 0, 10, 8, 0);
+            // Exercise
+            canvas.drawInvader(0b0110, PIXELS, 0, 0, colours(0x00FF00));
+            final String svg = canvas.getInvader();
+            // Verify
+            assertTrue(svg.contains("width=\"10\" height=\"8\" viewBox=\"0 0 10 8\""));
+            assertTrue(svg.contains("<g transform=\"translate(3,3)\">"));
+        }
+
+        @Test
+        public void blurShouldAddFilter() {
+            // Set up
+            final SvgCanvas canvas = new SvgCanvas(2, 2, 1, 1, 1, 0, 0, 0, 3);
+            // Exercise
+            canvas.drawInvader(0b0110, PIXELS, 0, 0, colours(0x00FF00));
+            final String svg = canvas.getInvader();
+            // Verify
+            assertTrue(svg.contains("<feGaussianBlur stdDeviation=\"1.0\"/>"));
+            assertTrue(svg.contains("filter=\"url(#blur)\""));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.cleggatt.invaders;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The invaders the tests generate from fixed seeds, and the comparison of the images drawn from them.
+ */
+final class TestInvaders {
+
+    private TestInvaders() {
+    }
+
+    /**
+     * @return invaders in the default palette, in a single colour, from the seeds the tests always use
+     */
+    static Invaders seeded(int x, int y, int scale) {
+        return new Invaders(x, y, scale, RandomSources.Algorithm.Jdk.create(42), RandomSources.Algorithm.Jdk.create(7));
+    }
+
+    static Invaders seeded(int x, int y, int scale, Palette palette, Invaders.ColourMode colourMode) {
+        return new Invaders(x, y, scale, RandomSources.Algorithm.Jdk.create(42), RandomSources.Algorithm.Jdk.create(7), palette, colourMode);
+    }
+
+    /**
+     * Asserts every pixel of <code>actual</code> is the pixel of <code>expected</code> it was drawn from, with its
+     * top left at (<code>x0</code>, <code>y0</code>).
+     */
+    static void assertRegionEquals(RowSource expected, int x0, int y0, PixelImage actual) {
+        final int[] row = new int[expected.getWidth()];
+        for (int y = 0; y < actual.getHeight(); y++) {
+            expected.getRow(y0 + y, row);
+            for (int x = 0; x < actual.getWidth(); x++) {
+                assertEquals(String.format("(%d, %d)", x0 + x, y0 + y), row[x0 + x], actual.getPixel(x, y));
+            }
+        }
+    }
+
+    static void assertImageEquals(PixelImage expected, PixelImage actual) {
+        assertEquals("image width", expected.getWidth(), actual.getWidth());
+        assertEquals("image height", expected.getHeight(), actual.getHeight());
+        assertRegionEquals(expected, 0, 0, actual);
+    }
+}
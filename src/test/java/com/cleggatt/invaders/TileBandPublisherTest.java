@@ -0,0 +1,214 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.cleggatt.invaders.TestInvaders.*;
+import static org.junit.Assert.*;
+
+@RunWith(Enclosed.class)
+public class TileBandPublisherTest {
+
+    private static class RecordingSubscriber implements Subscriber<TileBand> {
+        private final List<TileBand> bands = new ArrayList<TileBand>();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private Subscription subscription;
+        private Throwable error;
+        private boolean complete;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TileBand band) {
+            bands.add(band);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+            terminated.countDown();
+        }
+    }
+
+    private static void assertStacked(PixelImage expected, List<TileBand> bands) {
+        int y = 0;
+        for (int i = 0; i < bands.size(); i++) {
+            final TileBand band = bands.get(i);
+            assertEquals(i, band.getIndex());
+            assertEquals(y, band.getY());
+            final PixelImage image = band.getImage();
+            assertEquals(expected.getWidth(), image.getWidth());
+            for (int line = 0; line < image.getHeight(); line++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(expected.getPixel(x, y + line), image.getPixel(x, line));
+                }
+            }
+            y += image.getHeight();
+        }
+        assertEquals(expected.getHeight(), y);
+    }
+
+    public static class DemandTest {
+        @Test
+        public void nothingShouldBeRenderedUntilRequested() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Square);
+            final RecordingSubscriber subscriber = new RecordingSubscriber();
+            // Exercise
+            publisher.subscribe(subscriber);
+            // Verify
+            assertNotNull(subscriber.subscription);
+            assertTrue(subscriber.bands.isEmpty());
+            assertFalse(subscriber.complete);
+        }
+
+        @Test
+        public void onlyRequestedBandsShouldBePublished() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Square);
+            final RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+            // Exercise
+            subscriber.subscription.request(1);
+            subscriber.subscription.request(2);
+            // Verify
+            assertEquals(3, subscriber.bands.size());
+            assertFalse(subscriber.complete);
+        }
+
+        @Test
+        public void bandsShouldStackToWholeImage() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Round);
+            final RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+            // Exercise
+            subscriber.subscription.request(Long.MAX_VALUE);
+            // Verify
+            assertTrue(subscriber.complete);
+            assertNull(subscriber.error);
+            assertStacked(seeded(4, 6, 2).getPixelInvaders(3, 4, 1, Invaders.Edge.Round), subscriber.bands);
+        }
+
+        @Test
+        public void requestFromOnNextShouldNotRecurse() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 2, 50, 0, Invaders.Edge.Square);
+            final int[] depth = new int[2];
+            final RecordingSubscriber subscriber = new RecordingSubscriber() {
+                @Override
+                public void onNext(TileBand band) {
+                    super.onNext(band);
+                    depth[0]++;
+                    depth[1] = Math.max(depth[1], depth[0]);
+                    super.subscription.request(1);
+                    depth[0]--;
+                }
+            };
+            publisher.subscribe(subscriber);
+            // Exercise
+            subscriber.subscription.request(1);
+            // Verify
+            assertEquals(50, subscriber.bands.size());
+            assertTrue(subscriber.complete);
+            assertEquals(1, depth[1]);
+        }
+
+        @Test
+        public void cancelShouldStopPublishing() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Square);
+            final RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+            subscriber.subscription.request(1);
+            // Exercise
+            subscriber.subscription.cancel();
+            subscriber.subscription.request(3);
+            // Verify
+            assertEquals(1, subscriber.bands.size());
+            assertFalse(subscriber.complete);
+        }
+    }
+
+    public static class ErrorTest {
+        @Test
+        public void nonPositiveRequestShouldSignalError() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Square);
+            final RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+            // Exercise
+            subscriber.subscription.request(0);
+            // Verify
+            assertTrue(subscriber.error instanceof IllegalArgumentException);
+            assertTrue(subscriber.bands.isEmpty());
+        }
+
+        @Test
+        public void secondSubscriberShouldSignalError() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Square);
+            publisher.subscribe(new RecordingSubscriber());
+            final RecordingSubscriber second = new RecordingSubscriber();
+            // Exercise
+            publisher.subscribe(second);
+            // Verify
+            assertNotNull(second.subscription);
+            assertTrue(second.error instanceof IllegalStateException);
+        }
+
+        @Test(expected = NullPointerException.class)
+        public void nullSubscriberShouldBeInvalid() {
+            // Set up
+            final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 4, 1, Invaders.Edge.Square);
+            // Exercise (and verify by exception)
+            publisher.subscribe(null);
+        }
+    }
+
+    public static class ExecutorTest {
+        @Test
+        public void bandsShouldBePublishedOnExecutor() throws InterruptedException {
+            // Set up
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final TileBandPublisher publisher = new TileBandPublisher(seeded(4, 6, 2), 3, 5, 2, Invaders.Edge.Square, executor);
+                final RecordingSubscriber subscriber = new RecordingSubscriber() {
+                    @Override
+                    public void onNext(TileBand band) {
+                        super.onNext(band);
+                        super.subscription.request(1);
+                    }
+                };
+                publisher.subscribe(subscriber);
+                // Exercise
+                subscriber.subscription.request(1);
+                // Verify
+                assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+                assertTrue(subscriber.complete);
+                assertStacked(seeded(4, 6, 2).getPixelInvaders(3, 5, 2, Invaders.Edge.Square), subscriber.bands);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.cleggatt.invaders;
+
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(Enclosed.class)
+public class TileColoursTest {
+
+    private static final Palette PALETTE = new Palette(0x000000, 0xFF0000, 0x00FF00);
+
+    private static final boolean[][] PIXELS = new boolean[][]{
+            {true, true, true, true},
+            {true, true, true, true},
+            {true, true, true, true}};
+
+    public static class FlatTest {
+        @Test
+        public void everyPixelShouldHaveTheSameColour() {
+            // Set up
+            final RandomSource random = mock(RandomSource.class);
+            when(random.nextInt(3)).thenReturn(2);
+            final TileColours colours = new TileColours(Invaders.ColourMode.Flat, PALETTE, 4, 3);
+            // Exercise
+            final int[][] table = colours.colour(PIXELS, random);
+            // Verify
+            for (int[] row : table) {
+                assertArrayEquals(new int[]{0xFF00FF00, 0xFF00FF00, 0xFF00FF00, 0xFF00FF00}, row);
+            }
+            verify(random, times(1)).nextInt(anyInt());
+        }
+    }
+
+    public static class GradientTest {
+        @Test
+        public void rowsShouldBlendFromTopToBottom() {
+            // Set up
+            final RandomSource random = mock(RandomSource.class);
+            when(random.nextInt(3)).thenReturn(0);
+            // Skips the first colour
+            when(random.nextInt(2)).thenReturn(0);
+            final TileColours colours = new TileColours(Invaders.ColourMode.Gradient, PALETTE, 4, 3);
+            // Exercise
+            final int[][] table = colours.colour(PIXELS, random);
+            // Verify
+            assertEquals(0xFF000000, table[0][0]);
+            assertEquals(0xFF7F0000, table[1][3]);
+            assertEquals(0xFFFF0000, table[2][1]);
+        }
+    }
+
+    public static class TwoToneTest {
+        @Test
+        public void insideShouldDifferFromOutline() {
+            // Set up
+            final RandomSource random = mock(RandomSource.class);
+            when(random.nextInt(3)).thenReturn(1);
+            when(random.nextInt(2)).thenReturn(1);
+            final TileColours colours = new TileColours(Invaders.ColourMode.TwoTone, PALETTE, 4, 3);
+            // Exercise
+            final int[][] table = colours.colour(PIXELS, random);
+            // Verify
+            assertEquals(0xFF00FF00, table[0][1]);
+            assertEquals(0xFF00FF00, table[1][0]);
+            assertEquals(0xFFFF0000, table[1][1]);
+            assertEquals(0xFFFF0000, table[1][2]);
+        }
+    }
+
+    public static class CellTest {
+        @Test
+        public void cellsShouldBeMirrored() {
+            // Set up
+            final RandomSource random = mock(RandomSource.class);
+            when(random.nextInt(3)).thenReturn(1, 2);
+            final TileColours colours = new TileColours(Invaders.ColourMode.Cell, PALETTE, 4, 3);
+            // Exercise
+            final int[][] table = colours.colour(PIXELS, random);
+            // Verify
+            assertArrayEquals(new int[]{0xFFFF0000, 0xFF00FF00, 0xFF00FF00, 0xFFFF0000}, table[0]);
+        }
+    }
+}